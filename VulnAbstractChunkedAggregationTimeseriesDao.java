@@ -21,6 +21,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.thingsboard.server.common.data.id.EntityId;
@@ -56,6 +57,12 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
 
     protected TbSqlBlockingQueue<EntityContainer<TsKvEntity>> tsQueue;
 
+    @Value("${sql.ts.single_pass_aggregation:false}")
+    private boolean singlePassAggregation;
+
+    @Value("${sql.ts.single_pass_aggregation_fetch_size:10000}")
+    private int singlePassAggregationFetchSize;
+
     @PostConstruct
     protected void init() {
         super.init();
@@ -128,6 +135,8 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     protected ListenableFuture<List<TsKvEntry>> findAllAsync(EntityId entityId, ReadTsKvQuery query) {
         if (query.getAggregation() == Aggregation.NONE) {
             return findAllAsyncWithLimit(entityId, query);
+        } else if (singlePassAggregation) {
+            return findAllAndAggregateInSinglePassAsync(entityId, query);
         } else {
             long stepTs = query.getStartTs();
             List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
@@ -157,6 +166,34 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         return Futures.immediateFuture(DaoUtil.convertDataList(tsKvEntities));
     }
 
+    private ListenableFuture<List<TsKvEntry>> findAllAndAggregateInSinglePassAsync(EntityId entityId, ReadTsKvQuery query) {
+        return service.submit(() -> {
+            TsKvBucketAggregator aggregator = new TsKvBucketAggregator(query.getKey(), query.getAggregation(),
+                    query.getStartTs(), query.getEndTs(), query.getInterval());
+            Integer keyId = getOrSaveKeyId(query.getKey());
+            long fromTs = query.getStartTs();
+            long toTs = aggregator.getScanEndTs();
+            while (fromTs < toTs) {
+                List<TsKvEntity> tsKvEntities = tsKvRepository.findAllWithLimit(
+                        entityId.getId(),
+                        keyId,
+                        fromTs,
+                        toTs,
+                        new PageRequest(0, singlePassAggregationFetchSize,
+                                new Sort(Sort.Direction.ASC, "ts")));
+                for (TsKvEntity tsKvEntity : tsKvEntities) {
+                    tsKvEntity.setStrKey(query.getKey());
+                    aggregator.add(DaoUtil.getData(tsKvEntity));
+                }
+                if (tsKvEntities.size() < singlePassAggregationFetchSize) {
+                    break;
+                }
+                fromTs = tsKvEntities.get(tsKvEntities.size() - 1).getTs() + 1;
+            }
+            return aggregator.getResult();
+        });
+    }
+
     private ListenableFuture<Optional<TsKvEntry>> findAndAggregateAsync(EntityId entityId, String key, long startTs, long endTs, long ts, Aggregation aggregation) {
         List<CompletableFuture<TsKvEntity>> entitiesFutures = new ArrayList<>();
         switchAggregation(entityId, key, startTs, endTs, aggregation, entitiesFutures);
@@ -29,9 +29,20 @@ import org.thingsboard.server.dao.model.sql.EventEntity;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @Slf4j
-public abstract class AbstractEventInsertRepository implements EventInsertRepository {
+public abstract class AbstractEventInsertRepository implements EventInsertRepository, EventBatchInsertRepository {
+
+    protected static final String COLUMNS = "id, body, entity_id, entity_type, event_type, event_uid, tenant_id";
+
+    private static final int MAX_ROWS_PER_STATEMENT = 1000;
 
     @PersistenceContext
     protected EntityManager entityManager;
@@ -64,18 +75,104 @@ public abstract class AbstractEventInsertRepository implements EventInsertReposi
         return eventEntity;
     }
 
+    /**
+     * Writes the events with multi-row statements. Events the statement leaves out because they conflict
+     * with an existing row are saved one by one through {@link #saveOrUpdate(EventEntity)}, which keeps the
+     * single event semantics, while the others stay batched. A chunk whose statement fails is saved one by one.
+     */
+    @Override
+    public void saveOrUpdate(List<EventEntity> entities) {
+        List<EventEntity> unique = deduplicate(entities);
+        for (int from = 0; from < unique.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<EventEntity> chunk = unique.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, unique.size()));
+            List<EventEntity> notWritten;
+            TransactionStatus insertTransaction = getTransactionStatus(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            try {
+                notWritten = batchInsertOrUpdate(chunk);
+                transactionManager.commit(insertTransaction);
+            } catch (Throwable throwable) {
+                if (!insertTransaction.isCompleted()) {
+                    transactionManager.rollback(insertTransaction);
+                }
+                log.trace("Could not execute the batch insert statement for {} events, saving them one by one", chunk.size(), throwable);
+                notWritten = chunk;
+            }
+            notWritten.forEach(this::saveOrUpdate);
+        }
+    }
+
+    /**
+     * Postgres version: inserts the events with a single statement that skips the rows conflicting on the
+     * primary or the unique key. Repositories for other databases override it.
+     *
+     * @return the events that were left out and must be saved one by one
+     */
+    protected List<EventEntity> batchInsertOrUpdate(List<EventEntity> chunk) {
+        Query query = entityManager.createNativeQuery(getBatchInsertSkippingConflicts(chunk.size()));
+        for (int i = 0; i < chunk.size(); i++) {
+            setParameters(query, chunk.get(i), Integer.toString(i));
+        }
+        Set<String> insertedIds = new HashSet<>();
+        for (Object id : query.getResultList()) {
+            insertedIds.add(id.toString());
+        }
+        List<EventEntity> conflicting = new ArrayList<>();
+        for (EventEntity entity : chunk) {
+            if (!insertedIds.contains(UUIDConverter.fromTimeUUID(entity.getId()))) {
+                conflicting.add(entity);
+            }
+        }
+        return conflicting;
+    }
+
+    protected String getBatchInsertSkippingConflicts(int rowsCount) {
+        return "INSERT INTO event (" + COLUMNS + ") VALUES " + getValuesRows(rowsCount) + " ON CONFLICT DO NOTHING RETURNING id";
+    }
+
+    /**
+     * A single statement must not touch the same row twice, so only the last event per primary and unique key is kept.
+     */
+    private List<EventEntity> deduplicate(List<EventEntity> entities) {
+        Map<String, EventEntity> byUniqueKey = new LinkedHashMap<>();
+        for (EventEntity entity : entities) {
+            byUniqueKey.put(entity.getTenantId() + "_" + entity.getEntityType() + "_" + entity.getEntityId() + "_" + entity.getEventType() + "_" + entity.getEventUid(), entity);
+        }
+        Map<UUID, EventEntity> byId = new LinkedHashMap<>();
+        for (EventEntity entity : byUniqueKey.values()) {
+            byId.put(entity.getId(), entity);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    protected static String getValuesRows(int rowsCount) {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < rowsCount; i++) {
+            if (i > 0) {
+                values.append(", ");
+            }
+            values.append("(:id").append(i).append(", :body").append(i).append(", :entity_id").append(i)
+                    .append(", :entity_type").append(i).append(", :event_type").append(i)
+                    .append(", :event_uid").append(i).append(", :tenant_id").append(i).append(")");
+        }
+        return values.toString();
+    }
+
     @Modifying
     protected abstract EventEntity doProcessSaveOrUpdate(EventEntity entity, String query);
 
     protected Query getQuery(EventEntity entity, String query) {
-        return entityManager.createNativeQuery(query, EventEntity.class)
-                .setParameter("id", UUIDConverter.fromTimeUUID(entity.getId()))
-                .setParameter("body", entity.getBody().toString())
-                .setParameter("entity_id", entity.getEntityId())
-                .setParameter("entity_type", entity.getEntityType().name())
-                .setParameter("event_type", entity.getEventType())
-                .setParameter("event_uid", entity.getEventUid())
-                .setParameter("tenant_id", entity.getTenantId());
+        return setParameters(entityManager.createNativeQuery(query, EventEntity.class), entity, "");
+    }
+
+    protected Query setParameters(Query query, EventEntity entity, String suffix) {
+        return query
+                .setParameter("id" + suffix, UUIDConverter.fromTimeUUID(entity.getId()))
+                .setParameter("body" + suffix, entity.getBody().toString())
+                .setParameter("entity_id" + suffix, entity.getEntityId())
+                .setParameter("entity_type" + suffix, entity.getEntityType().name())
+                .setParameter("event_type" + suffix, entity.getEventType())
+                .setParameter("event_uid" + suffix, entity.getEventUid())
+                .setParameter("tenant_id" + suffix, entity.getTenantId());
     }
 
     private EventEntity processSaveOrUpdate(EventEntity entity, String query) {
@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.relation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.dao.model.sql.RelationCompositeKey;
+import org.thingsboard.server.dao.model.sql.RelationEntity;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+public abstract class AbstractRelationBatchRepository implements RelationBatchRepository {
+
+    private static final String DELETE_BY_KEY = "DELETE FROM relation WHERE from_id = ? AND from_type = ? AND to_id = ? AND to_type = ? AND relation_type = ? AND relation_type_group = ?";
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    protected TransactionTemplate transactionTemplate;
+
+    protected abstract String getInsertOrUpdateQuery();
+
+    @Override
+    public boolean[] deleteAndSaveOrUpdate(List<RelationCompositeKey> deleted, List<RelationEntity> saved) {
+        return transactionTemplate.execute(status -> {
+            boolean[] existed = new boolean[deleted.size()];
+            if (!deleted.isEmpty()) {
+                int[] result = jdbcTemplate.batchUpdate(DELETE_BY_KEY, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        RelationCompositeKey key = deleted.get(i);
+                        ps.setString(1, key.getFromId());
+                        ps.setString(2, key.getFromType());
+                        ps.setString(3, key.getToId());
+                        ps.setString(4, key.getToType());
+                        ps.setString(5, key.getRelationType());
+                        ps.setString(6, key.getRelationTypeGroup());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return deleted.size();
+                    }
+                });
+                for (int i = 0; i < result.length; i++) {
+                    existed[i] = result[i] > 0;
+                }
+            }
+            if (!saved.isEmpty()) {
+                jdbcTemplate.batchUpdate(getInsertOrUpdateQuery(), new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        RelationEntity entity = saved.get(i);
+                        ps.setString(1, entity.getFromId());
+                        ps.setString(2, entity.getFromType());
+                        ps.setString(3, entity.getToId());
+                        ps.setString(4, entity.getToType());
+                        ps.setString(5, entity.getRelationTypeGroup());
+                        ps.setString(6, entity.getRelationType());
+                        ps.setString(7, entity.getAdditionalInfo() != null ? entity.getAdditionalInfo().toString() : null);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return saved.size();
+                    }
+                });
+            }
+            return existed;
+        });
+    }
+}
@@ -86,6 +86,11 @@ public class BytesStreamInput extends StreamInput {
         return this.pos;
     }
 
+    @Override
+    public int available() throws IOException {
+        return end - pos;
+    }
+
     @Override
     public int read() throws IOException {
         return (pos < end) ? (buf[pos++] & 0xff) : -1;
@@ -18,6 +18,7 @@ import org.apache.lucene.util.BytesRefIterator;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.blobstore.cache.BlobStoreCacheService;
 import org.elasticsearch.blobstore.cache.CachedBlob;
+import org.elasticsearch.common.CheckedFunction;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.SuppressForbidden;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -29,6 +30,7 @@ import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot.F
 import org.elasticsearch.index.snapshots.blobstore.SlicedInputStream;
 import org.elasticsearch.index.store.BaseSearchableSnapshotIndexInput;
 import org.elasticsearch.index.store.IndexInputStats;
+import org.elasticsearch.index.store.ReadAheadStats;
 import org.elasticsearch.index.store.SearchableSnapshotDirectory;
 import org.elasticsearch.xpack.searchablesnapshots.SearchableSnapshotsConstants;
 
@@ -60,15 +62,50 @@ public class CachedBlobContainerIndexInput extends BaseSearchableSnapshotIndexIn
     private static final Logger logger = LogManager.getLogger(CachedBlobContainerIndexInput.class);
     private static final int COPY_BUFFER_SIZE = ByteSizeUnit.KB.toIntBytes(8);
 
+    /**
+     * Number of contiguous reads after which an index input is considered to be read sequentially and starts to read ahead.
+     */
+    static final int READ_AHEAD_MIN_CONTIGUOUS_READS = 2;
+
+    /**
+     * Maximum number of ranges prefetched ahead of a sequential reader. The read-ahead window starts at one range and doubles each time
+     * the reader catches up with it, up to this number of ranges or {@link #READ_AHEAD_MAX_WINDOW_BYTES}, whichever is smaller.
+     */
+    static final int READ_AHEAD_MAX_RANGES = 8;
+
+    /**
+     * Maximum number of bytes that all the index inputs of the node may be prefetching at the same time. Prefetches are clipped to what
+     * is left of it and skipped if less than {@link #READ_AHEAD_MIN_PREFETCH_BYTES} is left, the reader then fetches the range
+     * synchronously as it would without read-ahead.
+     */
+    static final long READ_AHEAD_MAX_IN_FLIGHT_BYTES = ByteSizeUnit.MB.toBytes(64);
+
+    /**
+     * Maximum size of the read-ahead window of a single index input, so that a few sequential readers can prefetch at the same time.
+     */
+    static final long READ_AHEAD_MAX_WINDOW_BYTES = READ_AHEAD_MAX_IN_FLIGHT_BYTES / 4;
+
+    /**
+     * Prefetches are not clipped below this size, smaller ones would mostly add fetch overhead.
+     */
+    static final long READ_AHEAD_MIN_PREFETCH_BYTES = ByteSizeUnit.MB.toBytes(1);
+
+    private static final ReadAheadBudget READ_AHEAD_BUDGET = new ReadAheadBudget(READ_AHEAD_MAX_IN_FLIGHT_BYTES);
+
     private final SearchableSnapshotDirectory directory;
     private final CacheFileReference cacheFileReference;
     private final int defaultRangeSize;
+    private final ReadAheadStats readAheadStats;
+    private final String blockCacheKey;
 
     // last read position is kept around in order to detect (non)contiguous reads for stats
     private long lastReadPosition;
     // last seek position is kept around in order to detect forward/backward seeks for stats
     private long lastSeekPosition;
 
+    // read-ahead state of this index input, not shared with its clones
+    private ReadAheadWindow readAheadWindow = new ReadAheadWindow();
+
     public CachedBlobContainerIndexInput(
         SearchableSnapshotDirectory directory,
         FileInfo fileInfo,
@@ -108,6 +145,8 @@ public class CachedBlobContainerIndexInput extends BaseSearchableSnapshotIndexIn
         this.lastReadPosition = this.offset;
         this.lastSeekPosition = this.offset;
         this.defaultRangeSize = rangeSize;
+        this.readAheadStats = directory.getReadAheadStats(fileInfo.physicalName());
+        this.blockCacheKey = directory.blockCacheKey(fileInfo);
     }
 
     @Override
@@ -162,6 +201,19 @@ public class CachedBlobContainerIndexInput extends BaseSearchableSnapshotIndexIn
 
         logger.trace("readInternal: read [{}-{}] ([{}] bytes) from [{}]", position, position + length, length, this);
 
+        // Reads that fall within a single region may be served by the node-wide block cache, if enabled, without touching the disk at all.
+        final SharedBlockCache blockCache = directory.blockCache();
+        final boolean blockCacheable = blockCache != null
+            && SharedBlockCache.region(position) == SharedBlockCache.region(position + length - 1);
+        if (blockCacheable) {
+            if (blockCache.read(blockCacheKey, position, b)) {
+                directory.getBlockCacheStats().addHit();
+                readComplete(position, length);
+                return;
+            }
+            directory.getBlockCacheStats().addMiss();
+        }
+
         try {
             final CacheFile cacheFile = getCacheFileSafe();
             try (Releasable ignored = cacheFile.fileLock()) {
@@ -180,6 +232,12 @@ public class CachedBlobContainerIndexInput extends BaseSearchableSnapshotIndexIn
                 if (waitingForRead != null) {
                     final Integer read = waitingForRead.get();
                     assert read == length;
+                    if (readAheadWindow.contains(position, length)) {
+                        readAheadStats.addHit(length);
+                    }
+                    if (blockCacheable) {
+                        maybeAddToBlockCache(blockCache, cacheFile, position);
+                    }
                     readComplete(position, length);
                     return;
                 }
@@ -350,6 +408,9 @@ public class CachedBlobContainerIndexInput extends BaseSearchableSnapshotIndexIn
 
                 final int bytesRead = populateCacheFuture.get();
                 assert bytesRead == length : bytesRead + " vs " + length;
+                if (blockCacheable) {
+                    maybeAddToBlockCache(blockCache, cacheFile, position);
+                }
             }
         } catch (final Exception e) {
             // may have partially filled the buffer before the exception was thrown, so try and get the remainder directly.
@@ -364,10 +425,250 @@ public class CachedBlobContainerIndexInput extends BaseSearchableSnapshotIndexIn
         readComplete(position, length);
     }
 
+    /**
+     * Copies the region of the node-wide block cache that contains the given position from the cache file, if the block cache would admit
+     * it and the whole region is already available on disk.
+     */
+    private void maybeAddToBlockCache(SharedBlockCache blockCache, CacheFile cacheFile, long position) {
+        final long region = SharedBlockCache.region(position);
+        if (blockCache.shouldAdmit(blockCacheKey, region) == false) {
+            return;
+        }
+        final long start = region * SharedBlockCache.REGION_SIZE;
+        final long end = Math.min(start + SharedBlockCache.REGION_SIZE, fileInfo.length());
+        try {
+            if (cacheFile.getAbsentRangeWithin(start, end) != null) {
+                return;
+            }
+            final byte[] bytes = new byte[toIntBytes(end - start)];
+            final CompletableFuture<Integer> readFuture = cacheFile.readIfAvailableOrPending(Tuple.tuple(start, end), channel -> {
+                // NB use Channels.readFromFileChannelWithEofException not readCacheFile() to avoid counting this in the stats
+                Channels.readFromFileChannelWithEofException(channel, start, ByteBuffer.wrap(bytes));
+                return bytes.length;
+            });
+            if (readFuture != null && readFuture.isDone() && readFuture.isCompletedExceptionally() == false) {
+                blockCache.put(blockCacheKey, region, bytes);
+            }
+        } catch (Exception e) {
+            logger.debug(
+                () -> new ParameterizedMessage("failed to add region [{}] of [{}] to the block cache", region, cacheFileReference),
+                e
+            );
+        }
+    }
+
     private void readComplete(long position, int length) {
         stats.incrementBytesRead(lastReadPosition, position, length);
+        final boolean contiguous = position == lastReadPosition;
         lastReadPosition = position + length;
         lastSeekPosition = lastReadPosition;
+        maybeReadAhead(contiguous);
+    }
+
+    /**
+     * Prefetches the ranges that follow the last read into the cache file if this index input is being read sequentially. Prefetching is
+     * asynchronous and bounded by {@link #READ_AHEAD_MAX_IN_FLIGHT_BYTES} for the whole node. The window only moves forward once a
+     * prefetch started, so a prefetch skipped for lack of budget is retried on the next read.
+     */
+    private void maybeReadAhead(boolean contiguous) {
+        if (context == CACHE_WARMING_CONTEXT) {
+            return;
+        }
+        final Tuple<Long, Long> window = readAheadWindow.next(
+            contiguous,
+            lastReadPosition,
+            getDefaultRangeSize(),
+            READ_AHEAD_MAX_WINDOW_BYTES,
+            this.offset + length()
+        );
+        if (window == null) {
+            return;
+        }
+        try {
+            final CacheFile cacheFile = getCacheFileSafe();
+            try (Releasable ignored = cacheFile.fileLock()) {
+                final Tuple<Long, Long> range = cacheFile.getAbsentRangeWithin(window.v1(), window.v2());
+                if (range == null) {
+                    // already cached or being fetched
+                    readAheadWindow.advance(window.v1(), window.v2());
+                    return;
+                }
+                final long rangeLength = range.v2() - range.v1();
+                final CompletableFuture<Integer> prefetchFuture = READ_AHEAD_BUDGET.run(
+                    Math.min(rangeLength, READ_AHEAD_MIN_PREFETCH_BYTES),
+                    rangeLength,
+                    bytes -> {
+                        final Tuple<Long, Long> prefetch = Tuple.tuple(range.v1(), range.v1() + bytes);
+                        final CompletableFuture<Integer> future = cacheFile.populateAndRead(
+                            prefetch,
+                            prefetch,
+                            channel -> 0,
+                            this::writeCacheFile,
+                            directory.cacheFetchAsyncExecutor()
+                        );
+                        readAheadWindow.advance(window.v1(), prefetch.v2());
+                        readAheadStats.addPrefetch(bytes);
+                        logger.trace(
+                            "read-ahead: prefetching [{}-{}] of cache file [{}]",
+                            prefetch.v1(),
+                            prefetch.v2(),
+                            cacheFileReference
+                        );
+                        return future;
+                    }
+                );
+                if (prefetchFuture == null) {
+                    readAheadStats.addSkippedPrefetch();
+                    return;
+                }
+                prefetchFuture.whenComplete((read, e) -> {
+                    if (e != null) {
+                        readAheadStats.addFailedPrefetch();
+                        logger.debug(
+                            () -> new ParameterizedMessage(
+                                "read-ahead of [{}-{}] failed for [{}]",
+                                range.v1(),
+                                range.v2(),
+                                cacheFileReference
+                            ),
+                            e
+                        );
+                    }
+                });
+            }
+        } catch (Exception e) {
+            // read-ahead is an optimization only, the next reads fetch what they need themselves
+            readAheadStats.addFailedPrefetch();
+            logger.debug(
+                () -> new ParameterizedMessage("failed to read ahead [{}-{}] of [{}]", window.v1(), window.v2(), cacheFileReference),
+                e
+            );
+        }
+    }
+
+    /**
+     * Tracks the reads of an index input to decide what to prefetch. Once the input has been read contiguously
+     * {@link #READ_AHEAD_MIN_CONTIGUOUS_READS} times, a window of one range is prefetched ahead of the reader. The window moves forward
+     * each time the reader consumed half of it and a prefetch started, doubling up to {@link #READ_AHEAD_MAX_RANGES} ranges. Any
+     * non-contiguous read resets it.
+     */
+    static final class ReadAheadWindow {
+
+        private int contiguousReads;
+        private int ranges = 1;
+        private long start = -1L;
+        private long end = -1L;
+
+        /**
+         * @param contiguous true if the read started where the previous one ended
+         * @param position the position right after the read
+         * @param rangeSize the size of the ranges of the cache file
+         * @param maxWindowBytes the maximum size of the window
+         * @param fileEnd the position right after the last byte of the file
+         * @return the bytes to prefetch, or null if nothing needs to be prefetched after this read. The window only moves once
+         * {@link #advance(long, long)} is called.
+         */
+        @Nullable
+        Tuple<Long, Long> next(boolean contiguous, long position, long rangeSize, long maxWindowBytes, long fileEnd) {
+            if (contiguous == false) {
+                contiguousReads = 0;
+                ranges = 1;
+                start = -1L;
+                end = -1L;
+                return null;
+            }
+            if (contiguousReads < READ_AHEAD_MIN_CONTIGUOUS_READS) {
+                contiguousReads++;
+            }
+            if (contiguousReads < READ_AHEAD_MIN_CONTIGUOUS_READS) {
+                return null;
+            }
+            final long windowBytes = Math.min(rangeSize * ranges, maxWindowBytes);
+            // wait for the reader to consume half of the window before moving it forward
+            if (end - position > windowBytes / 2) {
+                return null;
+            }
+            final long prefetchStart = Math.max(end, position);
+            final long windowEnd = (prefetchStart / rangeSize) * rangeSize + rangeSize * ranges;
+            final long prefetchEnd = Math.min(prefetchStart + Math.min(windowEnd - prefetchStart, maxWindowBytes), fileEnd);
+            if (prefetchStart >= prefetchEnd) {
+                return null;
+            }
+            return Tuple.tuple(prefetchStart, prefetchEnd);
+        }
+
+        /**
+         * Moves the window forward after the bytes up to prefetchEnd were prefetched or found in the cache file.
+         */
+        void advance(long prefetchStart, long prefetchEnd) {
+            if (start < 0L) {
+                start = prefetchStart;
+            }
+            end = Math.max(end, prefetchEnd);
+            ranges = Math.min(ranges * 2, READ_AHEAD_MAX_RANGES);
+        }
+
+        /**
+         * @return true if the given bytes were prefetched since the last non-contiguous read
+         */
+        boolean contains(long position, int length) {
+            return start >= 0L && start <= position && position + length <= end;
+        }
+    }
+
+    /**
+     * Bounds the number of bytes that are being prefetched at the same time. Prefetches are clipped to the bytes left and skipped if
+     * too few are left.
+     */
+    static final class ReadAheadBudget {
+
+        private final long maxInFlightBytes;
+        private final AtomicLong inFlightBytes = new AtomicLong();
+
+        ReadAheadBudget(long maxInFlightBytes) {
+            this.maxInFlightBytes = maxInFlightBytes;
+        }
+
+        /**
+         * Starts a prefetch of up to maxBytes if the budget has at least minBytes left. The prefetch is given the number of bytes it may
+         * fetch. They are given back once the prefetch completes, successfully or not, or if it fails to start.
+         *
+         * @return the future of the prefetch, completed after the bytes were given back, or null if the prefetch was skipped
+         */
+        @Nullable
+        <T> CompletableFuture<T> run(long minBytes, long maxBytes, CheckedFunction<Long, CompletableFuture<T>, Exception> prefetch)
+            throws Exception {
+            final long bytes = tryAcquire(minBytes, maxBytes);
+            if (bytes == 0L) {
+                return null;
+            }
+            final CompletableFuture<T> future;
+            try {
+                future = prefetch.apply(bytes);
+            } catch (Exception e) {
+                inFlightBytes.addAndGet(-bytes);
+                throw e;
+            }
+            return future.whenComplete((result, e) -> inFlightBytes.addAndGet(-bytes));
+        }
+
+        private long tryAcquire(long minBytes, long maxBytes) {
+            assert 0L < minBytes && minBytes <= maxBytes : minBytes + " vs " + maxBytes;
+            long inFlight;
+            long bytes;
+            do {
+                inFlight = inFlightBytes.get();
+                bytes = Math.min(maxBytes, maxInFlightBytes - inFlight);
+                if (bytes < minBytes) {
+                    return 0L;
+                }
+            } while (inFlightBytes.compareAndSet(inFlight, inFlight + bytes) == false);
+            return bytes;
+        }
+
+        long getInFlightBytes() {
+            return inFlightBytes.get();
+        }
     }
 
     private int readDirectlyIfAlreadyClosed(long position, ByteBuffer b, Exception e) throws IOException {
@@ -731,7 +1032,9 @@ public class CachedBlobContainerIndexInput extends BaseSearchableSnapshotIndexIn
 
     @Override
     public CachedBlobContainerIndexInput clone() {
-        return (CachedBlobContainerIndexInput) super.clone();
+        final CachedBlobContainerIndexInput clone = (CachedBlobContainerIndexInput) super.clone();
+        clone.readAheadWindow = new ReadAheadWindow();
+        return clone;
     }
 
     @Override
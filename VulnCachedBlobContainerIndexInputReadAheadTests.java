@@ -0,0 +1,230 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.index.store.cache;
+
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.index.store.ReadAheadStats;
+import org.elasticsearch.index.store.cache.CachedBlobContainerIndexInput.ReadAheadBudget;
+import org.elasticsearch.index.store.cache.CachedBlobContainerIndexInput.ReadAheadWindow;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.elasticsearch.index.store.cache.CachedBlobContainerIndexInput.READ_AHEAD_MAX_RANGES;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CachedBlobContainerIndexInputReadAheadTests extends ESTestCase {
+
+    private static final long RANGE_SIZE = 1024L;
+    private static final long NO_MAX_WINDOW_BYTES = Long.MAX_VALUE;
+
+    public void testWindowStartsAfterContiguousReads() {
+        final ReadAheadWindow window = new ReadAheadWindow();
+        final long fileEnd = 100 * RANGE_SIZE;
+
+        assertThat(window.next(true, 100L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), nullValue());
+        // the first window ends one range after the start of the range being read
+        assertThat(window.next(true, 200L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), equalTo(Tuple.tuple(200L, RANGE_SIZE)));
+        assertThat(window.contains(200L, 100), is(false));
+        window.advance(200L, RANGE_SIZE);
+        assertThat(window.contains(200L, 100), is(true));
+        assertThat(window.contains(100L, 100), is(false));
+        assertThat(window.contains(RANGE_SIZE - 1L, 2), is(false));
+    }
+
+    public void testWindowDoesNotMoveUntilAdvanced() {
+        final ReadAheadWindow window = new ReadAheadWindow();
+        final long fileEnd = 100 * RANGE_SIZE;
+
+        window.next(true, 0L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd);
+        final Tuple<Long, Long> prefetch = window.next(true, 10L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd);
+        assertThat(prefetch, equalTo(Tuple.tuple(10L, RANGE_SIZE)));
+        // the prefetch did not start, the next read asks for it again
+        assertThat(window.next(true, 20L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), equalTo(Tuple.tuple(20L, RANGE_SIZE)));
+
+        window.advance(20L, RANGE_SIZE);
+        assertThat(window.contains(20L, 10), is(true));
+        assertThat(window.next(true, 30L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), equalTo(Tuple.tuple(RANGE_SIZE, 3 * RANGE_SIZE)));
+    }
+
+    public void testWindowMovesOnceHalfConsumedAndDoubles() {
+        final ReadAheadWindow window = new ReadAheadWindow();
+        final long fileEnd = 1000 * RANGE_SIZE;
+
+        assertThat(window.next(true, 0L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), nullValue());
+        assertThat(window.next(true, 0L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), equalTo(Tuple.tuple(0L, RANGE_SIZE)));
+        window.advance(0L, RANGE_SIZE);
+
+        long end = RANGE_SIZE;
+        int ranges = 2;
+        for (int i = 0; i < 10; i++) {
+            // more than half of the window of the next size remains ahead of the reader
+            final long notYet = end - (RANGE_SIZE * ranges) / 2 - 1L;
+            if (notYet > 0L) {
+                assertThat(window.next(true, notYet, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), nullValue());
+            }
+            final long position = end - (RANGE_SIZE * ranges) / 2 + 1L;
+            final Tuple<Long, Long> prefetch = window.next(true, Math.max(position, 1L), RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd);
+            assertThat(prefetch, notNullValue());
+            assertThat(prefetch.v1(), equalTo(end));
+            assertThat(prefetch.v2(), equalTo(end + RANGE_SIZE * ranges));
+            window.advance(prefetch.v1(), prefetch.v2());
+            end = prefetch.v2();
+            ranges = Math.min(ranges * 2, READ_AHEAD_MAX_RANGES);
+        }
+        assertThat(ranges, equalTo(READ_AHEAD_MAX_RANGES));
+    }
+
+    public void testWindowClippedToMaxWindowBytes() {
+        final ReadAheadWindow window = new ReadAheadWindow();
+        final long fileEnd = 1000 * RANGE_SIZE;
+        final long maxWindowBytes = 3 * RANGE_SIZE;
+
+        window.next(true, 0L, RANGE_SIZE, maxWindowBytes, fileEnd);
+        assertThat(window.next(true, 0L, RANGE_SIZE, maxWindowBytes, fileEnd), equalTo(Tuple.tuple(0L, RANGE_SIZE)));
+        window.advance(0L, RANGE_SIZE);
+        assertThat(window.next(true, 10L, RANGE_SIZE, maxWindowBytes, fileEnd), equalTo(Tuple.tuple(RANGE_SIZE, 3 * RANGE_SIZE)));
+        window.advance(RANGE_SIZE, 3 * RANGE_SIZE);
+
+        long end = 3 * RANGE_SIZE;
+        for (int i = 0; i < 5; i++) {
+            // the window no longer grows once it reached the maximum size, half of it must be consumed to move it
+            assertThat(window.next(true, end - maxWindowBytes / 2 - 1L, RANGE_SIZE, maxWindowBytes, fileEnd), nullValue());
+            final Tuple<Long, Long> prefetch = window.next(true, end - maxWindowBytes / 2, RANGE_SIZE, maxWindowBytes, fileEnd);
+            assertThat(prefetch, equalTo(Tuple.tuple(end, end + maxWindowBytes)));
+            window.advance(prefetch.v1(), prefetch.v2());
+            end = prefetch.v2();
+        }
+    }
+
+    public void testWindowStopsAtEndOfFile() {
+        final ReadAheadWindow window = new ReadAheadWindow();
+        final long fileEnd = RANGE_SIZE + 10L;
+
+        window.next(true, 0L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd);
+        assertThat(
+            window.next(true, RANGE_SIZE - 1L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd),
+            equalTo(Tuple.tuple(RANGE_SIZE - 1L, RANGE_SIZE))
+        );
+        window.advance(RANGE_SIZE - 1L, RANGE_SIZE);
+        assertThat(window.next(true, RANGE_SIZE, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), equalTo(Tuple.tuple(RANGE_SIZE, fileEnd)));
+        window.advance(RANGE_SIZE, fileEnd);
+        assertThat(window.next(true, fileEnd, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), nullValue());
+    }
+
+    public void testWindowResetByNonContiguousRead() {
+        final ReadAheadWindow window = new ReadAheadWindow();
+        final long fileEnd = 100 * RANGE_SIZE;
+
+        window.next(true, 0L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd);
+        final Tuple<Long, Long> prefetch = window.next(true, 10L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd);
+        assertThat(prefetch, notNullValue());
+        window.advance(prefetch.v1(), prefetch.v2());
+        assertThat(window.contains(10L, 10), is(true));
+
+        assertThat(window.next(false, 50 * RANGE_SIZE, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), nullValue());
+        assertThat(window.contains(10L, 10), is(false));
+        assertThat(window.next(true, 50 * RANGE_SIZE + 10L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd), nullValue());
+        assertThat(
+            window.next(true, 50 * RANGE_SIZE + 20L, RANGE_SIZE, NO_MAX_WINDOW_BYTES, fileEnd),
+            equalTo(Tuple.tuple(50 * RANGE_SIZE + 20L, 51 * RANGE_SIZE))
+        );
+    }
+
+    public void testBudgetSkipsPrefetchesBelowMinimum() throws Exception {
+        final ReadAheadBudget budget = new ReadAheadBudget(100L);
+        final CompletableFuture<Integer> first = new CompletableFuture<>();
+        final CompletableFuture<Integer> second = new CompletableFuture<>();
+
+        final CompletableFuture<Integer> firstPrefetch = budget.run(60L, 60L, bytes -> first);
+        assertThat(firstPrefetch, notNullValue());
+        assertThat(budget.getInFlightBytes(), equalTo(60L));
+        assertThat(budget.run(41L, 41L, bytes -> { throw new AssertionError("should have been skipped"); }), nullValue());
+        assertThat(budget.getInFlightBytes(), equalTo(60L));
+
+        final CompletableFuture<Integer> secondPrefetch = budget.run(40L, 40L, bytes -> second);
+        assertThat(secondPrefetch, notNullValue());
+        assertThat(budget.getInFlightBytes(), equalTo(100L));
+
+        first.complete(60);
+        assertThat(firstPrefetch.get(), equalTo(60));
+        assertThat(budget.getInFlightBytes(), equalTo(40L));
+        second.complete(40);
+        assertThat(secondPrefetch.get(), equalTo(40));
+        assertThat(budget.getInFlightBytes(), equalTo(0L));
+    }
+
+    public void testBudgetClipsPrefetchesToAvailableBytes() throws Exception {
+        final ReadAheadBudget budget = new ReadAheadBudget(100L);
+        final CompletableFuture<Integer> first = new CompletableFuture<>();
+        final CompletableFuture<Integer> second = new CompletableFuture<>();
+
+        final CompletableFuture<Integer> firstPrefetch = budget.run(10L, 60L, bytes -> {
+            assertThat(bytes, equalTo(60L));
+            return first;
+        });
+        assertThat(firstPrefetch, notNullValue());
+        final CompletableFuture<Integer> secondPrefetch = budget.run(10L, 60L, bytes -> {
+            assertThat(bytes, equalTo(40L));
+            return second;
+        });
+        assertThat(secondPrefetch, notNullValue());
+        assertThat(budget.getInFlightBytes(), equalTo(100L));
+        assertThat(budget.run(10L, 60L, bytes -> { throw new AssertionError("should have been skipped"); }), nullValue());
+
+        second.complete(40);
+        assertThat(secondPrefetch.get(), equalTo(40));
+        assertThat(budget.getInFlightBytes(), equalTo(60L));
+        first.complete(60);
+        assertThat(firstPrefetch.get(), equalTo(60));
+        assertThat(budget.getInFlightBytes(), equalTo(0L));
+    }
+
+    public void testBudgetReleasedOnFailure() throws Exception {
+        final ReadAheadBudget budget = new ReadAheadBudget(100L);
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        final CompletableFuture<Integer> prefetch = budget.run(100L, 100L, bytes -> future);
+        assertThat(budget.getInFlightBytes(), equalTo(100L));
+        future.completeExceptionally(new IOException("simulated"));
+        expectThrows(ExecutionException.class, prefetch::get);
+        assertThat(budget.getInFlightBytes(), equalTo(0L));
+    }
+
+    public void testBudgetReleasedWhenPrefetchFailsToStart() {
+        final ReadAheadBudget budget = new ReadAheadBudget(100L);
+
+        final IOException e = expectThrows(
+            IOException.class,
+            () -> budget.run(10L, 100L, bytes -> { throw new IOException("simulated"); })
+        );
+        assertThat(e.getMessage(), equalTo("simulated"));
+        assertThat(budget.getInFlightBytes(), equalTo(0L));
+    }
+
+    public void testReadAheadStats() {
+        final ReadAheadStats stats = new ReadAheadStats();
+        stats.addPrefetch(100L);
+        stats.addPrefetch(50L);
+        stats.addSkippedPrefetch();
+        stats.addFailedPrefetch();
+        stats.addHit(10L);
+        stats.addHit(20L);
+        stats.addHit(30L);
+
+        assertThat(stats.getPrefetches(), equalTo(2L));
+        assertThat(stats.getPrefetchedBytes(), equalTo(150L));
+        assertThat(stats.getSkippedPrefetches(), equalTo(1L));
+        assertThat(stats.getFailedPrefetches(), equalTo(1L));
+        assertThat(stats.getHits(), equalTo(3L));
+        assertThat(stats.getHitBytes(), equalTo(60L));
+    }
+}
@@ -15,11 +15,11 @@
  */
 package org.thingsboard.server.dao.nosql;
 
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
-import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.core.utils.UUIDs;
 import com.datastax.driver.mapping.Mapper;
 import com.datastax.driver.mapping.Result;
@@ -36,13 +36,11 @@ import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.model.wrapper.EntityResultSet;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
-import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
-
 @Slf4j
 public abstract class CassandraAbstractModelDao<E extends BaseEntity<D>, D> extends CassandraAbstractDao implements Dao<D> {
 
@@ -71,27 +69,37 @@ public abstract class CassandraAbstractModelDao<E extends BaseEntity<D>, D> exte
         return list;
     }
 
+    /**
+     * Pages through the result asynchronously: the next page is requested only after the rows of the
+     * current one were converted, and rows are mapped straight to domain objects.
+     */
     protected ListenableFuture<List<D>> findListByStatementAsync(TenantId tenantId, Statement statement) {
         if (statement != null) {
             statement.setConsistencyLevel(cluster.getDefaultReadConsistencyLevel());
             ResultSetFuture resultSetFuture = executeAsyncRead(tenantId, statement);
-            return Futures.transform(resultSetFuture, new Function<ResultSet, List<D>>() {
-                @Nullable
-                @Override
-                public List<D> apply(@Nullable ResultSet resultSet) {
-                    Result<E> result = getMapper().map(resultSet);
-                    if (result != null) {
-                        List<E> entities = result.all();
-                        return DaoUtil.convertDataList(entities);
-                    } else {
-                        return Collections.emptyList();
-                    }
+            return Futures.transformAsync(resultSetFuture, resultSet -> {
+                Result<E> result = getMapper().map(resultSet);
+                if (result != null) {
+                    return fetchAllPages(result, new ArrayList<>());
+                } else {
+                    return Futures.immediateFuture(Collections.emptyList());
                 }
             }, MoreExecutors.directExecutor());
         }
         return Futures.immediateFuture(Collections.emptyList());
     }
 
+    private ListenableFuture<List<D>> fetchAllPages(Result<E> result, List<D> data) {
+        int available = result.getAvailableWithoutFetching();
+        for (int i = 0; i < available; i++) {
+            data.add(DaoUtil.getData(result.one()));
+        }
+        if (result.isFullyFetched()) {
+            return Futures.immediateFuture(data);
+        }
+        return Futures.transformAsync(result.fetchMoreResults(), r -> fetchAllPages(result, data), MoreExecutors.directExecutor());
+    }
+
     protected E findOneByStatement(TenantId tenantId, Statement statement) {
         E object = null;
         if (statement != null) {
@@ -162,28 +170,31 @@ public abstract class CassandraAbstractModelDao<E extends BaseEntity<D>, D> exte
         return DaoUtil.getData(entity);
     }
 
+    protected PreparedStatement getFindByIdStmt() {
+        return prepare("SELECT * FROM " + getColumnFamilyName() + " WHERE " + ModelConstants.ID_PROPERTY + " = ?");
+    }
+
+    protected PreparedStatement getRemoveByIdStmt() {
+        return prepare("DELETE FROM " + getColumnFamilyName() + " WHERE " + ModelConstants.ID_PROPERTY + " = ?");
+    }
+
     @Override
     public D findById(TenantId tenantId, UUID key) {
         log.debug("Get entity by key {}", key);
-        Select.Where query = select().from(getColumnFamilyName()).where(eq(ModelConstants.ID_PROPERTY, key));
-        log.trace("Execute query {}", query);
-        E entity = findOneByStatement(tenantId, query);
+        E entity = findOneByStatement(tenantId, getFindByIdStmt().bind(key));
         return DaoUtil.getData(entity);
     }
 
     @Override
     public ListenableFuture<D> findByIdAsync(TenantId tenantId, UUID key) {
         log.debug("Get entity by key {}", key);
-        Select.Where query = select().from(getColumnFamilyName()).where(eq(ModelConstants.ID_PROPERTY, key));
-        log.trace("Execute query {}", query);
-        return findOneByStatementAsync(tenantId, query);
+        return findOneByStatementAsync(tenantId, getFindByIdStmt().bind(key));
     }
 
     @Override
     public boolean removeById(TenantId tenantId, UUID key) {
-        Statement delete = QueryBuilder.delete().all().from(getColumnFamilyName()).where(eq(ModelConstants.ID_PROPERTY, key));
-        log.debug("Remove request: {}", delete.toString());
-        return executeWrite(tenantId, delete).wasApplied();
+        log.debug("Remove entity by key {} from column family {}", key, getColumnFamilyName());
+        return executeWrite(tenantId, getRemoveByIdStmt().bind(key)).wasApplied();
     }
 
     @Override
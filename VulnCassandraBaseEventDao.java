@@ -15,10 +15,10 @@
  */
 package org.thingsboard.server.dao.event;
 
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
-import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.core.utils.UUIDs;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -46,7 +46,6 @@ import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.ttl;
 import static org.thingsboard.server.dao.model.ModelConstants.EVENT_BY_ID_VIEW_NAME;
 import static org.thingsboard.server.dao.model.ModelConstants.EVENT_BY_TYPE_AND_ID_VIEW_NAME;
@@ -117,14 +116,8 @@ public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventE
     @Override
     public Event findEvent(UUID tenantId, EntityId entityId, String eventType, String eventUid) {
         log.debug("Search event entity by [{}][{}][{}][{}]", tenantId, entityId, eventType, eventUid);
-        Select.Where query = select().from(getColumnFamilyName()).where(
-                eq(ModelConstants.EVENT_TENANT_ID_PROPERTY, tenantId))
-                .and(eq(ModelConstants.EVENT_ENTITY_TYPE_PROPERTY, entityId.getEntityType()))
-                .and(eq(ModelConstants.EVENT_ENTITY_ID_PROPERTY, entityId.getId()))
-                .and(eq(ModelConstants.EVENT_TYPE_PROPERTY, eventType))
-                .and(eq(ModelConstants.EVENT_UID_PROPERTY, eventUid));
-        log.trace("Execute query [{}]", query);
-        EventEntity entity = findOneByStatement(new TenantId(tenantId), query);
+        EventEntity entity = findOneByStatement(new TenantId(tenantId),
+                getFindEventStmt().bind(tenantId, entityId.getEntityType().name(), entityId.getId(), eventType, eventUid));
         if (log.isTraceEnabled()) {
             log.trace("Search result: [{}] for event entity [{}]", entity != null, entity);
         } else {
@@ -163,18 +156,30 @@ public class CassandraBaseEventDao extends CassandraAbstractSearchTimeDao<EventE
     @Override
     public List<Event> findLatestEvents(UUID tenantId, EntityId entityId, String eventType, int limit) {
         log.trace("Try to find latest events by tenant [{}], entity [{}], type [{}] and limit [{}]", tenantId, entityId, eventType, limit);
-        Select select = select().from(EVENT_BY_TYPE_AND_ID_VIEW_NAME);
-        Select.Where query = select.where();
-        query.and(eq(ModelConstants.EVENT_TENANT_ID_PROPERTY, tenantId));
-        query.and(eq(ModelConstants.EVENT_ENTITY_TYPE_PROPERTY, entityId.getEntityType()));
-        query.and(eq(ModelConstants.EVENT_ENTITY_ID_PROPERTY, entityId.getId()));
-        query.and(eq(ModelConstants.EVENT_TYPE_PROPERTY, eventType));
-        query.limit(limit);
-        query.orderBy(QueryBuilder.desc(ModelConstants.EVENT_TYPE_PROPERTY), QueryBuilder.desc(ModelConstants.ID_PROPERTY));
-        List<EventEntity> entities = findListByStatement(new TenantId(tenantId), query);
+        List<EventEntity> entities = findListByStatement(new TenantId(tenantId),
+                getFindLatestEventsStmt().bind(tenantId, entityId.getEntityType().name(), entityId.getId(), eventType, limit));
         return DaoUtil.convertDataList(entities);
     }
 
+    private PreparedStatement getFindEventStmt() {
+        return prepare("SELECT * FROM " + getColumnFamilyName() + " WHERE " +
+                ModelConstants.EVENT_TENANT_ID_PROPERTY + " = ? AND " +
+                ModelConstants.EVENT_ENTITY_TYPE_PROPERTY + " = ? AND " +
+                ModelConstants.EVENT_ENTITY_ID_PROPERTY + " = ? AND " +
+                ModelConstants.EVENT_TYPE_PROPERTY + " = ? AND " +
+                ModelConstants.EVENT_UID_PROPERTY + " = ?");
+    }
+
+    private PreparedStatement getFindLatestEventsStmt() {
+        return prepare("SELECT * FROM " + EVENT_BY_TYPE_AND_ID_VIEW_NAME + " WHERE " +
+                ModelConstants.EVENT_TENANT_ID_PROPERTY + " = ? AND " +
+                ModelConstants.EVENT_ENTITY_TYPE_PROPERTY + " = ? AND " +
+                ModelConstants.EVENT_ENTITY_ID_PROPERTY + " = ? AND " +
+                ModelConstants.EVENT_TYPE_PROPERTY + " = ? ORDER BY " +
+                ModelConstants.EVENT_TYPE_PROPERTY + " DESC, " +
+                ModelConstants.ID_PROPERTY + " DESC LIMIT ?");
+    }
+
     private Optional<Event> save(TenantId tenantId, EventEntity entity, boolean ifNotExists, int ttl) {
         try {
             return saveAsync(tenantId, entity, ifNotExists, ttl).get();
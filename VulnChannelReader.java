@@ -95,8 +95,12 @@ public abstract class ChannelReader implements Closeable, Comparable<ChannelRead
         buffer.clear();
         buffer.limit(opSize);
         readBytes(buffer, position);
-        BytesArray bytesArray = new BytesArray(buffer.array(), 0, buffer.limit());
-        return channelReference.stream().read(bytesArray.streamInput());
+        return read(new BytesArray(buffer.array(), 0, buffer.limit()));
+    }
+
+    /** decodes the operation held by the given bytes, which start with the op size */
+    Translog.Operation read(BytesArray bytes) throws IOException {
+        return channelReference.stream().read(bytes.streamInput());
     }
 
     /**
@@ -20,6 +20,7 @@ package org.elasticsearch.index.translog;
 
 import org.apache.lucene.util.IOUtils;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.bytes.BytesArray;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -38,6 +39,13 @@ public class ChannelSnapshot implements Closeable {
     // we use an atomic long to allow passing it by reference :(
     protected long position;
 
+    /** operations are decoded from blocks of this size instead of being read with two reads each */
+    static final int READ_AHEAD_SIZE = 64 * 1024;
+
+    // allocated on first use, holds the bytes of the file starting at readAheadPosition
+    private ByteBuffer readAhead;
+    private long readAheadPosition;
+
     public ChannelSnapshot(ChannelReader reader) {
         this.reader = reader;
         this.position = reader.firstPosition();
@@ -52,18 +60,51 @@ public class ChannelSnapshot implements Closeable {
     }
 
     public Translog.Operation next(ByteBuffer reusableBuffer) throws IOException {
-        if (position >= reader.sizeInBytes()) {
+        final long sizeInBytes = reader.sizeInBytes();
+        if (position >= sizeInBytes) {
             return null;
         }
+        if (fillReadAhead(position, 4, sizeInBytes)) {
+            // Add an extra 4 to account for the operation size integer itself
+            final int opSize = readAhead.getInt((int) (position - readAheadPosition)) + 4;
+            if (fillReadAhead(position, opSize, sizeInBytes)) {
+                Translog.Operation op = reader.read(new BytesArray(readAhead.array(), (int) (position - readAheadPosition), opSize));
+                position += opSize;
+                return op;
+            }
+        }
+        // operations larger than a block and the truncated tail of a file are read on their own
         final int opSize = reader.readSize(reusableBuffer, position);
         Translog.Operation op = reader.read(reusableBuffer, position, opSize);
         position += opSize;
         return op;
     }
 
+    /**
+     * Makes sure the given range of the file is held by the read ahead buffer, reading the next block
+     * if it isn't. Returns false if the range doesn't fit a block or goes beyond the end of the file.
+     */
+    private boolean fillReadAhead(long from, int length, long sizeInBytes) throws IOException {
+        if (length < 0 || length > READ_AHEAD_SIZE || from + length > sizeInBytes) {
+            return false;
+        }
+        if (readAhead != null && from >= readAheadPosition && from + length <= readAheadPosition + readAhead.limit()) {
+            return true;
+        }
+        if (readAhead == null) {
+            readAhead = ByteBuffer.allocate(READ_AHEAD_SIZE);
+        }
+        readAhead.clear();
+        readAhead.limit((int) Math.min(READ_AHEAD_SIZE, sizeInBytes - from));
+        reader.readBytes(readAhead, from);
+        readAheadPosition = from;
+        return true;
+    }
+
     @Override
     public void close() {
         if (closed.compareAndSet(false, true)) {
+            readAhead = null;
             try {
                 IOUtils.close(reader);
             } catch (IOException e) {
@@ -23,6 +23,8 @@ import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.store.InputStreamDataInput;
 import org.apache.lucene.store.OutputStreamDataOutput;
 import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.InputStreamStreamInput;
 import org.elasticsearch.common.io.stream.NoopStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -35,6 +37,7 @@ import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.zip.CRC32;
 
 /**
  * Version 1 of the translog file format. Writes a header to identify the
@@ -51,6 +54,10 @@ public class ChecksummedTranslogStream implements TranslogStream {
         // This absolutely must come first, or else reading the checksum becomes part of the checksum
         long expectedChecksum = in.getChecksum();
         long readChecksum = in.readInt() & 0xFFFF_FFFFL;
+        verifyChecksum(expectedChecksum, readChecksum);
+    }
+
+    private void verifyChecksum(long expectedChecksum, long readChecksum) throws IOException {
         if (readChecksum != expectedChecksum) {
             throw new TranslogCorruptedException("translog stream is corrupted, expected: 0x" +
                     Long.toHexString(expectedChecksum) + ", got: 0x" + Long.toHexString(readChecksum));
@@ -59,8 +66,11 @@ public class ChecksummedTranslogStream implements TranslogStream {
 
     @Override
     public Translog.Operation read(StreamInput inStream) throws IOException {
-        // TODO: validate size to prevent OOME
         int opSize = inStream.readInt();
+        if (inStream instanceof BytesStreamInput) {
+            return read((BytesStreamInput) inStream, opSize);
+        }
+        // TODO: validate size to prevent OOME
         // This BufferedChecksumStreamInput remains unclosed on purpose,
         // because closing it closes the underlying stream, which we don't
         // want to do here.
@@ -79,8 +89,53 @@ public class ChecksummedTranslogStream implements TranslogStream {
         return operation;
     }
 
+    /**
+     * Reads an operation that is fully available in the array of the given stream. The whole
+     * operation is checksummed with a single update before anything is deserialized, rather than
+     * byte by byte through a {@link BufferedChecksumStreamInput}.
+     */
+    private Translog.Operation read(BytesStreamInput in, int opSize) throws IOException {
+        // the checksum is the last 4 bytes of the operation
+        final int checksummedSize = opSize - 4;
+        if (opSize > in.available()) {
+            throw new TruncatedTranslogException("reached premature end of file, translog is truncated",
+                    new EOFException("operation size [" + opSize + "] exceeds the available [" + in.available() + "] bytes"));
+        }
+        Translog.Operation operation;
+        try {
+            if (checksummedSize <= 0) {
+                throw new IllegalStateException("invalid operation size [" + opSize + "]");
+            }
+            final byte[] bytes = in.underlyingBuffer();
+            final int start = in.position();
+            final CRC32 digest = new CRC32();
+            digest.update(bytes, start, checksummedSize);
+            final int checksumOffset = start + checksummedSize;
+            final int readChecksum = ((bytes[checksumOffset] & 0xFF) << 24) | ((bytes[checksumOffset + 1] & 0xFF) << 16)
+                    | ((bytes[checksumOffset + 2] & 0xFF) << 8) | (bytes[checksumOffset + 3] & 0xFF);
+            verifyChecksum(digest.getValue(), readChecksum & 0xFFFF_FFFFL);
+
+            Translog.Operation.Type type = Translog.Operation.Type.fromId(in.readByte());
+            operation = TranslogStreams.newOperationFromType(type);
+            operation.readFrom(in);
+            if (in.position() != checksumOffset) {
+                throw new IllegalStateException("operation of size [" + opSize + "] read [" + (in.position() - start + 4) + "] bytes");
+            }
+            in.skip(4);
+        } catch (EOFException e) {
+            throw new TruncatedTranslogException("reached premature end of file, translog is truncated", e);
+        } catch (AssertionError|Exception e) {
+            throw new TranslogCorruptedException("translog corruption while reading from stream", e);
+        }
+        return operation;
+    }
+
     @Override
     public void write(StreamOutput outStream, Translog.Operation op) throws IOException {
+        if (outStream instanceof BytesStreamOutput) {
+            write((BytesStreamOutput) outStream, op);
+            return;
+        }
         // We first write to a NoopStreamOutput to get the size of the
         // operation. We could write to a byte array and then send that as an
         // alternative, but here we choose to use CPU over allocating new
@@ -102,6 +157,27 @@ public class ChecksummedTranslogStream implements TranslogStream {
         out.writeInt((int)checksum);
     }
 
+    /**
+     * Serializes the operation only once, straight into the buffer of the given stream, and
+     * back-patches its size afterwards.
+     */
+    private void write(BytesStreamOutput outStream, Translog.Operation op) throws IOException {
+        final long sizePosition = outStream.position();
+        outStream.writeInt(0); // opSize placeholder, it is not checksummed
+        // This BufferedChecksumStreamOutput remains unclosed on purpose,
+        // because closing it closes the underlying stream, which we don't
+        // want to do here.
+        BufferedChecksumStreamOutput out = new BufferedChecksumStreamOutput(outStream);
+        out.writeByte(op.opType().id());
+        op.writeTo(out);
+        long checksum = out.getChecksum();
+        out.writeInt((int)checksum);
+        final long endPosition = outStream.position();
+        outStream.seek(sizePosition);
+        outStream.writeInt((int) (endPosition - sizePosition - 4));
+        outStream.seek(endPosition);
+    }
+
     @Override
     public int writeHeader(FileChannel channel) throws IOException {
         // This OutputStreamDataOutput is intentionally not closed because
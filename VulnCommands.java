@@ -35,6 +35,7 @@ import org.apache.zookeeper.Environment.Entry;
 import org.apache.zookeeper.Version;
 import org.apache.zookeeper.server.DataTree;
 import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ServerHistograms;
 import org.apache.zookeeper.server.ServerMetrics;
 import org.apache.zookeeper.server.ZooKeeperServer;
 import org.apache.zookeeper.server.ZooTrace;
@@ -136,6 +137,7 @@ public class Commands {
         registerCommand(new IsroCommand());
         registerCommand(new LastSnapshotCommand());
         registerCommand(new LeaderCommand());
+        registerCommand(new MetricsCommand());
         registerCommand(new MonitorCommand());
         registerCommand(new ObserverCnxnStatResetCommand());
         registerCommand(new RuokCommand());
@@ -449,6 +451,30 @@ public class Commands {
 
     }
 
+    /**
+     * Same values as {@link MonitorCommand}, plus the latency histograms of
+     * {@link ServerHistograms}. Request it with format=prometheus to get the
+     * Prometheus text exposition format.
+     *
+     * @see PrometheusOutputter
+     */
+    public static class MetricsCommand extends CommandBase {
+
+        public MetricsCommand() {
+            super(Arrays.asList("metrics", "metr"));
+        }
+
+        @Override
+        public CommandResponse run(ZooKeeperServer zkServer, Map<String, String> kwargs) {
+            CommandResponse response = initializeResponse();
+            zkServer.dumpMonitorValues(response::put);
+            ServerMetrics.getMetrics().getMetricsProvider().dump(response::put);
+            ServerHistograms.getHistograms().dump(response::put);
+            return response;
+        }
+
+    }
+
     /**
      * Reset all observer connection statistics.
      */
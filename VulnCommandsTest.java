@@ -20,20 +20,25 @@ package org.apache.zookeeper.server.admin;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.zookeeper.metrics.MetricsUtils;
 import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ServerHistograms;
 import org.apache.zookeeper.server.ServerStats;
 import org.apache.zookeeper.server.ZooKeeperServer;
+import org.apache.zookeeper.server.metric.LatencyHistogram;
 import org.apache.zookeeper.server.quorum.BufferStats;
 import org.apache.zookeeper.test.ClientBase;
 import org.junit.Test;
@@ -200,6 +205,25 @@ public class CommandsTest extends ClientBase {
         testCommand("monitor", fieldsArray);
     }
 
+    @Test
+    public void testMetrics() throws IOException, InterruptedException {
+        ZooKeeperServer zks = serverFactory.getZooKeeperServer();
+        CommandResponse response = Commands.runCommand("metrics", zks, new HashMap<String, String>());
+        Map<String, Object> result = response.toMap();
+        assertNull(result.get("error"));
+        assertTrue(result.get("version") instanceof String);
+        assertTrue(result.get("znode_count") instanceof Integer);
+        assertTrue(result.get(ServerHistograms.FSYNC_TIME) instanceof LatencyHistogram);
+
+        StringWriter out = new StringWriter();
+        new PrometheusOutputter().output(response, new PrintWriter(out));
+        String text = out.toString();
+        assertTrue(text, text.contains("# TYPE zookeeper_fsync_time_ms histogram"));
+        assertTrue(text, text.contains("zookeeper_fsync_time_ms_bucket{le=\"+Inf\"}"));
+        assertTrue(text, text.contains("zookeeper_znode_count "));
+        assertFalse(text, text.contains("zookeeper_version"));
+    }
+
     @Test
     public void testRuok() throws IOException, InterruptedException {
         testCommand("ruok");
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.server.actors.service;
 
+import akka.actor.ActorCell;
+import akka.actor.ActorContext;
 import akka.actor.Terminated;
 import akka.actor.UntypedActor;
 import org.slf4j.Logger;
@@ -22,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.common.msg.TbActorMsg;
 
+import java.util.concurrent.TimeUnit;
 
 public abstract class ContextAwareActor extends UntypedActor {
 
@@ -29,8 +32,15 @@ public abstract class ContextAwareActor extends UntypedActor {
 
     public static final int ENTITY_PACK_LIMIT = 1024;
 
+    private static final long STATS_REPORT_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
     protected final ActorSystemContext systemContext;
 
+    private long processedMsgs;
+    private long processingTimeNanos;
+    private long maxProcessingTimeNanos;
+    private long lastStatsReportTs = System.currentTimeMillis();
+
     public ContextAwareActor(ActorSystemContext systemContext) {
         super();
         this.systemContext = systemContext;
@@ -42,12 +52,16 @@ public abstract class ContextAwareActor extends UntypedActor {
             log.debug("Processing msg: {}", msg);
         }
         if (msg instanceof TbActorMsg) {
+            boolean statsEnabled = log.isDebugEnabled();
+            long startNanos = statsEnabled ? System.nanoTime() : 0;
             try {
                 if (!process((TbActorMsg) msg)) {
                     log.warn("Unknown message: {}!", msg);
                 }
-            } catch (Exception e) {
-                throw e;
+            } finally {
+                if (statsEnabled) {
+                    onProcessed(System.nanoTime() - startNanos);
+                }
             }
         } else if (msg instanceof Terminated) {
             processTermination((Terminated) msg);
@@ -59,5 +73,32 @@ public abstract class ContextAwareActor extends UntypedActor {
     protected void processTermination(Terminated msg) {
     }
 
+    private void onProcessed(long durationNanos) {
+        processedMsgs++;
+        processingTimeNanos += durationNanos;
+        maxProcessingTimeNanos = Math.max(maxProcessingTimeNanos, durationNanos);
+        long ts = System.currentTimeMillis();
+        if (ts - lastStatsReportTs >= STATS_REPORT_INTERVAL_MS) {
+            log.debug("[{}] Processed [{}] msgs, avg processing time [{}] us, max [{}] us, mailbox size [{}]",
+                    getSelf().path(), processedMsgs,
+                    TimeUnit.NANOSECONDS.toMicros(processingTimeNanos / processedMsgs),
+                    TimeUnit.NANOSECONDS.toMicros(maxProcessingTimeNanos),
+                    getMailboxSize());
+            processedMsgs = 0;
+            processingTimeNanos = 0;
+            maxProcessingTimeNanos = 0;
+            lastStatsReportTs = ts;
+        }
+    }
+
+    /**
+     * Number of messages waiting in this actor's mailbox, or -1 if the mailbox is not accessible.
+     * Counting walks the default mailbox, so it is only done when the stats are reported.
+     */
+    protected int getMailboxSize() {
+        ActorContext context = getContext();
+        return context instanceof ActorCell ? ((ActorCell) context).mailbox().numberOfMessages() : -1;
+    }
+
     protected abstract boolean process(TbActorMsg msg);
 }
\ No newline at end of file
@@ -19,13 +19,19 @@
 package org.apache.zookeeper.server;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -34,7 +40,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import org.apache.jute.BinaryInputArchive;
+import org.apache.jute.BinaryOutputArchive;
 import org.apache.jute.InputArchive;
 import org.apache.jute.OutputArchive;
 import org.apache.jute.Record;
@@ -97,6 +111,28 @@ public class DataTree {
 
     private static final Logger LOG = LoggerFactory.getLogger(DataTree.class);
 
+    /**
+     * Number of threads used to serialize and deserialize the nodes of a snapshot.
+     * With a value greater than 1 the nodes are written as independently checksummed
+     * segments, one or more top-level subtrees each, which older servers can't read.
+     * Snapshots are always read in either format.
+     */
+    public static final String SNAPSHOT_PARALLELISM = "zookeeper.snapshot.parallelism";
+
+    /**
+     * Written in place of the first node path to mark a segmented snapshot. It is not
+     * a valid znode path, so it can't clash with the root node path of the legacy format.
+     */
+    static final String SEGMENTED_SNAPSHOT_MARKER = "\u0000segments";
+
+    /**
+     * Segments are written as a sequence of buffers of at most this size, so that segments
+     * larger than jute.maxbuffer can be read back whatever its value on the reading server.
+     */
+    static final int SEGMENT_CHUNK_SIZE = 64 * 1024;
+
+    private int snapshotParallelism = Integer.getInteger(SNAPSHOT_PARALLELISM, 1);
+
     private final RateLogger RATE_LOGGER = new RateLogger(LOG, 15 * 60 * 1000);
 
     /**
@@ -154,6 +190,9 @@ public class DataTree {
      */
     private final Map<Long, HashSet<String>> ephemerals = new ConcurrentHashMap<Long, HashSet<String>>();
 
+    /** number of paths in all ephemerals sets, so that metrics don't walk the sessions */
+    private final AtomicInteger ephemeralsCount = new AtomicInteger();
+
     /**
      * This set contains the paths of all container nodes
      */
@@ -228,15 +267,23 @@ public class DataTree {
     }
 
     public int getEphemeralsCount() {
-        int result = 0;
-        for (HashSet<String> set : ephemerals.values()) {
-            result += set.size();
+        return ephemeralsCount.get();
+    }
+
+    private Set<String> removeEphemerals(long sessionId) {
+        Set<String> paths = ephemerals.remove(sessionId);
+        if (paths != null) {
+            synchronized (paths) {
+                ephemeralsCount.addAndGet(-paths.size());
+            }
         }
-        return result;
+        return paths;
     }
 
     /**
-     * Get the size of the nodes based on path and data length.
+     * Get the size of the nodes based on path and data length. This walks and
+     * locks every node; {@link #cachedApproximateDataSize()} returns the same
+     * value from a counter maintained on every change.
      *
      * @return size of the data
      */
@@ -524,7 +571,9 @@ public class DataTree {
                     ephemerals.put(ephemeralOwner, list);
                 }
                 synchronized (list) {
-                    list.add(path);
+                    if (list.add(path)) {
+                        ephemeralsCount.incrementAndGet();
+                    }
                 }
             }
             if (outputStat != null) {
@@ -612,7 +661,9 @@ public class DataTree {
                 Set<String> nodes = ephemerals.get(eowner);
                 if (nodes != null) {
                     synchronized (nodes) {
-                        nodes.remove(path);
+                        if (nodes.remove(path)) {
+                            ephemeralsCount.decrementAndGet();
+                        }
                     }
                 }
             }
@@ -969,7 +1020,7 @@ public class DataTree {
                 long sessionId = header.getClientId();
                 if (txn != null) {
                     killSession(sessionId, header.getZxid(),
-                            ephemerals.remove(sessionId),
+                            removeEphemerals(sessionId),
                             ((CloseSessionTxn) txn).getPaths2Delete());
                 } else {
                     killSession(sessionId, header.getZxid());
@@ -1145,7 +1196,7 @@ public class DataTree {
         // so there is no need for synchronization. The list is not
         // changed here. Only create and delete change the list which
         // are again called from FinalRequestProcessor in sequence.
-        killSession(session, zxid, ephemerals.remove(session), null);
+        killSession(session, zxid, removeEphemerals(session), null);
     }
 
     void killSession(long session, long zxid, Set<String> paths2DeleteLocal,
@@ -1326,17 +1377,9 @@ public class DataTree {
         if (node == null) {
             return;
         }
-        String[] children = null;
-        DataNode nodeCopy;
-        synchronized (node) {
-            StatPersisted statCopy = new StatPersisted();
-            copyStatPersisted(node.stat, statCopy);
-            //we do not need to make a copy of node.data because the contents
-            //are never changed
-            nodeCopy = new DataNode(node.data, node.acl, statCopy);
-            Set<String> childs = node.getChildren();
-            children = childs.toArray(new String[childs.size()]);
-        }
+        List<String> childList = new ArrayList<>();
+        DataNode nodeCopy = copyNode(node, childList);
+        String[] children = childList.toArray(new String[0]);
         serializeNodeData(oa, pathString, nodeCopy);
         path.append('/');
         int off = path.length();
@@ -1350,6 +1393,17 @@ public class DataTree {
         }
     }
 
+    private DataNode copyNode(DataNode node, List<String> children) {
+        synchronized (node) {
+            StatPersisted statCopy = new StatPersisted();
+            copyStatPersisted(node.stat, statCopy);
+            //we do not need to make a copy of node.data because the contents
+            //are never changed
+            children.addAll(node.getChildren());
+            return new DataNode(node.data, node.acl, statCopy);
+        }
+    }
+
     // visiable for test
     public void serializeNodeData(OutputArchive oa, String path, DataNode node) throws IOException {
         oa.writeString(path, "path");
@@ -1361,7 +1415,12 @@ public class DataTree {
     }
 
     public void serializeNodes(OutputArchive oa) throws IOException {
-        serializeNode(oa, new StringBuilder());
+        DataNode rootNode = getNode("");
+        if (snapshotParallelism > 1 && rootNode != null) {
+            serializeSegments(oa, rootNode);
+        } else {
+            serializeNode(oa, new StringBuilder());
+        }
         // / marks end of stream
         // we need to check if clear had been called in between the snapshot.
         if (root != null) {
@@ -1369,6 +1428,149 @@ public class DataTree {
         }
     }
 
+    /**
+     * Writes the root node into the first segment and splits the top-level subtrees among
+     * the remaining ones, which are serialized and checksummed in parallel and written in
+     * order. At most two segments per thread are buffered at a time. Like the single
+     * threaded path, this takes a fuzzy snapshot: each node is copied under its own lock.
+     */
+    private void serializeSegments(OutputArchive oa, DataNode rootNode) throws IOException {
+        List<String> topLevel = new ArrayList<>();
+        DataNode rootCopy = copyNode(rootNode, topLevel);
+        int segmentCount = Math.max(1, Math.min(topLevel.size(), snapshotParallelism * 4));
+        List<List<String>> segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(new ArrayList<>());
+        }
+        for (int i = 0; i < topLevel.size(); i++) {
+            segments.get(i % segmentCount).add(topLevel.get(i));
+        }
+
+        oa.writeString(SEGMENTED_SNAPSHOT_MARKER, "path");
+        oa.writeInt(segmentCount + 1, "segments");
+        ByteArrayOutputStream rootSegment = new ByteArrayOutputStream();
+        serializeNodeData(BinaryOutputArchive.getArchive(rootSegment), "", rootCopy);
+        writeSegment(oa, rootSegment.toByteArray());
+
+        ExecutorService executor = Executors.newFixedThreadPool(snapshotParallelism);
+        try {
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            int next = 0;
+            while (next < segments.size() || !pending.isEmpty()) {
+                while (next < segments.size() && pending.size() < snapshotParallelism * 2) {
+                    List<String> children = segments.get(next++);
+                    pending.add(executor.submit(() -> serializeSegment(children)));
+                }
+                writeSegment(oa, pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while serializing snapshot segments", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to serialize snapshot segment", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private byte[] serializeSegment(List<String> children) throws IOException {
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        OutputArchive segmentArchive = BinaryOutputArchive.getArchive(segment);
+        StringBuilder path = new StringBuilder();
+        for (String child : children) {
+            path.setLength(0);
+            path.append('/').append(child);
+            serializeNode(segmentArchive, path);
+        }
+        return segment.toByteArray();
+    }
+
+    /**
+     * Writes the segment as chunks of at most {@link #SEGMENT_CHUNK_SIZE} bytes, followed by
+     * an empty chunk and the checksum of the whole segment.
+     */
+    private static void writeSegment(OutputArchive oa, byte[] segment) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(segment, 0, segment.length);
+        for (int offset = 0; offset < segment.length; offset += SEGMENT_CHUNK_SIZE) {
+            int end = Math.min(segment.length, offset + SEGMENT_CHUNK_SIZE);
+            oa.writeBuffer(Arrays.copyOfRange(segment, offset, end), "chunk");
+        }
+        oa.writeBuffer(new byte[0], "chunk");
+        oa.writeLong(crc.getValue(), "checksum");
+    }
+
+    private static byte[] readSegment(InputArchive ia, int index) throws IOException {
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        byte[] chunk = ia.readBuffer("chunk");
+        while (chunk != null && chunk.length > 0) {
+            crc.update(chunk, 0, chunk.length);
+            segment.write(chunk, 0, chunk.length);
+            chunk = ia.readBuffer("chunk");
+        }
+        long checksum = ia.readLong("checksum");
+        if (chunk == null || crc.getValue() != checksum) {
+            throw new IOException("Invalid Datatree, checksum mismatch in snapshot segment " + index);
+        }
+        return segment.toByteArray();
+    }
+
+    /**
+     * Reads the checksummed segments written by {@link #serializeSegments}. Segments are
+     * decoded in parallel while the following ones are read, and their nodes are added to
+     * the tree in the order they were written, so every parent is still added before its
+     * children. Like on the write path, at most two segments per thread are held at a time.
+     */
+    private void deserializeSegments(InputArchive ia) throws IOException {
+        int segmentCount = ia.readInt("segments");
+        int threads = Math.max(1, Math.min(snapshotParallelism, segmentCount));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Deque<Future<List<Entry<String, DataNode>>>> pending = new ArrayDeque<>();
+            for (int i = 0; i < segmentCount; i++) {
+                byte[] segment = readSegment(ia, i);
+                pending.add(executor.submit(() -> deserializeSegment(segment)));
+                if (pending.size() >= threads * 2) {
+                    addDeserializedNodes(pending.poll().get());
+                }
+            }
+            while (!pending.isEmpty()) {
+                addDeserializedNodes(pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while deserializing snapshot segments", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to deserialize snapshot segment", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void addDeserializedNodes(List<Entry<String, DataNode>> entries) throws IOException {
+        for (Entry<String, DataNode> entry : entries) {
+            addDeserializedNode(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static List<Entry<String, DataNode>> deserializeSegment(byte[] segment) throws IOException {
+        ByteArrayInputStream bais = new ByteArrayInputStream(segment);
+        InputArchive segmentArchive = BinaryInputArchive.getArchive(bais);
+        List<Entry<String, DataNode>> result = new ArrayList<>();
+        while (bais.available() > 0) {
+            String path = segmentArchive.readString("path");
+            DataNode node = new DataNode();
+            segmentArchive.readRecord(node, "node");
+            result.add(new AbstractMap.SimpleImmutableEntry<>(path, node));
+        }
+        return result;
+    }
+
+    public void setSnapshotParallelism(int snapshotParallelism) {
+        this.snapshotParallelism = snapshotParallelism;
+    }
+
     public void serialize(OutputArchive oa, String tag) throws IOException {
         serializeAcls(oa);
         serializeNodes(oa);
@@ -1380,49 +1582,20 @@ public class DataTree {
         pTrie.clear();
         nodeDataSize.set(0);
         String path = ia.readString("path");
+        if (SEGMENTED_SNAPSHOT_MARKER.equals(path)) {
+            deserializeSegments(ia);
+            path = ia.readString("path");
+        }
         while (!"/".equals(path)) {
             DataNode node = new DataNode();
             ia.readRecord(node, "node");
-            nodes.put(path, node);
-            synchronized (node) {
-                aclCache.addUsage(node.acl);
-            }
-            int lastSlash = path.lastIndexOf('/');
-            if (lastSlash == -1) {
-                root = node;
-            } else {
-                String parentPath = path.substring(0, lastSlash);
-                DataNode parent = nodes.get(parentPath);
-                if (parent == null) {
-                    throw new IOException("Invalid Datatree, unable to find "
-                                          + "parent "
-                                          + parentPath
-                                          + " of path "
-                                          + path);
-                }
-                parent.addChild(path.substring(lastSlash + 1));
-                long eowner = node.stat.getEphemeralOwner();
-                EphemeralType ephemeralType = EphemeralType.get(eowner);
-                if (ephemeralType == EphemeralType.CONTAINER) {
-                    containers.add(path);
-                } else if (ephemeralType == EphemeralType.TTL) {
-                    ttls.add(path);
-                } else if (eowner != 0) {
-                    HashSet<String> list = ephemerals.get(eowner);
-                    if (list == null) {
-                        list = new HashSet<String>();
-                        ephemerals.put(eowner, list);
-                    }
-                    list.add(path);
-                }
-            }
+            addDeserializedNode(path, node);
             path = ia.readString("path");
         }
         // have counted digest for root node with "", ignore here to avoid
         // counting twice for root node
         nodes.putWithoutDigest("/", root);
-
-        nodeDataSize.set(approximateDataSize());
+        nodeDataSize.addAndGet(getNodeSize(rootZookeeper, root.data));
 
         // we are done with deserializing the
         // the datatree
@@ -1433,6 +1606,45 @@ public class DataTree {
         aclCache.purgeUnused();
     }
 
+    private void addDeserializedNode(String path, DataNode node) throws IOException {
+        nodes.put(path, node);
+        synchronized (node) {
+            aclCache.addUsage(node.acl);
+        }
+        nodeDataSize.addAndGet(getNodeSize(path, node.data));
+        int lastSlash = path.lastIndexOf('/');
+        if (lastSlash == -1) {
+            root = node;
+        } else {
+            String parentPath = path.substring(0, lastSlash);
+            DataNode parent = nodes.get(parentPath);
+            if (parent == null) {
+                throw new IOException("Invalid Datatree, unable to find "
+                                      + "parent "
+                                      + parentPath
+                                      + " of path "
+                                      + path);
+            }
+            parent.addChild(path.substring(lastSlash + 1));
+            long eowner = node.stat.getEphemeralOwner();
+            EphemeralType ephemeralType = EphemeralType.get(eowner);
+            if (ephemeralType == EphemeralType.CONTAINER) {
+                containers.add(path);
+            } else if (ephemeralType == EphemeralType.TTL) {
+                ttls.add(path);
+            } else if (eowner != 0) {
+                HashSet<String> list = ephemerals.get(eowner);
+                if (list == null) {
+                    list = new HashSet<String>();
+                    ephemerals.put(eowner, list);
+                }
+                if (list.add(path)) {
+                    ephemeralsCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
     /**
      * Summary of the watches on the datatree.
      * @param pwriter the output to write to
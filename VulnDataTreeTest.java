@@ -24,6 +24,7 @@ import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -32,6 +33,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Semaphore;
@@ -248,6 +250,7 @@ public class DataTreeTest extends ZKTestCase {
         ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
         BinaryInputArchive ia = BinaryInputArchive.getArchive(bais);
         dserTree.deserialize(ia, "test");
+        assertEquals(dserTree.approximateDataSize(), dserTree.cachedApproximateDataSize());
 
         Field pfield = DataTree.class.getDeclaredField("pTrie");
         pfield.setAccessible(true);
@@ -257,6 +260,89 @@ public class DataTreeTest extends ZKTestCase {
         assertEquals("/", pTrie.findMaxPrefix("/bug"), "/bug is still in pTrie");
     }
 
+    @Test
+    @Timeout(value = 60)
+    public void testSegmentedSerializeRoundTrip() throws Exception {
+        DataTree tree = new DataTree();
+        for (int i = 0; i < 20; i++) {
+            tree.createNode("/top" + i, new byte[]{(byte) i}, null, 0, -1, i, 1);
+            for (int j = 0; j < 5; j++) {
+                tree.createNode("/top" + i + "/child" + j, new byte[20], null, j == 0 ? 1000 + i : 0, -1, i, 1);
+            }
+        }
+        tree.setSnapshotParallelism(4);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        tree.serialize(BinaryOutputArchive.getArchive(baos), "test");
+
+        DataTree dserTree = new DataTree();
+        dserTree.setSnapshotParallelism(4);
+        dserTree.deserialize(BinaryInputArchive.getArchive(new ByteArrayInputStream(baos.toByteArray())), "test");
+
+        assertEquals(tree.getNodeCount(), dserTree.getNodeCount());
+        assertEquals(tree.approximateDataSize(), dserTree.approximateDataSize());
+        assertEquals(dserTree.approximateDataSize(), dserTree.cachedApproximateDataSize());
+        assertEquals(tree.getEphemeralsCount(), dserTree.getEphemeralsCount());
+        assertEquals(tree.getTreeDigest(), dserTree.getTreeDigest());
+        assertEquals(5, dserTree.getNode("/top7").getChildren().size());
+        assertEquals(7, dserTree.getNode("/top7").getData()[0]);
+
+        // a tree configured for sequential snapshots still reads segmented ones
+        DataTree sequentialTree = new DataTree();
+        sequentialTree.deserialize(BinaryInputArchive.getArchive(new ByteArrayInputStream(baos.toByteArray())), "test");
+        assertEquals(tree.getNodeCount(), sequentialTree.getNodeCount());
+    }
+
+    @Test
+    @Timeout(value = 60)
+    public void testSegmentLargerThanMaxBufferRoundTrip() throws Exception {
+        // a single top-level subtree of 2MB ends up in one segment, twice the default jute.maxbuffer
+        DataTree tree = new DataTree();
+        tree.createNode("/big", new byte[0], null, 0, -1, 1, 1);
+        for (int i = 0; i < 20; i++) {
+            byte[] data = new byte[100 * 1024];
+            data[0] = (byte) i;
+            tree.createNode("/big/child" + i, data, null, 0, -1, 2 + i, 1);
+        }
+        tree.setSnapshotParallelism(2);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        tree.serialize(BinaryOutputArchive.getArchive(baos), "test");
+        assertTrue(baos.size() > 2 * 1024 * 1024);
+
+        DataTree dserTree = new DataTree();
+        dserTree.setSnapshotParallelism(2);
+        dserTree.deserialize(BinaryInputArchive.getArchive(new ByteArrayInputStream(baos.toByteArray())), "test");
+
+        assertEquals(tree.getNodeCount(), dserTree.getNodeCount());
+        assertEquals(tree.approximateDataSize(), dserTree.approximateDataSize());
+        assertEquals(tree.getTreeDigest(), dserTree.getTreeDigest());
+        assertEquals(20, dserTree.getNode("/big").getChildren().size());
+        assertEquals(13, dserTree.getNode("/big/child13").getData()[0]);
+    }
+
+    @Test
+    @Timeout(value = 60)
+    public void testSegmentChecksumMismatch() throws Exception {
+        DataTree tree = new DataTree();
+        tree.createNode("/corrupt", "0123456789".getBytes(), null, 0, 1, 1, 1);
+        tree.setSnapshotParallelism(2);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        tree.serialize(BinaryOutputArchive.getArchive(baos), "test");
+        byte[] snapshot = baos.toByteArray();
+        String content = new String(snapshot, StandardCharsets.ISO_8859_1);
+        snapshot[content.indexOf("0123456789")] ^= 1;
+
+        DataTree dserTree = new DataTree();
+        try {
+            dserTree.deserialize(BinaryInputArchive.getArchive(new ByteArrayInputStream(snapshot)), "test");
+            fail("Corrupted segment is not detected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("checksum mismatch"));
+        }
+    }
+
 
     /* ZOOKEEPER-3531 - org.apache.zookeeper.server.DataTree#serialize calls the aclCache.serialize when doing
      * dataree serialization, however, org.apache.zookeeper.server.ReferenceCountedACLCache#serialize
@@ -16,11 +16,15 @@
 package org.thingsboard.server.service.mail;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.NestedRuntimeException;
@@ -28,6 +32,7 @@ import org.springframework.core.io.InputStreamSource;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
 import org.thingsboard.rule.engine.api.MailService;
@@ -41,18 +46,25 @@ import org.thingsboard.server.common.data.exception.ThingsboardException;
 import org.thingsboard.server.common.data.id.CustomerId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.tools.TbRateLimits;
 import org.thingsboard.server.dao.exception.IncorrectParameterException;
 import org.thingsboard.server.dao.settings.AdminSettingsService;
 import org.thingsboard.server.queue.usagestats.TbApiUsageClient;
 import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
 import javax.mail.internet.MimeMessage;
 import java.io.ByteArrayInputStream;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 @Service
 @Slf4j
@@ -73,9 +85,31 @@ public class DefaultMailService implements MailService {
     @Autowired
     private TbApiUsageStateService apiUsageStateService;
 
-    private JavaMailSenderImpl mailSender;
+    @Value("${mail.pool.size:4}")
+    private int poolSize;
 
-    private String mailFrom;
+    @Value("${mail.pool.queue_capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${mail.pool.batch_size:50}")
+    private int batchSize;
+
+    @Value("${mail.pool.idle_timeout_ms:30000}")
+    private long idleTimeoutMs;
+
+    @Value("${mail.pool.stats_enabled:false}")
+    private boolean statsEnabled;
+
+    @Value("${mail.per_tenant_rate_limits:}")
+    private String perTenantRateLimits;
+
+    private final ConcurrentMap<TenantId, TbRateLimits> tenantRateLimits = new ConcurrentHashMap<>();
+
+    private MailDispatcher dispatcher;
+
+    private volatile JavaMailSenderImpl mailSender;
+
+    private volatile String mailFrom;
 
     public DefaultMailService(MessageSource messages, Configuration freemarkerConfig, AdminSettingsService adminSettingsService, TbApiUsageClient apiUsageClient) {
         this.messages = messages;
@@ -86,16 +120,34 @@ public class DefaultMailService implements MailService {
 
     @PostConstruct
     private void init() {
+        dispatcher = new MailDispatcher(poolSize, queueCapacity, batchSize, idleTimeoutMs);
+        dispatcher.start();
         updateMailConfiguration();
     }
 
+    @PreDestroy
+    private void destroy() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mail.pool.stats_print_interval_ms:60000}")
+    public void printStats() {
+        if (statsEnabled && dispatcher != null) {
+            dispatcher.printStats();
+        }
+    }
+
     @Override
     public void updateMailConfiguration() {
         AdminSettings settings = adminSettingsService.findAdminSettingsByKey(new TenantId(EntityId.NULL_UUID), "mail");
         if (settings != null) {
             JsonNode jsonConfig = settings.getJsonValue();
-            mailSender = createMailSender(jsonConfig);
+            JavaMailSenderImpl newMailSender = createMailSender(jsonConfig);
+            mailSender = newMailSender;
             mailFrom = jsonConfig.get("mailFrom").asText();
+            dispatcher.setTransportFactory(() -> connectTransport(newMailSender));
         } else {
             throw new IncorrectParameterException("Failed to date mail configuration. Settings not found!");
         }
@@ -111,6 +163,14 @@ public class DefaultMailService implements MailService {
         return mailSender;
     }
 
+    private Transport connectTransport(JavaMailSenderImpl mailSender) throws MessagingException {
+        Transport transport = mailSender.getSession().getTransport();
+        String username = StringUtils.isEmpty(mailSender.getUsername()) ? null : mailSender.getUsername();
+        String password = StringUtils.isEmpty(mailSender.getPassword()) ? null : mailSender.getPassword();
+        transport.connect(mailSender.getHost(), mailSender.getPort(), username, password);
+        return transport;
+    }
+
     private Properties createJavaMailProperties(JsonNode jsonConfig) {
         Properties javaMailProperties = new Properties();
         String protocol = jsonConfig.get("smtpProtocol").asText();
@@ -162,6 +222,7 @@ public class DefaultMailService implements MailService {
 
     @Override
     public void sendEmail(TenantId tenantId, String email, String subject, String message) throws ThingsboardException {
+        checkRateLimits(tenantId);
         sendMail(mailSender, mailFrom, email, subject, message);
     }
 
@@ -237,7 +298,23 @@ public class DefaultMailService implements MailService {
 
     @Override
     public void send(TenantId tenantId, CustomerId customerId, String from, String to, String cc, String bcc, String subject, String body, boolean isHtml, Map<String, String> images) throws ThingsboardException {
-        sendMail(tenantId, customerId, from, to, cc, bcc, subject, body, isHtml, images, this.mailSender);
+        waitForSend(sendAsync(tenantId, customerId, from, to, cc, bcc, subject, body, isHtml, images));
+    }
+
+    @Override
+    public ListenableFuture<Void> sendAsync(TenantId tenantId, CustomerId customerId, String from, String to, String cc, String bcc, String subject, String body, boolean isHtml, Map<String, String> images) {
+        try {
+            checkRateLimits(tenantId);
+            checkApiUsageState(tenantId);
+            MimeMessage mailMsg = createMimeMessage(this.mailSender, from, to, cc, bcc, subject, body, isHtml, images);
+            ListenableFuture<Void> future = dispatcher.submit(mailMsg);
+            return Futures.transform(future, v -> {
+                apiUsageClient.report(tenantId, customerId, ApiUsageRecordKey.EMAIL_EXEC_COUNT, 1);
+                return null;
+            }, MoreExecutors.directExecutor());
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
     }
 
     @Override
@@ -246,42 +323,76 @@ public class DefaultMailService implements MailService {
     }
 
     private void sendMail(TenantId tenantId, CustomerId customerId, String from, String to, String cc, String bcc, String subject, String body, boolean isHtml, Map<String, String> images, JavaMailSender javaMailSender) throws ThingsboardException {
-        if (apiUsageStateService.getApiUsageState(tenantId).isEmailSendEnabled()) {
-            try {
-                MimeMessage mailMsg = javaMailSender.createMimeMessage();
-                boolean multipart = (images != null && !images.isEmpty());
-                MimeMessageHelper helper = new MimeMessageHelper(mailMsg, multipart, "UTF-8");
-                helper.setFrom(StringUtils.isBlank(from) ? mailFrom : from);
-                helper.setTo(to.split("\\s*,\\s*"));
-                if (!StringUtils.isBlank(cc)) {
-                    helper.setCc(cc.split("\\s*,\\s*"));
-                }
-                if (!StringUtils.isBlank(bcc)) {
-                    helper.setBcc(bcc.split("\\s*,\\s*"));
-                }
-                helper.setSubject(subject);
-                helper.setText(body, isHtml);
-
-                if (multipart) {
-                    for (String imgId : images.keySet()) {
-                        String imgValue = images.get(imgId);
-                        String value = imgValue.replaceFirst("^data:image/[^;]*;base64,?", "");
-                        byte[] bytes = javax.xml.bind.DatatypeConverter.parseBase64Binary(value);
-                        String contentType = helper.getFileTypeMap().getContentType(imgId);
-                        InputStreamSource iss = () -> new ByteArrayInputStream(bytes);
-                        helper.addInline(imgId, iss, contentType);
-                    }
-                }
-                javaMailSender.send(helper.getMimeMessage());
-                apiUsageClient.report(tenantId, customerId, ApiUsageRecordKey.EMAIL_EXEC_COUNT, 1);
-            } catch (Exception e) {
-                throw handleException(e);
+        checkRateLimits(tenantId);
+        checkApiUsageState(tenantId);
+        try {
+            MimeMessage mailMsg = createMimeMessage(javaMailSender, from, to, cc, bcc, subject, body, isHtml, images);
+            javaMailSender.send(mailMsg);
+            apiUsageClient.report(tenantId, customerId, ApiUsageRecordKey.EMAIL_EXEC_COUNT, 1);
+        } catch (Exception e) {
+            throw handleException(e);
+        }
+    }
+
+    private MimeMessage createMimeMessage(JavaMailSender javaMailSender, String from, String to, String cc, String bcc, String subject, String body, boolean isHtml, Map<String, String> images) throws MessagingException {
+        MimeMessage mailMsg = javaMailSender.createMimeMessage();
+        boolean multipart = (images != null && !images.isEmpty());
+        MimeMessageHelper helper = new MimeMessageHelper(mailMsg, multipart, "UTF-8");
+        helper.setFrom(StringUtils.isBlank(from) ? mailFrom : from);
+        helper.setTo(to.split("\\s*,\\s*"));
+        if (!StringUtils.isBlank(cc)) {
+            helper.setCc(cc.split("\\s*,\\s*"));
+        }
+        if (!StringUtils.isBlank(bcc)) {
+            helper.setBcc(bcc.split("\\s*,\\s*"));
+        }
+        helper.setSubject(subject);
+        helper.setText(body, isHtml);
+
+        if (multipart) {
+            for (String imgId : images.keySet()) {
+                String imgValue = images.get(imgId);
+                String value = imgValue.replaceFirst("^data:image/[^;]*;base64,?", "");
+                byte[] bytes = javax.xml.bind.DatatypeConverter.parseBase64Binary(value);
+                String contentType = helper.getFileTypeMap().getContentType(imgId);
+                InputStreamSource iss = () -> new ByteArrayInputStream(bytes);
+                helper.addInline(imgId, iss, contentType);
             }
-        } else {
+        }
+        return helper.getMimeMessage();
+    }
+
+    private void checkApiUsageState(TenantId tenantId) {
+        if (!apiUsageStateService.getApiUsageState(tenantId).isEmailSendEnabled()) {
             throw new RuntimeException("Email sending is disabled due to API limits!");
         }
     }
 
+    private void checkRateLimits(TenantId tenantId) throws ThingsboardException {
+        if (StringUtils.isEmpty(perTenantRateLimits) || tenantId == null || EntityId.NULL_UUID.equals(tenantId.getId())) {
+            return;
+        }
+        TbRateLimits rateLimits = tenantRateLimits.computeIfAbsent(tenantId, id -> new TbRateLimits(perTenantRateLimits));
+        if (!rateLimits.tryConsume()) {
+            throw new ThingsboardException("Email sending rate limit exceeded!", ThingsboardErrorCode.TOO_MANY_REQUESTS);
+        }
+    }
+
+    private void waitForSend(ListenableFuture<Void> future) throws ThingsboardException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw handleException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ThingsboardException) {
+                throw (ThingsboardException) cause;
+            }
+            throw handleException(cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
     @Override
     public void sendAccountLockoutEmail(String lockoutEmail, String email, Integer maxFailedLoginAttempts) throws ThingsboardException {
         String subject = messages.getMessage("account.lockout.subject", null, Locale.US);
@@ -418,17 +529,26 @@ public class DefaultMailService implements MailService {
     private void sendMail(JavaMailSenderImpl mailSender,
                           String mailFrom, String email,
                           String subject, String message) throws ThingsboardException {
+        MimeMessage mimeMsg;
         try {
-            MimeMessage mimeMsg = mailSender.createMimeMessage();
+            mimeMsg = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(mimeMsg, UTF_8);
             helper.setFrom(mailFrom);
             helper.setTo(email);
             helper.setSubject(subject);
             helper.setText(message, true);
-            mailSender.send(helper.getMimeMessage());
         } catch (Exception e) {
             throw handleException(e);
         }
+        if (mailSender == this.mailSender) {
+            waitForSend(dispatcher.submit(mimeMsg));
+        } else {
+            try {
+                mailSender.send(mimeMsg);
+            } catch (Exception e) {
+                throw handleException(e);
+            }
+        }
     }
 
     private String mergeTemplateIntoString(String templateLocation,
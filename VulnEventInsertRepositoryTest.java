@@ -0,0 +1,149 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.event;
+
+import com.datastax.driver.core.utils.UUIDs;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.thingsboard.server.common.data.Event;
+import org.thingsboard.server.common.data.UUIDConverter;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EventId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.dao.model.sql.EventEntity;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventInsertRepositoryTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final TenantId tenantId = new TenantId(UUIDs.timeBased());
+    private final DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+    private final List<EventEntity> savedOneByOne = new ArrayList<>();
+    private EntityManager entityManager;
+    private PlatformTransactionManager transactionManager;
+    private Query query;
+    private AbstractEventInsertRepository repository;
+
+    @Before
+    public void before() {
+        query = mock(Query.class);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        entityManager = mock(EntityManager.class);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        repository = new AbstractEventInsertRepository() {
+            @Override
+            public EventEntity saveOrUpdate(EventEntity entity) {
+                savedOneByOne.add(entity);
+                return entity;
+            }
+
+            @Override
+            protected EventEntity doProcessSaveOrUpdate(EventEntity entity, String query) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        repository.entityManager = entityManager;
+        repository.transactionManager = transactionManager;
+    }
+
+    @Test
+    public void testPostgresBatchStatementSkipsConflictingRows() {
+        Assert.assertEquals("INSERT INTO event (id, body, entity_id, entity_type, event_type, event_uid, tenant_id) VALUES " +
+                        "(:id0, :body0, :entity_id0, :entity_type0, :event_type0, :event_uid0, :tenant_id0), " +
+                        "(:id1, :body1, :entity_id1, :entity_type1, :event_type1, :event_uid1, :tenant_id1) ON CONFLICT DO NOTHING RETURNING id",
+                repository.getBatchInsertSkippingConflicts(2));
+    }
+
+    @Test
+    public void testHsqlBatchStatementMergesOnPrimaryOrUniqueKey() {
+        String statement = new HsqlEventInsertRepository().getBatchMergeStatement(1);
+        Assert.assertTrue(statement.startsWith("MERGE INTO event USING (VALUES (:id0, :body0, :entity_id0, :entity_type0, :event_type0, :event_uid0, :tenant_id0)) I ("));
+        Assert.assertTrue(statement.contains(" ON (event.id=I.id) OR (event.tenant_id=I.tenant_id AND event.entity_type=I.entity_type" +
+                " AND event.entity_id=I.entity_id AND event.event_type=I.event_type AND event.event_uid=I.event_uid) WHEN MATCHED THEN UPDATE"));
+    }
+
+    @Test
+    public void testOnlyConflictingEventsAreSavedOneByOne() {
+        EventEntity inserted = event("uid1");
+        EventEntity conflicting = event("uid2");
+        when(query.getResultList()).thenReturn(Collections.singletonList(UUIDConverter.fromTimeUUID(inserted.getId())));
+
+        repository.saveOrUpdate(Arrays.asList(inserted, conflicting));
+
+        verify(entityManager).createNativeQuery(repository.getBatchInsertSkippingConflicts(2));
+        verify(transactionManager).commit(any());
+        Assert.assertEquals(Collections.singletonList(conflicting), savedOneByOne);
+    }
+
+    @Test
+    public void testDuplicatesWithinBatchKeepLastEvent() {
+        EventEntity first = event("uid1");
+        EventEntity other = event("uid2");
+        EventEntity last = event("uid1");
+        EventEntity sameId = event("uid3");
+        sameId.setId(other.getId());
+        when(query.getResultList()).thenReturn(Collections.emptyList());
+
+        repository.saveOrUpdate(Arrays.asList(first, other, last, sameId));
+
+        verify(entityManager).createNativeQuery(repository.getBatchInsertSkippingConflicts(2));
+        Assert.assertEquals(Arrays.asList(last, sameId), savedOneByOne);
+    }
+
+    @Test
+    public void testFailedBatchStatementFallsBackToSavingOneByOne() {
+        List<EventEntity> events = Arrays.asList(event("uid1"), event("uid2"));
+        when(query.getResultList()).thenThrow(new IllegalStateException("statement failed"));
+
+        repository.saveOrUpdate(events);
+
+        verify(transactionManager, times(1)).rollback(any());
+        Assert.assertEquals(events, savedOneByOne);
+    }
+
+    private EventEntity event(String uid) {
+        Event event = new Event();
+        event.setId(new EventId(UUIDs.timeBased()));
+        event.setTenantId(tenantId);
+        event.setEntityId(deviceId);
+        event.setType("STATS");
+        event.setUid(uid);
+        event.setBody(mapper.createObjectNode().put("uid", uid).put("nonce", UUID.randomUUID().toString()));
+        return new EventEntity(event);
+    }
+}
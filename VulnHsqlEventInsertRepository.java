@@ -21,6 +21,10 @@ import org.thingsboard.server.dao.model.sql.EventEntity;
 import org.thingsboard.server.dao.util.HsqlDao;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import javax.persistence.Query;
+import java.util.Collections;
+import java.util.List;
+
 @SqlDao
 @HsqlDao
 @Repository
@@ -43,6 +47,24 @@ public class HsqlEventInsertRepository extends AbstractEventInsertRepository {
         return entityManager.find(EventEntity.class, UUIDConverter.fromTimeUUID(entity.getId()));
     }
 
+    /**
+     * HSQL merges on either key, so conflicting events are updated by the same statement and none is left out.
+     */
+    @Override
+    protected List<EventEntity> batchInsertOrUpdate(List<EventEntity> chunk) {
+        Query query = entityManager.createNativeQuery(getBatchMergeStatement(chunk.size()));
+        for (int i = 0; i < chunk.size(); i++) {
+            setParameters(query, chunk.get(i), Integer.toString(i));
+        }
+        query.executeUpdate();
+        return Collections.emptyList();
+    }
+
+    protected String getBatchMergeStatement(int rowsCount) {
+        return "MERGE INTO event USING (VALUES " + getValuesRows(rowsCount) + ") I (" + COLUMNS + ") ON " + P_KEY_CONFLICT_STATEMENT + " OR " + UNQ_KEY_CONFLICT_STATEMENT + " WHEN MATCHED THEN UPDATE SET event.id = I.id, event.body = I.body, event.entity_id = I.entity_id, event.entity_type = I.entity_type, event.event_type = I.event_type, event.event_uid = I.event_uid, event.tenant_id = I.tenant_id" +
+                " WHEN NOT MATCHED THEN INSERT (" + COLUMNS + ") VALUES (I.id, I.body, I.entity_id, I.entity_type, I.event_type, I.event_uid, I.tenant_id)";
+    }
+
     private static String getInsertString(String conflictStatement) {
         return "MERGE INTO event USING (VALUES :id, :body, :entity_id, :entity_type, :event_type, :event_uid, :tenant_id) I (id, body, entity_id, entity_type, event_type, event_uid, tenant_id) ON " + conflictStatement + " WHEN MATCHED THEN UPDATE SET event.id = I.id, event.body = I.body, event.entity_id = I.entity_id, event.entity_type = I.entity_type, event.event_type = I.event_type, event.event_uid = I.event_uid, event.tenant_id = I.tenant_id" +
                 " WHEN NOT MATCHED THEN INSERT (id, body, entity_id, entity_type, event_type, event_uid, tenant_id) VALUES (I.id, I.body, I.entity_id, I.entity_type, I.event_type, I.event_uid, I.tenant_id)";
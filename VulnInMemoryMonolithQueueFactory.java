@@ -17,6 +17,7 @@ package org.thingsboard.server.queue.provider;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.gen.js.JsInvokeProtos;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
@@ -31,9 +32,11 @@ import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.TbQueueRequestTemplate;
 import org.thingsboard.server.queue.common.TbProtoJsQueueMsg;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.memory.InMemoryStorage;
 import org.thingsboard.server.queue.memory.InMemoryTbQueueConsumer;
 import org.thingsboard.server.queue.memory.InMemoryTbQueueProducer;
 import org.thingsboard.server.queue.settings.TbQueueCoreSettings;
+import org.thingsboard.server.queue.settings.TbQueueInMemorySettings;
 import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
 import org.thingsboard.server.queue.settings.TbQueueTransportApiSettings;
 import org.thingsboard.server.queue.settings.TbQueueTransportNotificationSettings;
@@ -48,15 +51,26 @@ public class InMemoryMonolithQueueFactory implements TbCoreQueueFactory, TbRuleE
     private final TbQueueRuleEngineSettings ruleEngineSettings;
     private final TbQueueTransportApiSettings transportApiSettings;
     private final TbQueueTransportNotificationSettings notificationSettings;
+    private final TbQueueInMemorySettings inMemorySettings;
 
     public InMemoryMonolithQueueFactory(TbQueueCoreSettings coreSettings,
                                         TbQueueRuleEngineSettings ruleEngineSettings,
                                         TbQueueTransportApiSettings transportApiSettings,
-                                        TbQueueTransportNotificationSettings notificationSettings) {
+                                        TbQueueTransportNotificationSettings notificationSettings,
+                                        TbQueueInMemorySettings inMemorySettings) {
         this.coreSettings = coreSettings;
         this.ruleEngineSettings = ruleEngineSettings;
         this.transportApiSettings = transportApiSettings;
         this.notificationSettings = notificationSettings;
+        this.inMemorySettings = inMemorySettings;
+        InMemoryStorage.getInstance().configure(inMemorySettings.getTopicCapacity(), inMemorySettings.getMaxPollRecords());
+    }
+
+    @Scheduled(fixedDelayString = "${queue.in_memory.stats.print_interval_ms:60000}")
+    public void printStats() {
+        if (inMemorySettings.isStatsEnabled()) {
+            InMemoryStorage.getInstance().printStats();
+        }
     }
 
     @Override
@@ -18,19 +18,20 @@ package org.thingsboard.server.queue.memory;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.queue.TbQueueMsg;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentMap;
 
 @Slf4j
 public final class InMemoryStorage {
-    private static InMemoryStorage instance;
-    private final Map<String, BlockingQueue<TbQueueMsg>> storage;
+    public static final int DEFAULT_TOPIC_CAPACITY = 1 << 16;
+    public static final int DEFAULT_MAX_POLL_RECORDS = 1000;
+
+    private static volatile InMemoryStorage instance;
+    private final ConcurrentMap<String, InMemoryTopicQueue> storage;
+    private volatile int topicCapacity = DEFAULT_TOPIC_CAPACITY;
+    private volatile int maxPollRecords = DEFAULT_MAX_POLL_RECORDS;
 
     private InMemoryStorage() {
         storage = new ConcurrentHashMap<>();
@@ -47,39 +48,71 @@ public final class InMemoryStorage {
         return instance;
     }
 
+    /**
+     * Applies to the topics created after this call, so it should be invoked before any producer or consumer is used.
+     */
+    public void configure(int topicCapacity, int maxPollRecords) {
+        if (topicCapacity <= 0 || maxPollRecords <= 0) {
+            throw new IllegalArgumentException("Topic capacity and max poll records must be positive!");
+        }
+        this.topicCapacity = topicCapacity;
+        this.maxPollRecords = maxPollRecords;
+    }
+
     public boolean put(String topic, TbQueueMsg msg) {
-        return storage.computeIfAbsent(topic, (t) -> new LinkedBlockingQueue<>()).add(msg);
+        return getOrCreateQueue(topic).put(msg);
     }
 
-    public <T extends TbQueueMsg> List<T> get(String topic, long durationInMillis) {
-        if (storage.containsKey(topic)) {
-            try {
-                List<T> entities;
-                T first = (T) storage.get(topic).poll(durationInMillis, TimeUnit.MILLISECONDS);
-                if (first != null) {
-                    entities = new ArrayList<>();
-                    entities.add(first);
-                } else {
-                    entities = Collections.emptyList();
-                    List<TbQueueMsg> otherList = new ArrayList<>();
-                    storage.get(topic).drainTo(otherList, 100);
-                    for (TbQueueMsg other : otherList) {
-                        entities.add((T) other);
-                    }
-                }
-                return entities;
-            } catch (InterruptedException e) {
-                log.warn("Queue was interrupted", e);
-                return Collections.emptyList();
-            }
+    /**
+     * Registers a new consumer of the topic. Consumers of the same topic compete for its messages and commit independently.
+     */
+    InMemoryTopicQueue.Cursor subscribe(String topic) {
+        return getOrCreateQueue(topic).newCursor();
+    }
+
+    public <T extends TbQueueMsg> List<T> get(String topic, InMemoryTopicQueue.Cursor cursor, long durationInMillis) {
+        try {
+            return getOrCreateQueue(topic).poll(cursor, durationInMillis);
+        } catch (InterruptedException e) {
+            log.warn("Queue was interrupted", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Releases the messages of the topic that were returned to the given consumer by its last {@link #get} call.
+     */
+    public void commit(String topic, InMemoryTopicQueue.Cursor cursor) {
+        InMemoryTopicQueue queue = storage.get(topic);
+        if (queue != null) {
+            queue.commit(cursor);
+        }
+    }
+
+    /**
+     * Makes the messages polled but not yet committed by the given consumer available for redelivery.
+     */
+    public void rewind(String topic, InMemoryTopicQueue.Cursor cursor) {
+        InMemoryTopicQueue queue = storage.get(topic);
+        if (queue != null) {
+            queue.rewind(cursor);
         }
-        return Collections.emptyList();
     }
 
-    public void commit(String topic) {
-        //TODO: 2.5 Until someone calls commit you should not allow to poll new elements.
-        if (storage.containsKey(topic)) {
-//            storage.get(topic).remove();
+    public long getDepth(String topic) {
+        InMemoryTopicQueue queue = storage.get(topic);
+        return queue != null ? queue.getDepth() : 0;
+    }
+
+    public void printStats() {
+        storage.values().forEach(InMemoryTopicQueue::printStats);
+    }
+
+    private InMemoryTopicQueue getOrCreateQueue(String topic) {
+        InMemoryTopicQueue queue = storage.get(topic);
+        if (queue == null) {
+            queue = storage.computeIfAbsent(topic, t -> new InMemoryTopicQueue(t, topicCapacity, maxPollRecords));
         }
+        return queue;
     }
-}
\ No newline at end of file
+}
@@ -27,9 +27,11 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
 
     public InMemoryTbQueueConsumer(String topic) {
         this.topic = topic;
+        this.cursor = storage.subscribe(topic);
     }
 
     private final String topic;
+    private final InMemoryTopicQueue.Cursor cursor;
 
     @Override
     public String getTopic() {
@@ -48,16 +50,16 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
 
     @Override
     public void unsubscribe() {
-
+        storage.rewind(topic, cursor);
     }
 
     @Override
     public List<T> poll(long durationInMillis) {
-        return storage.get(topic, durationInMillis);
+        return storage.get(topic, cursor, durationInMillis);
     }
 
     @Override
     public void commit() {
-        storage.commit(topic);
+        storage.commit(topic, cursor);
     }
 }
\ No newline at end of file
@@ -0,0 +1,268 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.queue.TbQueueMsg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Preallocated multi-producer ring buffer that backs a single in-memory topic.
+ *
+ * Producers claim offsets with a CAS on the tail and never block. Consumers of the
+ * topic compete for messages, each message is handed out to one {@link Cursor} only.
+ * Every cursor tracks its own uncommitted batch: {@link #commit} releases the batch of
+ * that cursor only and {@link #rewind} makes it available for redelivery to any cursor.
+ * A cursor holds at most one uncommitted batch, polling again commits the previous one
+ * like an auto-committing Kafka consumer, so a consumer that never commits pins at most
+ * max poll records slots. Slots are only reused once every message before them was
+ * committed, so a full buffer rejects new messages instead of dropping unconsumed ones.
+ * In-flight and rewound offsets are kept in preallocated primitive arrays, polling does
+ * not allocate per message.
+ */
+@Slf4j
+final class InMemoryTopicQueue {
+
+    private final String topic;
+    private final int capacity;
+    private final int mask;
+    private final int maxPollRecords;
+
+    private final AtomicReferenceArray<TbQueueMsg> slots;
+    private final AtomicLongArray publishedOffsets;
+    private final long[] putTimes;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long committedOffset;
+
+    private final ReentrantLock consumerLock = new ReentrantLock();
+    private final Condition notEmpty = consumerLock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    // guarded by consumerLock
+    private long readOffset;
+    // rewound offsets, oldest first; they all lie below readOffset so capacity entries are enough
+    private final long[] redelivery;
+    private int redeliveryHead;
+    private int redeliverySize;
+    private int uncommittedCount;
+    private long polledCount;
+    private long latencySumNanos;
+    private long latencyMaxNanos;
+
+    private final AtomicLong totalRejected = new AtomicLong();
+
+    InMemoryTopicQueue(String topic, int capacity, int maxPollRecords) {
+        if (capacity <= 0 || maxPollRecords <= 0) {
+            throw new IllegalArgumentException("Capacity and max poll records must be positive!");
+        }
+        this.topic = topic;
+        this.capacity = toPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.maxPollRecords = maxPollRecords;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.publishedOffsets = new AtomicLongArray(this.capacity);
+        this.putTimes = new long[this.capacity];
+        this.redelivery = new long[this.capacity];
+        for (int i = 0; i < this.capacity; i++) {
+            publishedOffsets.set(i, -1L);
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    boolean put(TbQueueMsg msg) {
+        long offset;
+        do {
+            offset = tail.get();
+            if (offset - committedOffset >= capacity) {
+                totalRejected.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(offset, offset + 1));
+        int idx = (int) (offset & mask);
+        slots.set(idx, msg);
+        putTimes[idx] = System.nanoTime();
+        publishedOffsets.set(idx, offset);
+        if (waitingConsumers.get() > 0) {
+            consumerLock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                consumerLock.unlock();
+            }
+        }
+        return true;
+    }
+
+    Cursor newCursor() {
+        return new Cursor(maxPollRecords);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends TbQueueMsg> List<T> poll(Cursor cursor, long durationInMillis) throws InterruptedException {
+        consumerLock.lockInterruptibly();
+        try {
+            release(cursor);
+            if (!hasAvailable()) {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(durationInMillis);
+                waitingConsumers.incrementAndGet();
+                try {
+                    while (!hasAvailable() && remaining > 0) {
+                        remaining = notEmpty.awaitNanos(remaining);
+                    }
+                } finally {
+                    waitingConsumers.decrementAndGet();
+                }
+                if (!hasAvailable()) {
+                    return Collections.emptyList();
+                }
+            }
+            List<T> result = new ArrayList<>(Math.min(maxPollRecords, redeliverySize + (int) Math.min(capacity, tail.get() - readOffset)));
+            while (result.size() < maxPollRecords && redeliverySize > 0) {
+                long offset = redelivery[redeliveryHead];
+                redeliveryHead = (redeliveryHead + 1) & mask;
+                redeliverySize--;
+                result.add((T) slots.get((int) (offset & mask)));
+                cursor.offsets[cursor.size++] = offset;
+            }
+            long now = System.nanoTime();
+            while (result.size() < maxPollRecords && isPublished(readOffset)) {
+                int idx = (int) (readOffset & mask);
+                result.add((T) slots.get(idx));
+                cursor.offsets[cursor.size++] = readOffset;
+                long latency = now - putTimes[idx];
+                latencySumNanos += latency;
+                latencyMaxNanos = Math.max(latencyMaxNanos, latency);
+                readOffset++;
+            }
+            uncommittedCount += result.size();
+            polledCount += result.size();
+            return result;
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    void commit(Cursor cursor) {
+        consumerLock.lock();
+        try {
+            release(cursor);
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    void rewind(Cursor cursor) {
+        consumerLock.lock();
+        try {
+            for (int i = cursor.size - 1; i >= 0; i--) {
+                redeliveryHead = (redeliveryHead - 1) & mask;
+                redelivery[redeliveryHead] = cursor.offsets[i];
+                redeliverySize++;
+            }
+            uncommittedCount -= cursor.size;
+            cursor.size = 0;
+            if (redeliverySize > 0) {
+                notEmpty.signalAll();
+            }
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    long getDepth() {
+        return tail.get() - committedOffset;
+    }
+
+    void printStats() {
+        long polled;
+        long latencySum;
+        long latencyMax;
+        long uncommitted;
+        consumerLock.lock();
+        try {
+            polled = polledCount;
+            latencySum = latencySumNanos;
+            latencyMax = latencyMaxNanos;
+            uncommitted = uncommittedCount;
+            polledCount = 0;
+            latencySumNanos = 0;
+            latencyMaxNanos = 0;
+        } finally {
+            consumerLock.unlock();
+        }
+        log.info("[{}] depth [{}] uncommitted [{}] capacity [{}] totalPut [{}] totalRejected [{}] polled [{}] avgLatencyUs [{}] maxLatencyUs [{}]",
+                topic, getDepth(), uncommitted, capacity, tail.get(), totalRejected.get(), polled,
+                polled > 0 ? TimeUnit.NANOSECONDS.toMicros(latencySum / polled) : 0,
+                TimeUnit.NANOSECONDS.toMicros(latencyMax));
+    }
+
+    private static int toPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : Math.min(highest << 1, 1 << 30);
+    }
+
+    // guarded by consumerLock
+    private void release(Cursor cursor) {
+        if (cursor.size == 0) {
+            return;
+        }
+        for (int i = 0; i < cursor.size; i++) {
+            slots.set((int) (cursor.offsets[i] & mask), null);
+        }
+        uncommittedCount -= cursor.size;
+        cursor.size = 0;
+        // slots below the read offset are either uncommitted, waiting for redelivery or released
+        long offset = committedOffset;
+        while (offset < readOffset && slots.get((int) (offset & mask)) == null) {
+            offset++;
+        }
+        committedOffset = offset;
+    }
+
+    // guarded by consumerLock
+    private boolean hasAvailable() {
+        return redeliverySize > 0 || isPublished(readOffset);
+    }
+
+    private boolean isPublished(long offset) {
+        return publishedOffsets.get((int) (offset & mask)) == offset;
+    }
+
+    /**
+     * Read position of a single consumer of the topic, holding the offsets it polled but did not commit yet.
+     */
+    static final class Cursor {
+        // guarded by the consumerLock of the topic, at most max poll records since a poll releases the previous batch
+        private final long[] offsets;
+        private int size;
+
+        private Cursor(int maxPollRecords) {
+            this.offsets = new long[maxPollRecords];
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsg;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.util.List;
+import java.util.UUID;
+
+public class InMemoryTopicQueueTest {
+
+    @Test
+    public void testCapacityIsRoundedToPowerOfTwo() {
+        Assert.assertEquals(8, new InMemoryTopicQueue("test", 5, 10).getCapacity());
+        Assert.assertEquals(8, new InMemoryTopicQueue("test", 8, 10).getCapacity());
+    }
+
+    @Test
+    public void testPollIsLimitedByMaxPollRecords() throws InterruptedException {
+        InMemoryTopicQueue queue = new InMemoryTopicQueue("test", 16, 3);
+        InMemoryTopicQueue.Cursor cursor = queue.newCursor();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(queue.put(newMsg()));
+        }
+        Assert.assertEquals(3, queue.poll(cursor, 10).size());
+        Assert.assertEquals(2, queue.poll(cursor, 10).size());
+        Assert.assertTrue(queue.poll(cursor, 10).isEmpty());
+    }
+
+    @Test
+    public void testFullQueueRejectsUntilCommit() throws InterruptedException {
+        InMemoryTopicQueue queue = new InMemoryTopicQueue("test", 2, 10);
+        InMemoryTopicQueue.Cursor cursor = queue.newCursor();
+        Assert.assertTrue(queue.put(newMsg()));
+        Assert.assertTrue(queue.put(newMsg()));
+        Assert.assertFalse(queue.put(newMsg()));
+
+        Assert.assertEquals(2, queue.poll(cursor, 10).size());
+        Assert.assertFalse(queue.put(newMsg()));
+
+        queue.commit(cursor);
+        Assert.assertEquals(0, queue.getDepth());
+        Assert.assertTrue(queue.put(newMsg()));
+    }
+
+    @Test
+    public void testRewindRedeliversUncommitted() throws InterruptedException {
+        InMemoryTopicQueue queue = new InMemoryTopicQueue("test", 8, 10);
+        InMemoryTopicQueue.Cursor cursor = queue.newCursor();
+        TbQueueMsg first = newMsg();
+        TbQueueMsg second = newMsg();
+        queue.put(first);
+        Assert.assertEquals(first, queue.poll(cursor, 10).get(0));
+        queue.commit(cursor);
+
+        queue.put(second);
+        Assert.assertEquals(second, queue.poll(cursor, 10).get(0));
+        queue.rewind(cursor);
+
+        List<TbQueueMsg> redelivered = queue.poll(cursor, 10);
+        Assert.assertEquals(1, redelivered.size());
+        Assert.assertEquals(second, redelivered.get(0));
+    }
+
+    @Test
+    public void testCommitOnlyReleasesOwnBatch() throws InterruptedException {
+        InMemoryTopicQueue queue = new InMemoryTopicQueue("test", 4, 2);
+        InMemoryTopicQueue.Cursor first = queue.newCursor();
+        InMemoryTopicQueue.Cursor second = queue.newCursor();
+        TbQueueMsg msg1 = newMsg();
+        TbQueueMsg msg2 = newMsg();
+        TbQueueMsg msg3 = newMsg();
+        TbQueueMsg msg4 = newMsg();
+        queue.put(msg1);
+        queue.put(msg2);
+        queue.put(msg3);
+        queue.put(msg4);
+
+        Assert.assertEquals(2, queue.poll(first, 10).size());
+        Assert.assertEquals(2, queue.poll(second, 10).size());
+
+        // the second consumer commits, the batch of the first one is still pinned and can be redelivered
+        queue.commit(second);
+        Assert.assertEquals(4, queue.getDepth());
+        Assert.assertFalse(queue.put(newMsg()));
+
+        queue.rewind(first);
+        List<TbQueueMsg> redelivered = queue.poll(second, 10);
+        Assert.assertEquals(2, redelivered.size());
+        Assert.assertEquals(msg1, redelivered.get(0));
+        Assert.assertEquals(msg2, redelivered.get(1));
+
+        queue.commit(second);
+        Assert.assertEquals(0, queue.getDepth());
+        Assert.assertTrue(queue.put(newMsg()));
+    }
+
+    @Test
+    public void testConsumerThatNeverCommitsDoesNotFillQueue() throws InterruptedException {
+        InMemoryTopicQueue queue = new InMemoryTopicQueue("test", 4, 2);
+        InMemoryTopicQueue.Cursor cursor = queue.newCursor();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(queue.put(newMsg()));
+            Assert.assertEquals(1, queue.poll(cursor, 10).size());
+        }
+        // only the last batch is uncommitted, polling again committed the previous ones
+        Assert.assertEquals(1, queue.getDepth());
+    }
+
+    @Test
+    public void testRewindsOfSeveralCursorsAreRedeliveredInOrder() throws InterruptedException {
+        InMemoryTopicQueue queue = new InMemoryTopicQueue("test", 4, 2);
+        InMemoryTopicQueue.Cursor first = queue.newCursor();
+        InMemoryTopicQueue.Cursor second = queue.newCursor();
+        InMemoryTopicQueue.Cursor third = queue.newCursor();
+        TbQueueMsg[] msgs = new TbQueueMsg[4];
+        for (int i = 0; i < msgs.length; i++) {
+            msgs[i] = newMsg();
+            queue.put(msgs[i]);
+        }
+        Assert.assertEquals(2, queue.poll(first, 10).size());
+        Assert.assertEquals(2, queue.poll(second, 10).size());
+        queue.rewind(second);
+        queue.rewind(first);
+
+        List<TbQueueMsg> redelivered = queue.poll(third, 10);
+        Assert.assertEquals(msgs[0], redelivered.get(0));
+        Assert.assertEquals(msgs[1], redelivered.get(1));
+        redelivered = queue.poll(third, 10);
+        Assert.assertEquals(msgs[2], redelivered.get(0));
+        Assert.assertEquals(msgs[3], redelivered.get(1));
+
+        queue.rewind(third);
+        redelivered = queue.poll(first, 10);
+        Assert.assertEquals(2, redelivered.size());
+        Assert.assertEquals(msgs[2], redelivered.get(0));
+        Assert.assertEquals(msgs[3], redelivered.get(1));
+        queue.commit(first);
+        Assert.assertEquals(0, queue.getDepth());
+    }
+
+    private static TbQueueMsg newMsg() {
+        return new DefaultTbQueueMsg(UUID.randomUUID(), new byte[0], new DefaultTbQueueMsgHeaders());
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.cache;
+
+import com.google.common.cache.Cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the invalidations of a group of in-process caches that are filled from the database.
+ *
+ * A value is only stored if no invalidation of the group happened while it was loading, otherwise
+ * a load that read the database before a write completed could put the old value back right after
+ * the write dropped it.
+ */
+public class InvalidationVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @return the version to pass to {@link #putIfNotInvalidated} once the value is loaded
+     */
+    public long beforeLoad() {
+        return version.get();
+    }
+
+    /**
+     * Must be called before the invalidated entries are dropped from the caches.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    public <K, V> void putIfNotInvalidated(Cache<K, V> cache, K key, V value, long loadVersion) {
+        if (version.get() == loadVersion) {
+            cache.put(key, value);
+            // an invalidation may have dropped the key between the check and the put
+            if (version.get() != loadVersion) {
+                cache.invalidate(key);
+            }
+        }
+    }
+}
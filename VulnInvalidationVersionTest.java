@@ -0,0 +1,48 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InvalidationVersionTest {
+
+    private final Cache<String, String> cache = CacheBuilder.newBuilder().build();
+    private final InvalidationVersion version = new InvalidationVersion();
+
+    @Test
+    public void testLoadedValueIsStored() {
+        long loadVersion = version.beforeLoad();
+        version.putIfNotInvalidated(cache, "key", "value", loadVersion);
+        Assert.assertEquals("value", cache.getIfPresent("key"));
+    }
+
+    @Test
+    public void testLoadOverlappingInvalidationIsNotStored() {
+        long loadVersion = version.beforeLoad();
+        // a write of any entry of the group completes while the value is loading
+        version.invalidate();
+        cache.invalidate("other");
+        version.putIfNotInvalidated(cache, "key", "stale", loadVersion);
+        Assert.assertNull(cache.getIfPresent("key"));
+
+        loadVersion = version.beforeLoad();
+        version.putIfNotInvalidated(cache, "key", "value", loadVersion);
+        Assert.assertEquals("value", cache.getIfPresent("key"));
+    }
+}
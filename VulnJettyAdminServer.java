@@ -57,6 +57,8 @@ import org.slf4j.LoggerFactory;
  * Command and return the result in the body of the response. Any keyword
  * arguments to the command are specified with URL parameters (e.g.,
  * http://localhost:8080/commands/set_trace_mask?traceMask=306).
+ * Commands returning numbers can be scraped by Prometheus with
+ * format=prometheus, e.g. http://localhost:8080/commands/metrics?format=prometheus.
  *
  * @see Commands
  * @see CommandOutputter
@@ -71,6 +73,9 @@ public class JettyAdminServer implements AdminServer {
     private static final String DEFAULT_ADDRESS = "0.0.0.0";
     public static final int DEFAULT_STS_MAX_AGE = 1 * 24 * 60 * 60;  // seconds in a day
     public static final int DEFAULT_HTTP_VERSION = 11;  // based on HttpVersion.java in jetty
+    /** URL parameter selecting the output format, e.g. /commands/metrics?format=prometheus */
+    public static final String FORMAT_PARAM = "format";
+    public static final String PROMETHEUS_FORMAT = "prometheus";
 
     private final Server server;
     private final String address;
@@ -256,7 +261,9 @@ public class JettyAdminServer implements AdminServer {
             CommandResponse cmdResponse = Commands.runCommand(cmd, zkServer, kwargs);
 
             // Format and print the output of the command
-            CommandOutputter outputter = new JsonOutputter();
+            CommandOutputter outputter = PROMETHEUS_FORMAT.equals(kwargs.get(FORMAT_PARAM))
+                ? new PrometheusOutputter()
+                : new JsonOutputter();
             response.setStatus(HttpServletResponse.SC_OK);
             response.setContentType(outputter.getContentType());
             outputter.output(cmdResponse, response.getWriter());
@@ -16,10 +16,13 @@
 package org.thingsboard.server.dao.sql.event;
 
 import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -36,8 +39,13 @@ import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.event.EventDao;
 import org.thingsboard.server.dao.model.sql.EventEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractSearchTimeDao;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueue;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.criteria.Predicate;
 import java.util.ArrayList;
 import java.util.List;
@@ -64,6 +72,47 @@ public class JpaBaseEventDao extends JpaAbstractSearchTimeDao<EventEntity, Event
     @Autowired
     private EventInsertRepository eventInsertRepository;
 
+    @Autowired
+    private EventBatchInsertRepository eventBatchInsertRepository;
+
+    @Autowired
+    private ScheduledLogExecutorComponent logExecutor;
+
+    @Value("${sql.events.batch_enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${sql.events.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${sql.events.batch_max_delay:100}")
+    private long maxDelay;
+
+    @Value("${sql.events.stats_print_interval_ms:10000}")
+    private long statsPrintIntervalMs;
+
+    private TbSqlBlockingQueue<EventEntity> eventQueue;
+
+    @PostConstruct
+    protected void init() {
+        if (batchEnabled) {
+            TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                    .logName("Events")
+                    .batchSize(batchSize)
+                    .maxDelay(maxDelay)
+                    .statsPrintIntervalMs(statsPrintIntervalMs)
+                    .build();
+            eventQueue = new TbSqlBlockingQueue<>(params);
+            eventQueue.init(logExecutor, v -> eventBatchInsertRepository.saveOrUpdate(v));
+        }
+    }
+
+    @PreDestroy
+    protected void destroy() {
+        if (eventQueue != null) {
+            eventQueue.destroy();
+        }
+    }
+
     @Override
     protected Class<EventEntity> getEntityClass() {
         return EventEntity.class;
@@ -86,6 +135,10 @@ public class JpaBaseEventDao extends JpaAbstractSearchTimeDao<EventEntity, Event
         return save(new EventEntity(event), false).orElse(null);
     }
 
+    /**
+     * When batching is enabled, the returned event is the one that was queued rather than the stored row: if it replaced
+     * an existing event with the same uid, the stored row may keep the id of that event.
+     */
     @Override
     public ListenableFuture<Event> saveAsync(Event event) {
         log.debug("Save event [{}] ", event);
@@ -95,6 +148,11 @@ public class JpaBaseEventDao extends JpaAbstractSearchTimeDao<EventEntity, Event
         if (StringUtils.isEmpty(event.getUid())) {
             event.setUid(event.getId().toString());
         }
+        if (eventQueue != null) {
+            EventEntity entity = new EventEntity(event);
+            prepare(entity);
+            return Futures.transform(eventQueue.add(entity), v -> DaoUtil.getData(entity), MoreExecutors.directExecutor());
+        }
         return service.submit(() -> save(new EventEntity(event), false).orElse(null));
     }
 
@@ -136,6 +194,15 @@ public class JpaBaseEventDao extends JpaAbstractSearchTimeDao<EventEntity, Event
 
     public Optional<Event> save(EventEntity entity, boolean ifNotExists) {
         log.debug("Save event [{}] ", entity);
+        prepare(entity);
+        if (ifNotExists &&
+                eventRepository.findByTenantIdAndEntityTypeAndEntityId(entity.getTenantId(), entity.getEntityType(), entity.getEntityId()) != null) {
+            return Optional.empty();
+        }
+        return Optional.of(DaoUtil.getData(eventInsertRepository.saveOrUpdate(entity)));
+    }
+
+    private void prepare(EventEntity entity) {
         if (entity.getTenantId() == null) {
             log.trace("Save system event with predefined id {}", systemTenantId);
             entity.setTenantId(UUIDConverter.fromTimeUUID(systemTenantId));
@@ -146,11 +213,6 @@ public class JpaBaseEventDao extends JpaAbstractSearchTimeDao<EventEntity, Event
         if (StringUtils.isEmpty(entity.getEventUid())) {
             entity.setEventUid(entity.getId().toString());
         }
-        if (ifNotExists &&
-                eventRepository.findByTenantIdAndEntityTypeAndEntityId(entity.getTenantId(), entity.getEntityType(), entity.getEntityId()) != null) {
-            return Optional.empty();
-        }
-        return Optional.of(DaoUtil.getData(eventInsertRepository.saveOrUpdate(entity)));
     }
 
     private Specification<EventEntity> getEntityFieldsSpec(UUID tenantId, EntityId entityId, String eventType) {
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.event;
+
+import com.datastax.driver.core.utils.UUIDs;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.server.common.data.Event;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EventId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.dao.AbstractJpaDaoTest;
+import org.thingsboard.server.dao.event.EventDao;
+import org.thingsboard.server.dao.model.sql.EventEntity;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class JpaEventBatchInsertRepositoryTest extends AbstractJpaDaoTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private EventBatchInsertRepository eventBatchInsertRepository;
+
+    @Autowired
+    private EventDao eventDao;
+
+    private final TenantId tenantId = new TenantId(UUIDs.timeBased());
+    private final DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+    @Test
+    @DatabaseSetup("classpath:dbunit/empty_dataset.xml")
+    public void testBatchInsertsAllEvents() {
+        eventBatchInsertRepository.saveOrUpdate(Arrays.asList(entity("uid1", 1), entity("uid2", 2), entity("uid3", 3)));
+
+        assertBody("uid1", 1);
+        assertBody("uid2", 2);
+        assertBody("uid3", 3);
+    }
+
+    @Test
+    @DatabaseSetup("classpath:dbunit/empty_dataset.xml")
+    public void testBatchUpdatesEventWithExistingUid() {
+        assertNotNull(eventDao.save(tenantId, event("uid1", 1)));
+
+        eventBatchInsertRepository.saveOrUpdate(Arrays.asList(entity("uid1", 2), entity("uid2", 3)));
+
+        assertBody("uid1", 2);
+        assertBody("uid2", 3);
+    }
+
+    @Test
+    @DatabaseSetup("classpath:dbunit/empty_dataset.xml")
+    public void testBatchUpdatesEventWithExistingId() {
+        EventEntity first = entity("uid1", 1);
+        eventBatchInsertRepository.saveOrUpdate(Collections.singletonList(first));
+
+        EventEntity resaved = entity("uid1", 2);
+        resaved.setId(first.getId());
+        eventBatchInsertRepository.saveOrUpdate(Arrays.asList(resaved, entity("uid2", 3)));
+
+        assertBody("uid1", 2);
+        assertBody("uid2", 3);
+    }
+
+    @Test
+    @DatabaseSetup("classpath:dbunit/empty_dataset.xml")
+    public void testBatchKeepsLastDuplicateEvent() {
+        eventBatchInsertRepository.saveOrUpdate(Arrays.asList(entity("uid1", 1), entity("uid2", 2), entity("uid1", 3)));
+
+        assertBody("uid1", 3);
+        assertBody("uid2", 2);
+    }
+
+    private void assertBody(String uid, int value) {
+        Event event = eventDao.findEvent(tenantId.getId(), deviceId, "STATS", uid);
+        assertNotNull("Event " + uid + " is not found", event);
+        assertEquals(value, event.getBody().get("value").asInt());
+    }
+
+    private EventEntity entity(String uid, int value) {
+        return new EventEntity(event(uid, value));
+    }
+
+    private Event event(String uid, int value) {
+        Event event = new Event();
+        event.setId(new EventId(UUIDs.timeBased()));
+        event.setTenantId(tenantId);
+        event.setEntityId(deviceId);
+        event.setType("STATS");
+        event.setUid(uid);
+        event.setBody(mapper.createObjectNode().put("value", value));
+        return event;
+    }
+}
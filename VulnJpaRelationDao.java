@@ -15,9 +15,12 @@
  */
 package org.thingsboard.server.dao.sql.relation;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -36,11 +39,19 @@ import org.thingsboard.server.dao.model.sql.RelationEntity;
 import org.thingsboard.server.dao.relation.RelationDao;
 import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import org.thingsboard.server.dao.sql.JpaAbstractSearchTimeDao;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.criteria.Predicate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.springframework.data.jpa.domain.Specifications.where;
 import static org.thingsboard.server.common.data.UUIDConverter.fromTimeUUID;
@@ -59,8 +70,71 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
     @Autowired
     private RelationInsertRepository relationInsertRepository;
 
+    @Autowired
+    private RelationBatchRepository relationBatchRepository;
+
+    @Autowired
+    private ScheduledLogExecutorComponent logExecutor;
+
+    @Value("${sql.relations.batch_enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${sql.relations.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${sql.relations.batch_max_delay:50}")
+    private long maxDelay;
+
+    @Value("${sql.relations.stats_print_interval_ms:10000}")
+    private long statsPrintIntervalMs;
+
+    @Value("${sql.relations.cache.enabled:false}")
+    private boolean cacheEnabled;
+
+    @Value("${sql.relations.cache.max_relations:1000000}")
+    private long cacheMaxRelations;
+
+    @Value("${sql.relations.cache.ttl_ms:60000}")
+    private long cacheTtlMs;
+
+    private RelationBatchWriter batchWriter;
+
+    private RelationCache relationCache;
+
+    @PostConstruct
+    protected void init() {
+        if (batchEnabled) {
+            TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                    .logName("Relations")
+                    .batchSize(batchSize)
+                    .maxDelay(maxDelay)
+                    .statsPrintIntervalMs(statsPrintIntervalMs)
+                    .build();
+            batchWriter = new RelationBatchWriter(relationBatchRepository, params);
+            batchWriter.init(logExecutor);
+        }
+        if (cacheEnabled) {
+            relationCache = new RelationCache(cacheMaxRelations, cacheTtlMs);
+            logExecutor.scheduleAtFixedRate(relationCache::printStats, statsPrintIntervalMs, statsPrintIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    protected void destroy() {
+        if (batchWriter != null) {
+            batchWriter.destroy();
+        }
+    }
+
     @Override
     public ListenableFuture<List<EntityRelation>> findAllByFrom(TenantId tenantId, EntityId from, RelationTypeGroup typeGroup) {
+        if (relationCache != null) {
+            return relationCache.getOutbound(from, typeGroup, () -> doFindAllByFrom(from, typeGroup));
+        }
+        return doFindAllByFrom(from, typeGroup);
+    }
+
+    private ListenableFuture<List<EntityRelation>> doFindAllByFrom(EntityId from, RelationTypeGroup typeGroup) {
         return service.submit(() -> DaoUtil.convertDataList(
                 relationRepository.findAllByFromIdAndFromTypeAndRelationTypeGroup(
                         UUIDConverter.fromTimeUUID(from.getId()),
@@ -70,6 +144,9 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
 
     @Override
     public ListenableFuture<List<EntityRelation>> findAllByFromAndType(TenantId tenantId, EntityId from, String relationType, RelationTypeGroup typeGroup) {
+        if (relationCache != null) {
+            return filterByType(findAllByFrom(tenantId, from, typeGroup), relationType);
+        }
         return service.submit(() -> DaoUtil.convertDataList(
                 relationRepository.findAllByFromIdAndFromTypeAndRelationTypeAndRelationTypeGroup(
                         UUIDConverter.fromTimeUUID(from.getId()),
@@ -80,6 +157,13 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
 
     @Override
     public ListenableFuture<List<EntityRelation>> findAllByTo(TenantId tenantId, EntityId to, RelationTypeGroup typeGroup) {
+        if (relationCache != null) {
+            return relationCache.getInbound(to, typeGroup, () -> doFindAllByTo(to, typeGroup));
+        }
+        return doFindAllByTo(to, typeGroup);
+    }
+
+    private ListenableFuture<List<EntityRelation>> doFindAllByTo(EntityId to, RelationTypeGroup typeGroup) {
         return service.submit(() -> DaoUtil.convertDataList(
                 relationRepository.findAllByToIdAndToTypeAndRelationTypeGroup(
                         UUIDConverter.fromTimeUUID(to.getId()),
@@ -89,6 +173,9 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
 
     @Override
     public ListenableFuture<List<EntityRelation>> findAllByToAndType(TenantId tenantId, EntityId to, String relationType, RelationTypeGroup typeGroup) {
+        if (relationCache != null) {
+            return filterByType(findAllByTo(tenantId, to, typeGroup), relationType);
+        }
         return service.submit(() -> DaoUtil.convertDataList(
                 relationRepository.findAllByToIdAndToTypeAndRelationTypeAndRelationTypeGroup(
                         UUIDConverter.fromTimeUUID(to.getId()),
@@ -97,6 +184,12 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
                         typeGroup.name())));
     }
 
+    private ListenableFuture<List<EntityRelation>> filterByType(ListenableFuture<List<EntityRelation>> relations, String relationType) {
+        return Futures.transform(relations, list -> list.stream()
+                .filter(relation -> relationType.equals(relation.getType()))
+                .collect(Collectors.toList()), MoreExecutors.directExecutor());
+    }
+
     @Override
     public ListenableFuture<Boolean> checkRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         RelationCompositeKey key = getRelationCompositeKey(from, to, relationType, typeGroup);
@@ -120,38 +213,101 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
 
     @Override
     public boolean saveRelation(TenantId tenantId, EntityRelation relation) {
-        return relationInsertRepository.saveOrUpdate(new RelationEntity(relation)) != null;
+        try {
+            if (batchWriter != null) {
+                return waitForBatch(batchWriter.save(new RelationEntity(relation)));
+            }
+            return relationInsertRepository.saveOrUpdate(new RelationEntity(relation)) != null;
+        } finally {
+            evict(relation.getFrom(), relation.getTo(), relation.getTypeGroup());
+        }
     }
 
     @Override
     public ListenableFuture<Boolean> saveRelationAsync(TenantId tenantId, EntityRelation relation) {
-        return service.submit(() -> relationInsertRepository.saveOrUpdate(new RelationEntity(relation)) != null);
+        ListenableFuture<Boolean> future;
+        if (batchWriter != null) {
+            future = batchWriter.save(new RelationEntity(relation));
+        } else {
+            future = service.submit(() -> relationInsertRepository.saveOrUpdate(new RelationEntity(relation)) != null);
+        }
+        return evictOnComplete(future, relation.getFrom(), relation.getTo(), relation.getTypeGroup());
     }
 
     @Override
     public boolean deleteRelation(TenantId tenantId, EntityRelation relation) {
         RelationCompositeKey key = new RelationCompositeKey(relation);
-        return deleteRelationIfExists(key);
+        try {
+            if (batchWriter != null) {
+                return waitForBatch(batchWriter.delete(key));
+            }
+            return deleteRelationIfExists(key);
+        } finally {
+            evict(relation.getFrom(), relation.getTo(), relation.getTypeGroup());
+        }
     }
 
     @Override
     public ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityRelation relation) {
         RelationCompositeKey key = new RelationCompositeKey(relation);
-        return service.submit(
-                () -> deleteRelationIfExists(key));
+        ListenableFuture<Boolean> future;
+        if (batchWriter != null) {
+            future = batchWriter.delete(key);
+        } else {
+            future = service.submit(
+                    () -> deleteRelationIfExists(key));
+        }
+        return evictOnComplete(future, relation.getFrom(), relation.getTo(), relation.getTypeGroup());
     }
 
     @Override
     public boolean deleteRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         RelationCompositeKey key = getRelationCompositeKey(from, to, relationType, typeGroup);
-        return deleteRelationIfExists(key);
+        try {
+            if (batchWriter != null) {
+                return waitForBatch(batchWriter.delete(key));
+            }
+            return deleteRelationIfExists(key);
+        } finally {
+            evict(from, to, typeGroup);
+        }
     }
 
     @Override
     public ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         RelationCompositeKey key = getRelationCompositeKey(from, to, relationType, typeGroup);
-        return service.submit(
-                () -> deleteRelationIfExists(key));
+        ListenableFuture<Boolean> future;
+        if (batchWriter != null) {
+            future = batchWriter.delete(key);
+        } else {
+            future = service.submit(
+                    () -> deleteRelationIfExists(key));
+        }
+        return evictOnComplete(future, from, to, typeGroup);
+    }
+
+    private void evict(EntityId from, EntityId to, RelationTypeGroup typeGroup) {
+        if (relationCache != null) {
+            relationCache.evict(from, to, typeGroup);
+        }
+    }
+
+    private ListenableFuture<Boolean> evictOnComplete(ListenableFuture<Boolean> future, EntityId from, EntityId to, RelationTypeGroup typeGroup) {
+        if (relationCache != null) {
+            future.addListener(() -> relationCache.evict(from, to, typeGroup), MoreExecutors.directExecutor());
+        }
+        return future;
+    }
+
+    private boolean waitForBatch(ListenableFuture<Boolean> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for relation batch to be written", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to write relation batch", e.getCause());
+        }
     }
 
     private boolean deleteRelationIfExists(RelationCompositeKey key) {
@@ -164,27 +320,45 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
 
     @Override
     public boolean deleteOutboundRelations(TenantId tenantId, EntityId entity) {
-        boolean relationExistsBeforeDelete = relationRepository
-                .findAllByFromIdAndFromType(UUIDConverter.fromTimeUUID(entity.getId()), entity.getEntityType().name())
-                .size() > 0;
-        if (relationExistsBeforeDelete) {
+        // null if the delete failed, the removed relations are then unknown
+        List<EntityRelation> removed = null;
+        try {
+            removed = doDeleteOutboundRelations(entity);
+            return !removed.isEmpty();
+        } finally {
+            if (relationCache != null) {
+                relationCache.evictOutbound(entity, removed);
+            }
+        }
+    }
+
+    /**
+     * @return the removed relations
+     */
+    private List<EntityRelation> doDeleteOutboundRelations(EntityId entity) {
+        List<EntityRelation> relations = DaoUtil.convertDataList(relationRepository
+                .findAllByFromIdAndFromType(UUIDConverter.fromTimeUUID(entity.getId()), entity.getEntityType().name()));
+        if (!relations.isEmpty()) {
             relationRepository.deleteByFromIdAndFromType(UUIDConverter.fromTimeUUID(entity.getId()), entity.getEntityType().name());
         }
-        return relationExistsBeforeDelete;
+        return relations;
     }
 
     @Override
     public ListenableFuture<Boolean> deleteOutboundRelationsAsync(TenantId tenantId, EntityId entity) {
-        return service.submit(
-                () -> {
-                    boolean relationExistsBeforeDelete = relationRepository
-                            .findAllByFromIdAndFromType(UUIDConverter.fromTimeUUID(entity.getId()), entity.getEntityType().name())
-                            .size() > 0;
-                    if (relationExistsBeforeDelete) {
-                        relationRepository.deleteByFromIdAndFromType(UUIDConverter.fromTimeUUID(entity.getId()), entity.getEntityType().name());
-                    }
-                    return relationExistsBeforeDelete;
-                });
+        ListenableFuture<List<EntityRelation>> future = service.submit(() -> doDeleteOutboundRelations(entity));
+        if (relationCache != null) {
+            future.addListener(() -> {
+                List<EntityRelation> removed = null;
+                try {
+                    removed = Futures.getDone(future);
+                } catch (ExecutionException | CancellationException e) {
+                    // the removed relations are unknown
+                }
+                relationCache.evictOutbound(entity, removed);
+            }, MoreExecutors.directExecutor());
+        }
+        return Futures.transform(future, removed -> !removed.isEmpty(), MoreExecutors.directExecutor());
     }
 
     @Override
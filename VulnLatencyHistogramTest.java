@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server.metric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.apache.zookeeper.ZKTestCase;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest extends ZKTestCase {
+
+    @Test
+    public void testBucketBounds() {
+        for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 17, 1000, 1023, 1024, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(upper >= value, "value " + value + " above bucket bound " + upper);
+            assertTrue(upper - value <= value / 8, "bucket of " + value + " too wide: " + upper);
+        }
+        // powers of two start a bucket, so 2^k - 1 ends one
+        for (int exp = 1; exp < 63; exp++) {
+            long bound = (1L << exp) - 1;
+            assertEquals(bound, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(bound)));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram("test_ms", null);
+        for (int i = 1; i <= 1000; i++) {
+            histogram.add(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getSum());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getAvg(), 0.001);
+
+        long p50 = histogram.getP50();
+        assertTrue(p50 >= 500 && p50 <= 500 * 9 / 8, "p50 " + p50);
+        long p99 = histogram.getP99();
+        assertTrue(p99 >= 990 && p99 <= 1000, "p99 " + p99);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testCountAtOrBelow() {
+        LatencyHistogram histogram = new LatencyHistogram("test_ms", "op=\"create\"");
+        histogram.add(0);
+        histogram.add(3);
+        histogram.add(4);
+        histogram.add(-5);
+        histogram.add(100);
+        assertEquals(2, histogram.getCountAtOrBelow(0));
+        assertEquals(3, histogram.getCountAtOrBelow(3));
+        assertEquals(4, histogram.getCountAtOrBelow(7));
+        assertEquals(4, histogram.getCountAtOrBelow(63));
+        assertEquals(5, histogram.getCountAtOrBelow(127));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getCountAtOrBelow(127));
+        assertEquals(0, histogram.getP99());
+    }
+
+}
@@ -23,14 +23,23 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jute.BinaryInputArchive;
 import org.apache.jute.BinaryOutputArchive;
@@ -79,6 +88,21 @@ public class Learner {
     static {
         LOG.info("TCP NoDelay set to: " + nodelay);
     }   
+
+    /**
+     * Size of the buffer the leader stream is read through. Snapshots are
+     * read from it in small records, so a larger buffer means fewer socket
+     * reads during a SNAP sync.
+     */
+    static final private int inputBufferSize = Integer.getInteger("zookeeper.learner.inputBufferSize", 64 * 1024);
+
+    /**
+     * Bytes of packets read ahead of the txns being applied while syncing
+     * with the leader. 0 reads and applies on the same thread.
+     */
+    static final private int syncPrefetchBytes = Integer.getInteger("zookeeper.learner.syncPrefetchBytes", 4 * 1024 * 1024);
+
+    private CountingInputStream leaderInput;
     
     final ConcurrentHashMap<Long, ServerCnxn> pendingRevalidations =
         new ConcurrentHashMap<Long, ServerCnxn>();
@@ -232,8 +256,9 @@ public class Learner {
             }
             Thread.sleep(1000);
         }
+        leaderInput = new CountingInputStream(sock.getInputStream());
         leaderIs = BinaryInputArchive.getArchive(new BufferedInputStream(
-                sock.getInputStream()));
+                leaderInput, inputBufferSize));
         bufferedOutput = new BufferedOutputStream(sock.getOutputStream());
         leaderOs = BinaryOutputArchive.getArchive(bufferedOutput);
     }   
@@ -283,8 +308,13 @@ public class Learner {
         QuorumPacket ack = new QuorumPacket(Leader.ACK, 0, null, null);
         QuorumPacket qp = new QuorumPacket();
         
+        long syncStart = System.nanoTime();
+        long syncStartBytes = leaderInput == null ? 0 : leaderInput.getCount();
+        long syncTxns = 0;
         readPacket(qp);   
+        int syncType = qp.getType();
         LinkedList<PacketInFlight> packetsNotCommitted = new LinkedList<PacketInFlight>();
+        SyncPacketReader reader = null;
         synchronized (zk) {
             if (qp.getType() == Leader.DIFF) {
                 LOG.info("Getting a diff from the leader 0x" + Long.toHexString(qp.getZxid()));                
@@ -325,46 +355,64 @@ public class Learner {
             }
                         
             long lastQueued = 0;
-            // we are now going to start getting transactions to apply followed by an UPTODATE
-            outerLoop:
-            while (self.isRunning()) {
-                readPacket(qp);
-                switch(qp.getType()) {
-                case Leader.PROPOSAL:
-                    PacketInFlight pif = new PacketInFlight();
-                    pif.hdr = new TxnHeader();
-                    BinaryInputArchive ia = BinaryInputArchive
-                            .getArchive(new ByteArrayInputStream(qp.getData()));
-                    pif.rec     = SerializeUtils.deserializeTxn(ia, pif.hdr);
-                    if (pif.hdr.    getZxid() != lastQueued + 1) {
-                    LOG.warn("Got zxid 0x"
-                            + Long.toHexString(pif.hdr.getZxid())
-                            + " expected 0x"
-                            + Long.toHexString(lastQueued + 1));
-                    }
-                    lastQueued = pif.hdr.getZxid();
-                    packetsNotCommitted.add(pif);
-                    break;
-                case Leader.COMMIT:
-                    pif = packetsNotCommitted.peekFirst();
-                    if (pif.hdr.getZxid() != qp.getZxid()) {
-                        LOG.warn("Committing " + qp.getZxid() + ", but next proposal is " + pif.hdr.getZxid());
+            if (syncPrefetchBytes > 0) {
+                reader = new SyncPacketReader(syncPrefetchBytes);
+                reader.start();
+            }
+            try {
+                // we are now going to start getting transactions to apply followed by an UPTODATE
+                outerLoop:
+                while (self.isRunning()) {
+                    if (reader != null) {
+                        qp = reader.take();
                     } else {
-                        zk.getZKDatabase().processTxn(pif.hdr, pif.rec);
-                        packetsNotCommitted.remove();
+                        readPacket(qp);
                     }
-                    break;
-                case Leader.INFORM:
-                    TxnHeader hdr = new TxnHeader();
-                    ia = BinaryInputArchive
-                            .getArchive(new ByteArrayInputStream(qp.getData()));
-                    Record txn = SerializeUtils.deserializeTxn(ia, hdr);
-                    zk.getZKDatabase().processTxn(hdr, txn);
-                    break;
-                case Leader.UPTODATE:
-                    zk.takeSnapshot();
-                    self.cnxnFactory.setZooKeeperServer(zk);                
-                    break outerLoop;
+                    switch(qp.getType()) {
+                    case Leader.PROPOSAL:
+                        PacketInFlight pif = new PacketInFlight();
+                        pif.hdr = new TxnHeader();
+                        BinaryInputArchive ia = BinaryInputArchive
+                                .getArchive(new ByteArrayInputStream(qp.getData()));
+                        pif.rec     = SerializeUtils.deserializeTxn(ia, pif.hdr);
+                        if (pif.hdr.    getZxid() != lastQueued + 1) {
+                        LOG.warn("Got zxid 0x"
+                                + Long.toHexString(pif.hdr.getZxid())
+                                + " expected 0x"
+                                + Long.toHexString(lastQueued + 1));
+                        }
+                        lastQueued = pif.hdr.getZxid();
+                        packetsNotCommitted.add(pif);
+                        syncTxns++;
+                        break;
+                    case Leader.COMMIT:
+                        pif = packetsNotCommitted.peekFirst();
+                        if (pif.hdr.getZxid() != qp.getZxid()) {
+                            LOG.warn("Committing " + qp.getZxid() + ", but next proposal is " + pif.hdr.getZxid());
+                        } else {
+                            zk.getZKDatabase().processTxn(pif.hdr, pif.rec);
+                            packetsNotCommitted.remove();
+                        }
+                        break;
+                    case Leader.INFORM:
+                        TxnHeader hdr = new TxnHeader();
+                        ia = BinaryInputArchive
+                                .getArchive(new ByteArrayInputStream(qp.getData()));
+                        Record txn = SerializeUtils.deserializeTxn(ia, hdr);
+                        zk.getZKDatabase().processTxn(hdr, txn);
+                        syncTxns++;
+                        break;
+                    case Leader.UPTODATE:
+                        recordSync(syncType, System.nanoTime() - syncStart,
+                                leaderInput == null ? 0 : leaderInput.getCount() - syncStartBytes, syncTxns);
+                        zk.takeSnapshot();
+                        self.cnxnFactory.setZooKeeperServer(zk);                
+                        break outerLoop;
+                    }
+                }
+            } finally {
+                if (reader != null) {
+                    reader.interrupt();
                 }
             }
         }
@@ -378,6 +426,132 @@ public class Learner {
         }
     }
     
+    private void recordSync(int syncType, long nanos, long bytes, long txns) {
+        String type = syncType == Leader.DIFF ? "DIFF" : syncType == Leader.SNAP ? "SNAP" : "TRUNC";
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        long throughput = ms == 0 ? bytes * 1000 : bytes * 1000 / ms;
+        LOG.info("Synced with leader using " + type + ": " + bytes + " bytes and "
+                + txns + " txns in " + ms + " ms (" + throughput + " bytes/s)");
+    }
+
+    /**
+     * Reads the packets that follow a DIFF, SNAP or TRUNC up to and including
+     * UPTODATE, so that the next packets arrive from the socket while the
+     * learner applies txns. It stops after UPTODATE, leaving the stream to
+     * the learner's main loop.
+     *
+     * The packets waiting to be taken are bounded by their size rather than
+     * their number, as a single proposal can carry up to jute.maxbuffer bytes.
+     */
+    class SyncPacketReader extends Thread {
+
+        /**
+         * Counted for every packet on top of its data, so that packets
+         * without data are bounded too.
+         */
+        static final int PACKET_OVERHEAD = 64;
+
+        private final BlockingQueue<QuorumPacket> packets = new LinkedBlockingQueue<QuorumPacket>();
+        private final int maxBytes;
+        private final Semaphore freeBytes;
+        private volatile IOException error;
+
+        SyncPacketReader(int maxBytes) {
+            super("SyncPacketReader:" + self.getId());
+            setDaemon(true);
+            this.maxBytes = maxBytes;
+            this.freeBytes = new Semaphore(maxBytes);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (self.isRunning()) {
+                    QuorumPacket qp = new QuorumPacket();
+                    readPacket(qp);
+                    freeBytes.acquire(size(qp));
+                    packets.put(qp);
+                    if (qp.getType() == Leader.UPTODATE) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                error = new InterruptedIOException("Interrupted while syncing with the leader");
+            }
+        }
+
+        QuorumPacket take() throws IOException, InterruptedException {
+            while (true) {
+                QuorumPacket qp = packets.poll(100, TimeUnit.MILLISECONDS);
+                if (qp != null) {
+                    freeBytes.release(size(qp));
+                    return qp;
+                }
+                if (!isAlive() && packets.isEmpty()) {
+                    if (error != null) {
+                        throw error;
+                    }
+                    throw new EOFException("Sync with the leader ended before UPTODATE");
+                }
+            }
+        }
+
+        int getQueuedBytes() {
+            return maxBytes - freeBytes.availablePermits();
+        }
+
+        /**
+         * A packet larger than the whole budget is admitted on its own.
+         */
+        private int size(QuorumPacket qp) {
+            int dataLength = qp.getData() == null ? 0 : qp.getData().length;
+            return Math.min(maxBytes, PACKET_OVERHEAD + dataLength);
+        }
+    }
+
+    /**
+     * Counts the bytes read from the leader, for the sync statistics.
+     */
+    static class CountingInputStream extends FilterInputStream {
+
+        private final AtomicLong count = new AtomicLong();
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count.addAndGet(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count.addAndGet(skipped);
+            return skipped;
+        }
+
+        long getCount() {
+            return count.get();
+        }
+    }
+
     protected void revalidate(QuorumPacket qp) throws IOException {
         ByteArrayInputStream bis = new ByteArrayInputStream(qp
                 .getData());
@@ -19,6 +19,8 @@
 package org.apache.zookeeper.server.quorum;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import java.io.BufferedOutputStream;
@@ -27,6 +29,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.ArrayList;
@@ -214,4 +219,148 @@ public class LearnerTest extends ZKTestCase {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void syncPacketReaderOrderTest() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryOutputArchive oa = BinaryOutputArchive.getArchive(baos);
+        for (int zxid = 1; zxid <= 5; zxid++) {
+            oa.writeRecord(new QuorumPacket(Leader.PROPOSAL, zxid, null, null), null);
+        }
+        oa.writeRecord(new QuorumPacket(Leader.UPTODATE, 5, null, null), null);
+        // belongs to the main loop of the learner, the reader must not consume it
+        oa.writeRecord(new QuorumPacket(Leader.PING, 6, null, null), null);
+
+        Learner learner = newSyncLearner(new ByteArrayInputStream(baos.toByteArray()));
+        // a budget smaller than two packets makes the reader wait for the learner to catch up
+        Learner.SyncPacketReader reader = learner.new SyncPacketReader(2 * Learner.SyncPacketReader.PACKET_OVERHEAD - 1);
+        reader.start();
+        for (int zxid = 1; zxid <= 5; zxid++) {
+            QuorumPacket qp = reader.take();
+            assertEquals(Leader.PROPOSAL, qp.getType());
+            assertEquals(zxid, qp.getZxid());
+        }
+        assertEquals(Leader.UPTODATE, reader.take().getType());
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+
+        QuorumPacket qp = new QuorumPacket();
+        learner.readPacket(qp);
+        assertEquals(Leader.PING, qp.getType());
+    }
+
+    @Test
+    public void syncPacketReaderEofBeforeUptodateTest() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryOutputArchive oa = BinaryOutputArchive.getArchive(baos);
+        oa.writeRecord(new QuorumPacket(Leader.PROPOSAL, 1, null, null), null);
+        oa.writeRecord(new QuorumPacket(Leader.COMMIT, 1, null, null), null);
+
+        Learner learner = newSyncLearner(new ByteArrayInputStream(baos.toByteArray()));
+        Learner.SyncPacketReader reader = learner.new SyncPacketReader(1024);
+        reader.start();
+        assertEquals(Leader.PROPOSAL, reader.take().getType());
+        assertEquals(Leader.COMMIT, reader.take().getType());
+        try {
+            reader.take();
+            fail("should have thrown EOFException!");
+        } catch (EOFException e) {
+            // the leader closed the stream before UPTODATE
+        }
+    }
+
+    @Test
+    public void syncPacketReaderErrorTest() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryOutputArchive oa = BinaryOutputArchive.getArchive(baos);
+        oa.writeRecord(new QuorumPacket(Leader.PROPOSAL, 1, null, null), null);
+        final IOException injected = new IOException("Test injected read error.");
+        InputStream in = new SequenceInputStream(new ByteArrayInputStream(baos.toByteArray()), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw injected;
+            }
+        });
+
+        Learner learner = newSyncLearner(in);
+        Learner.SyncPacketReader reader = learner.new SyncPacketReader(1024);
+        reader.start();
+        // packets read before the error are still delivered, then the error is rethrown to the learner
+        assertEquals(Leader.PROPOSAL, reader.take().getType());
+        try {
+            reader.take();
+            fail("should have thrown IOException!");
+        } catch (IOException e) {
+            assertSame(injected, e);
+        }
+    }
+
+    @Test
+    public void syncPacketReaderInterruptTest() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryOutputArchive oa = BinaryOutputArchive.getArchive(baos);
+        for (int zxid = 1; zxid <= 3; zxid++) {
+            oa.writeRecord(new QuorumPacket(Leader.PROPOSAL, zxid, null, null), null);
+        }
+        oa.writeRecord(new QuorumPacket(Leader.UPTODATE, 3, null, null), null);
+
+        Learner learner = newSyncLearner(new ByteArrayInputStream(baos.toByteArray()));
+        Learner.SyncPacketReader reader = learner.new SyncPacketReader(Learner.SyncPacketReader.PACKET_OVERHEAD);
+        reader.start();
+        // wait for the reader to block on the full budget, as when syncWithLeader stops taking packets
+        long deadline = System.currentTimeMillis() + 10000;
+        while (reader.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.WAITING, reader.getState());
+        reader.interrupt();
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+
+        assertEquals(1, reader.take().getZxid());
+        try {
+            reader.take();
+            fail("should have thrown InterruptedIOException!");
+        } catch (InterruptedIOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void syncPacketReaderBytesBoundTest() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryOutputArchive oa = BinaryOutputArchive.getArchive(baos);
+        for (int zxid = 1; zxid <= 3; zxid++) {
+            oa.writeRecord(new QuorumPacket(Leader.PROPOSAL, zxid, new byte[600], null), null);
+        }
+        oa.writeRecord(new QuorumPacket(Leader.UPTODATE, 3, null, null), null);
+
+        Learner learner = newSyncLearner(new ByteArrayInputStream(baos.toByteArray()));
+        Learner.SyncPacketReader reader = learner.new SyncPacketReader(1000);
+        reader.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (reader.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // the second proposal doesn't fit next to the first one
+        assertEquals(Thread.State.WAITING, reader.getState());
+        assertEquals(Learner.SyncPacketReader.PACKET_OVERHEAD + 600, reader.getQueuedBytes());
+
+        for (int zxid = 1; zxid <= 3; zxid++) {
+            QuorumPacket qp = reader.take();
+            assertEquals(zxid, qp.getZxid());
+            assertEquals(600, qp.getData().length);
+        }
+        assertEquals(Leader.UPTODATE, reader.take().getType());
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+        assertEquals(0, reader.getQueuedBytes());
+    }
+
+    private static Learner newSyncLearner(InputStream leaderStream) {
+        Learner learner = new Learner();
+        learner.self = new QuorumPeer();
+        learner.leaderIs = BinaryInputArchive.getArchive(leaderStream);
+        return learner;
+    }
+
+}
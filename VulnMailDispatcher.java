@@ -0,0 +1,207 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.mail;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends mail messages through a fixed pool of workers, each of them keeping its own
+ * SMTP transport open between messages. A worker drains up to {@code batchSize} queued
+ * messages per wake-up and sends them over the same connection, so bursts of
+ * notifications do not pay for a TCP/TLS handshake and authentication per message.
+ *
+ * Idle connections are closed after {@code idleTimeoutMs}. Changing the transport
+ * factory makes every worker reconnect before its next message.
+ */
+@Slf4j
+class MailDispatcher {
+
+    interface TransportFactory {
+        Transport connect() throws MessagingException;
+    }
+
+    private final int poolSize;
+    private final int batchSize;
+    private final long idleTimeoutMs;
+    private final BlockingQueue<MailTask> queue;
+    private final AtomicInteger configVersion = new AtomicInteger();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong connectCount = new AtomicLong();
+
+    private volatile TransportFactory transportFactory;
+    private volatile boolean stopped;
+    private ExecutorService executor;
+
+    MailDispatcher(int poolSize, int queueCapacity, int batchSize, long idleTimeoutMs) {
+        if (poolSize <= 0 || queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Pool size, queue capacity and batch size must be positive!");
+        }
+        this.poolSize = poolSize;
+        this.batchSize = batchSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    void start() {
+        executor = Executors.newFixedThreadPool(poolSize, ThingsBoardThreadFactory.forName("mail-dispatcher"));
+        for (int i = 0; i < poolSize; i++) {
+            executor.submit(this::runWorker);
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        List<MailTask> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(task -> task.future.setException(new RejectedExecutionException("Mail dispatcher is stopped!")));
+    }
+
+    void setTransportFactory(TransportFactory transportFactory) {
+        this.transportFactory = transportFactory;
+        configVersion.incrementAndGet();
+    }
+
+    ListenableFuture<Void> submit(MimeMessage message) {
+        SettableFuture<Void> future = SettableFuture.create();
+        if (stopped) {
+            future.setException(new RejectedExecutionException("Mail dispatcher is stopped!"));
+        } else if (!queue.offer(new MailTask(message, future))) {
+            future.setException(new RejectedExecutionException("Mail queue is full!"));
+        }
+        return future;
+    }
+
+    int getQueueSize() {
+        return queue.size();
+    }
+
+    long getConnectCount() {
+        return connectCount.get();
+    }
+
+    void printStats() {
+        log.info("Mail dispatcher stats: queued [{}] sent [{}] failed [{}] connects [{}]",
+                queue.size(), sentCount.getAndSet(0), failedCount.getAndSet(0), connectCount.get());
+    }
+
+    private void runWorker() {
+        Transport transport = null;
+        int transportVersion = -1;
+        List<MailTask> batch = new ArrayList<>(batchSize);
+        try {
+            while (!stopped) {
+                MailTask first = queue.poll(idleTimeoutMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    transport = close(transport);
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (MailTask task : batch) {
+                    try {
+                        int version = configVersion.get();
+                        if (transport == null || transportVersion != version || !transport.isConnected()) {
+                            close(transport);
+                            transport = connect();
+                            transportVersion = version;
+                        }
+                        send(transport, task.message);
+                        sentCount.incrementAndGet();
+                        task.future.set(null);
+                    } catch (Exception e) {
+                        if (!(e instanceof SendFailedException)) {
+                            transport = close(transport);
+                        }
+                        failedCount.incrementAndGet();
+                        task.future.setException(e);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            log.debug("Mail dispatcher worker interrupted");
+        } finally {
+            batch.forEach(task -> task.future.setException(new RejectedExecutionException("Mail dispatcher is stopped!")));
+            close(transport);
+        }
+    }
+
+    private Transport connect() throws MessagingException {
+        TransportFactory factory = transportFactory;
+        if (factory == null) {
+            throw new IllegalStateException("Mail configuration is not set!");
+        }
+        Transport transport = factory.connect();
+        connectCount.incrementAndGet();
+        return transport;
+    }
+
+    private static void send(Transport transport, MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        String messageId = message.getMessageID();
+        message.saveChanges();
+        if (messageId != null) {
+            message.setHeader("Message-ID", messageId);
+        }
+        transport.sendMessage(message, message.getAllRecipients());
+    }
+
+    private static Transport close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close mail transport", e);
+            }
+        }
+        return null;
+    }
+
+    private static class MailTask {
+        private final MimeMessage message;
+        private final SettableFuture<Void> future;
+
+        MailTask(MimeMessage message, SettableFuture<Void> future) {
+            this.message = message;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.mail;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class MailDispatcherTest {
+
+    private final Session session = Session.getInstance(new Properties());
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private MailDispatcher dispatcher;
+
+    @After
+    public void after() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testMessagesShareConnection() throws Exception {
+        dispatcher = new MailDispatcher(1, 100, 10, 60000);
+        dispatcher.setTransportFactory(() -> connect(null));
+        dispatcher.start();
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(dispatcher.submit(message("subject-" + i)));
+        }
+        for (ListenableFuture<Void> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(20, sent.size());
+        Assert.assertEquals(1, dispatcher.getConnectCount());
+    }
+
+    @Test
+    public void testFailedSendReconnects() throws Exception {
+        dispatcher = new MailDispatcher(1, 100, 10, 60000);
+        dispatcher.setTransportFactory(() -> connect("broken"));
+        dispatcher.start();
+
+        ListenableFuture<Void> failed = dispatcher.submit(message("broken"));
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            Assert.fail("Send failure is not propagated");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof MessagingException);
+        }
+        dispatcher.submit(message("ok")).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals(2, dispatcher.getConnectCount());
+    }
+
+    @Test
+    public void testConfigurationChangeReconnects() throws Exception {
+        dispatcher = new MailDispatcher(1, 100, 10, 60000);
+        dispatcher.setTransportFactory(() -> connect(null));
+        dispatcher.start();
+
+        dispatcher.submit(message("first")).get(5, TimeUnit.SECONDS);
+        dispatcher.setTransportFactory(() -> connect(null));
+        dispatcher.submit(message("second")).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(2, dispatcher.getConnectCount());
+    }
+
+    @Test
+    public void testFullQueueRejects() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher = new MailDispatcher(1, 1, 1, 60000);
+        dispatcher.setTransportFactory(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return connect(null);
+        });
+        dispatcher.start();
+
+        ListenableFuture<Void> first = dispatcher.submit(message("first"));
+        Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        ListenableFuture<Void> queued = dispatcher.submit(message("queued"));
+        ListenableFuture<Void> rejected = dispatcher.submit(message("rejected"));
+        Assert.assertTrue(rejected.isDone());
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(2, sent.size());
+    }
+
+    private MimeMessage message(String subject) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress("from@thingsboard.org"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("to@thingsboard.org"));
+        message.setSubject(subject);
+        message.setText("body");
+        return message;
+    }
+
+    private Transport connect(String failingSubject) throws MessagingException {
+        Transport transport = new Transport(session, null) {
+            @Override
+            protected boolean protocolConnect(String host, int port, String user, String password) {
+                return true;
+            }
+
+            @Override
+            public void sendMessage(Message msg, Address[] addresses) throws MessagingException {
+                if (msg.getSubject().equals(failingSubject)) {
+                    throw new MessagingException("Connection reset");
+                }
+                sent.add(msg.getSubject());
+            }
+        };
+        transport.connect();
+        return transport;
+    }
+}
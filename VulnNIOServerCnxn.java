@@ -30,10 +30,13 @@ import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.security.cert.Certificate;
+import java.util.Arrays;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.jute.BinaryInputArchive;
 import org.apache.jute.BinaryOutputArchive;
@@ -91,6 +94,50 @@ public class NIOServerCnxn extends ServerCnxn {
 
     private final int outstandingLimit;
 
+    /*
+     * Totals over all connections, registered as metrics by ZooKeeperServer.
+     */
+    private static final LongAdder readCalls = new LongAdder();
+    private static final LongAdder writeCalls = new LongAdder();
+    private static final LongAdder responseBytesAllocated = new LongAdder();
+    private static final LongAdder sharedNotifications = new LongAdder();
+
+    /**
+     * The last serialized notification. A watch trigger delivers the same
+     * WatchedEvent instance to every watching connection, so it is serialized
+     * by the first connection and the bytes are shared by the others.
+     */
+    private static final AtomicReference<SerializedNotification> lastNotification =
+        new AtomicReference<SerializedNotification>();
+
+    private static class SerializedNotification {
+        final WatchedEvent event;
+        final byte[] bytes;
+
+        SerializedNotification(WatchedEvent event, byte[] bytes) {
+            this.event = event;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Gives access to the serialized bytes without the copy made by
+     * toByteArray(), unless more than half of the buffer is unused: the
+     * response may stay queued for a while and should not pin twice its size.
+     */
+    private static class ResponseOutputStream extends ByteArrayOutputStream {
+        ResponseOutputStream() {
+            super(64);
+        }
+
+        ByteBuffer toByteBuffer() {
+            if (buf.length > 2 * count) {
+                return ByteBuffer.wrap(Arrays.copyOf(buf, count));
+            }
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
     public NIOServerCnxn(ZooKeeperServer zk, SocketChannel sock,
                          SelectionKey sk, NIOServerCnxnFactory factory,
                          SelectorThread selectorThread) throws IOException {
@@ -163,6 +210,7 @@ public class NIOServerCnxn extends ServerCnxn {
     private void readPayload() throws IOException, InterruptedException {
         if (incomingBuffer.remaining() != 0) { // have we read length bytes?
             int rc = sock.read(incomingBuffer); // sock is non-blocking, so ok
+            readCalls.increment();
             if (rc < 0) {
                 throw new EndOfStreamException(
                         "Unable to read additional data from client sessionid 0x"
@@ -227,6 +275,7 @@ public class NIOServerCnxn extends ServerCnxn {
             // Use gathered write call. This updates the positions of the
             // byte buffers to reflect the bytes that were written out.
             sock.write(outgoingBuffers.toArray(bufferList));
+            writeCalls.increment();
 
             // Remove the buffers that we have sent
             ByteBuffer bb;
@@ -274,6 +323,7 @@ public class NIOServerCnxn extends ServerCnxn {
             directBuffer.flip();
 
             int sent = sock.write(directBuffer);
+            writeCalls.increment();
 
             ByteBuffer bb;
 
@@ -318,6 +368,7 @@ public class NIOServerCnxn extends ServerCnxn {
             }
             if (k.isReadable()) {
                 int rc = sock.read(incomingBuffer);
+                readCalls.increment();
                 if (rc < 0) {
                     throw new EndOfStreamException(
                             "Unable to read additional data from client sessionid 0x"
@@ -676,23 +727,7 @@ public class NIOServerCnxn extends ServerCnxn {
     @Override
     public void sendResponse(ReplyHeader h, Record r, String tag) {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            // Make space for length
-            BinaryOutputArchive bos = BinaryOutputArchive.getArchive(baos);
-            try {
-                baos.write(fourBytes);
-                bos.writeRecord(h, "header");
-                if (r != null) {
-                    bos.writeRecord(r, tag);
-                }
-                baos.close();
-            } catch (IOException e) {
-                LOG.error("Error serializing response");
-            }
-            byte b[] = baos.toByteArray();
-            ByteBuffer bb = ByteBuffer.wrap(b);
-            bb.putInt(b.length - 4).rewind();
-            sendBuffer(bb);
+            sendBuffer(serializeResponse(h, r, tag));
             if (h.getXid() > 0) {
                 // check throttling
                 if (outstandingRequests.decrementAndGet() < 1 ||
@@ -705,6 +740,30 @@ public class NIOServerCnxn extends ServerCnxn {
          }
     }
 
+    /**
+     * @return the length prefixed response, wrapping the serialization buffer
+     * unless it is mostly unused
+     */
+    static ByteBuffer serializeResponse(ReplyHeader h, Record r, String tag) {
+        ResponseOutputStream baos = new ResponseOutputStream();
+        // Make space for length
+        BinaryOutputArchive bos = BinaryOutputArchive.getArchive(baos);
+        try {
+            baos.write(fourBytes);
+            bos.writeRecord(h, "header");
+            if (r != null) {
+                bos.writeRecord(r, tag);
+            }
+            baos.close();
+        } catch (IOException e) {
+            LOG.error("Error serializing response");
+        }
+        ByteBuffer bb = baos.toByteBuffer();
+        bb.putInt(0, bb.remaining() - 4);
+        responseBytesAllocated.add(bb.capacity());
+        return bb;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -712,7 +771,6 @@ public class NIOServerCnxn extends ServerCnxn {
      */
     @Override
     public void process(WatchedEvent event) {
-        ReplyHeader h = new ReplyHeader(-1, -1L, 0);
         if (LOG.isTraceEnabled()) {
             ZooTrace.logTraceMessage(LOG, ZooTrace.EVENT_DELIVERY_TRACE_MASK,
                                      "Deliver event " + event + " to 0x"
@@ -720,10 +778,42 @@ public class NIOServerCnxn extends ServerCnxn {
                                      + " through " + this);
         }
 
-        // Convert WatchedEvent to a type that can be sent over the wire
-        WatcherEvent e = event.getWrapper();
+        sendBuffer(serializeNotification(event));
+    }
+
+    /**
+     * @return the length prefixed notification for the event, as a buffer of
+     * its own over bytes shared with the other connections watching it
+     */
+    static ByteBuffer serializeNotification(WatchedEvent event) {
+        SerializedNotification serialized = lastNotification.get();
+        if (serialized != null && serialized.event == event) {
+            sharedNotifications.increment();
+        } else {
+            // Convert WatchedEvent to a type that can be sent over the wire
+            WatcherEvent e = event.getWrapper();
+            ByteBuffer bb = serializeResponse(new ReplyHeader(-1, -1L, 0), e, "notification");
+            byte[] bytes = bb.array().length == bb.remaining() ? bb.array() : Arrays.copyOf(bb.array(), bb.remaining());
+            serialized = new SerializedNotification(event, bytes);
+            lastNotification.set(serialized);
+        }
+        return ByteBuffer.wrap(serialized.bytes);
+    }
+
+    public static long getReadCalls() {
+        return readCalls.sum();
+    }
+
+    public static long getWriteCalls() {
+        return writeCalls.sum();
+    }
+
+    public static long getResponseBytesAllocated() {
+        return responseBytesAllocated.sum();
+    }
 
-        sendResponse(h, e, "notification");
+    public static long getSharedNotifications() {
+        return sharedNotifications.sum();
     }
 
     /*
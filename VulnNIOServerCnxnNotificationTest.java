@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.ByteBuffer;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
+import org.apache.zookeeper.ZKTestCase;
+import org.apache.zookeeper.proto.ReplyHeader;
+import org.junit.jupiter.api.Test;
+
+public class NIOServerCnxnNotificationTest extends ZKTestCase {
+
+    @Test
+    public void testWatchersOfOneEventGetIdenticalIndependentBuffers() {
+        WatchedEvent event = new WatchedEvent(EventType.NodeDataChanged, KeeperState.SyncConnected, "/watched");
+        ByteBuffer expected = NIOServerCnxn.serializeResponse(new ReplyHeader(-1, -1L, 0), event.getWrapper(), "notification");
+
+        long sharedBefore = NIOServerCnxn.getSharedNotifications();
+        ByteBuffer first = NIOServerCnxn.serializeNotification(event);
+        ByteBuffer second = NIOServerCnxn.serializeNotification(event);
+        ByteBuffer third = NIOServerCnxn.serializeNotification(event);
+        assertTrue(NIOServerCnxn.getSharedNotifications() - sharedBefore >= 2);
+
+        assertNotSame(first, second);
+        assertNotSame(second, third);
+        assertEquals(expected, first);
+        assertEquals(expected, second);
+        assertEquals(expected, third);
+        assertEquals(first.remaining() - 4, first.getInt(0));
+
+        // a connection writing its buffer out does not move the others
+        int length = first.remaining();
+        first.get(new byte[length / 2]);
+        second.position(length);
+        assertEquals(length - length / 2, first.remaining());
+        assertEquals(0, second.remaining());
+        assertEquals(length, third.remaining());
+        assertEquals(expected, third);
+    }
+
+    @Test
+    public void testDifferentEventsAreSerializedSeparately() {
+        WatchedEvent created = new WatchedEvent(EventType.NodeCreated, KeeperState.SyncConnected, "/a");
+        WatchedEvent deleted = new WatchedEvent(EventType.NodeDeleted, KeeperState.SyncConnected, "/a");
+
+        ByteBuffer first = NIOServerCnxn.serializeNotification(created);
+        ByteBuffer second = NIOServerCnxn.serializeNotification(deleted);
+        assertEquals(NIOServerCnxn.serializeResponse(new ReplyHeader(-1, -1L, 0), created.getWrapper(), "notification"), first);
+        assertEquals(NIOServerCnxn.serializeResponse(new ReplyHeader(-1, -1L, 0), deleted.getWrapper(), "notification"), second);
+    }
+
+    @Test
+    public void testSmallResponseDoesNotPinSerializationBuffer() {
+        ByteBuffer bb = NIOServerCnxn.serializeResponse(new ReplyHeader(1, 1L, 0), null, null);
+        assertEquals(0, bb.position());
+        assertEquals(bb.capacity(), bb.remaining());
+        assertEquals(bb.remaining() - 4, bb.getInt(0));
+    }
+
+}
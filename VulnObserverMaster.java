@@ -74,6 +74,9 @@ public class ObserverMaster extends LearnerMaster implements Runnable {
 
     private Set<LearnerHandler> activeObservers = Collections.newSetFromMap(new ConcurrentHashMap<LearnerHandler, Boolean>());
 
+    // observers accepted but not forwarded to yet, counted against maxObservers
+    private final Set<LearnerHandler> syncingObservers = Collections.newSetFromMap(new ConcurrentHashMap<LearnerHandler, Boolean>());
+
     private final ConcurrentHashMap<LearnerHandler, LearnerHandlerBean> connectionBeans = new ConcurrentHashMap<>();
 
     /**
@@ -83,6 +86,14 @@ public class ObserverMaster extends LearnerMaster implements Runnable {
      */
     private static final int PKTS_SIZE_LIMIT = 32 * 1024 * 1024;
     private static volatile int pktsSizeLimit = Integer.getInteger("zookeeper.observerMaster.sizeLimit", PKTS_SIZE_LIMIT);
+    /**
+     * Maximum number of observers served by this follower, 0 for no limit. Once
+     * reached, new connections are closed as soon as they are accepted, before
+     * any sync; the refused observer moves on to the next ObserverMaster in its
+     * list, so a large set of observers is spread over the followers instead of
+     * all of them hanging off one.
+     */
+    private static volatile int maxObservers = Integer.getInteger("zookeeper.observerMaster.maxObservers", 0);
     private ConcurrentLinkedQueue<QuorumPacket> proposedPkts = new ConcurrentLinkedQueue<>();
     private ConcurrentLinkedQueue<QuorumPacket> committedPkts = new ConcurrentLinkedQueue<>();
     private int pktsSize = 0;
@@ -158,9 +169,22 @@ public class ObserverMaster extends LearnerMaster implements Runnable {
 
     @Override
     public void removeLearnerHandler(LearnerHandler learnerHandler) {
+        syncingObservers.remove(learnerHandler);
         activeObservers.remove(learnerHandler);
     }
 
+    /**
+     * @return true if one more observer can be served without going over maxObservers,
+     * counting the observers that are still syncing
+     */
+    boolean canAcceptObserver() {
+        return maxObservers <= 0 || activeObservers.size() + syncingObservers.size() < maxObservers;
+    }
+
+    void addSyncingObserver(LearnerHandler learnerHandler) {
+        syncingObservers.add(learnerHandler);
+    }
+
     @Override
     public int syncTimeout() {
         return self.getSyncLimit() * self.getTickTime();
@@ -325,6 +349,7 @@ public class ObserverMaster extends LearnerMaster implements Runnable {
                 packet.getZxid() - lastSeenZxid,
                 queueBytesUsed);
         }
+        syncingObservers.remove(learnerHandler);
         activeObservers.add(learnerHandler);
         return lastProposedZxid;
     }
@@ -462,12 +487,21 @@ public class ObserverMaster extends LearnerMaster implements Runnable {
         while (listenerRunning) {
             try {
                 Socket s = ss.accept();
+                if (!canAcceptObserver()) {
+                    LOG.info(
+                        "Already serving {} observers, refusing {} so it moves to another ObserverMaster",
+                        maxObservers,
+                        s.getRemoteSocketAddress());
+                    s.close();
+                    continue;
+                }
 
                 // start with the initLimit, once the ack is processed
                 // in LearnerHandler switch to the syncLimit
                 s.setSoTimeout(self.tickTime * self.initLimit);
                 BufferedInputStream is = new BufferedInputStream(s.getInputStream());
                 LearnerHandler lh = new LearnerHandler(s, is, this);
+                addSyncingObserver(lh);
                 lh.start();
             } catch (Exception e) {
                 if (listenerRunning) {
@@ -504,6 +538,10 @@ public class ObserverMaster extends LearnerMaster implements Runnable {
         return activeObservers.size();
     }
 
+    /**
+     * @return the handler info of each observer; its queued_packets is the number of
+     * packets not yet sent to that observer, which the observers command reports
+     */
     public Iterable<Map<String, Object>> getActiveObservers() {
         Set<Map<String, Object>> info = new HashSet<>();
         for (LearnerHandler lh : activeObservers) {
@@ -526,6 +564,10 @@ public class ObserverMaster extends LearnerMaster implements Runnable {
         pktsSizeLimit = sizeLimit;
     }
 
+    static void setMaxObservers(final int max) {
+        maxObservers = max;
+    }
+
     @Override
     public void registerLearnerHandlerBean(final LearnerHandler learnerHandler, Socket socket) {
         LearnerHandlerBean bean = new LearnerHandlerBean(learnerHandler, socket);
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server.quorum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import org.apache.zookeeper.ZKTestCase;
+import org.junit.After;
+import org.junit.Test;
+
+public class ObserverMasterTest extends ZKTestCase {
+
+    @After
+    public void tearDown() {
+        ObserverMaster.setMaxObservers(0);
+    }
+
+    @Test
+    public void testNoLimitByDefault() {
+        ObserverMaster om = new ObserverMaster(null, null, 0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(om.canAcceptObserver());
+            om.addSyncingObserver(mock(LearnerHandler.class));
+        }
+        assertTrue(om.canAcceptObserver());
+    }
+
+    @Test
+    public void testSyncingObserversCountAgainstLimit() {
+        ObserverMaster.setMaxObservers(2);
+        ObserverMaster om = new ObserverMaster(null, null, 0);
+        LearnerHandler first = mock(LearnerHandler.class);
+        LearnerHandler second = mock(LearnerHandler.class);
+
+        om.addSyncingObserver(first);
+        assertTrue(om.canAcceptObserver());
+        om.addSyncingObserver(second);
+        assertFalse(om.canAcceptObserver());
+
+        // an observer that fails its sync frees its slot
+        om.removeLearnerHandler(second);
+        assertTrue(om.canAcceptObserver());
+    }
+
+    @Test
+    public void testForwardingObserversCountAgainstLimit() {
+        ObserverMaster.setMaxObservers(1);
+        ObserverMaster om = new ObserverMaster(null, null, 0);
+        LearnerHandler lh = mock(LearnerHandler.class);
+
+        om.addSyncingObserver(lh);
+        om.startForwarding(lh, 0);
+        assertEquals(1, om.getNumActiveObservers());
+        assertFalse(om.canAcceptObserver());
+
+        om.removeLearnerHandler(lh);
+        assertEquals(0, om.getNumActiveObservers());
+        assertTrue(om.canAcceptObserver());
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server.quorum;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of messages waiting to be sent to one peer, together with the
+ * send statistics of that peer.
+ *
+ * Producers never wait: {@link #offerDropOldest(ByteBuffer)} replaces the
+ * oldest message when the queue is full, so a slow peer can't hold up the
+ * election thread that sends to all peers. The sender takes everything queued
+ * at once with {@link #drainTo(List, int, long, boolean)} and may keep only
+ * the newest of those messages.
+ */
+class PeerSendQueue {
+
+    private final int capacity;
+    private final ArrayDeque<ByteBuffer> queue;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong totalSendNanos = new AtomicLong();
+    private final AtomicLong maxSendNanos = new AtomicLong();
+
+    PeerSendQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.queue = new ArrayDeque<ByteBuffer>(capacity);
+    }
+
+    /**
+     * Adds the message, removing the oldest one if the queue is full.
+     */
+    void offerDropOldest(ByteBuffer b) {
+        lock.lock();
+        try {
+            if (queue.size() >= capacity) {
+                queue.removeFirst();
+                droppedCount.incrementAndGet();
+            }
+            queue.addLast(b);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to timeout for a message, then takes it and up to
+     * maxMessages - 1 further queued messages. All of them are moved to out,
+     * or with coalesce set only the newest one, as it supersedes the others.
+     *
+     * @return number of messages taken from the queue
+     */
+    int drainTo(List<ByteBuffer> out, int maxMessages, long timeout, boolean coalesce) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                if (nanos <= 0) {
+                    return 0;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            int n = 0;
+            ByteBuffer newest = null;
+            while (n < maxMessages && !queue.isEmpty()) {
+                newest = queue.removeFirst();
+                if (!coalesce) {
+                    out.add(newest);
+                }
+                n++;
+            }
+            if (coalesce) {
+                out.add(newest);
+                coalescedCount.addAndGet(n - 1);
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    void recordSend(int sent, long nanos) {
+        sentCount.addAndGet(sent);
+        batchCount.incrementAndGet();
+        totalSendNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxSendNanos.get())) {
+            if (maxSendNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    long getSentCount() {
+        return sentCount.get();
+    }
+
+    long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return average time of one socket write and flush, in microseconds
+     */
+    long getAvgSendLatencyMicros() {
+        long batches = batchCount.get();
+        return batches == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalSendNanos.get() / batches);
+    }
+
+    long getMaxSendLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxSendNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "depth=" + size() + " sent=" + getSentCount() + " coalesced=" + getCoalescedCount()
+                + " dropped=" + getDroppedCount() + " avgSendLatencyMicros=" + getAvgSendLatencyMicros()
+                + " maxSendLatencyMicros=" + getMaxSendLatencyMicros();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server.quorum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.zookeeper.ZKTestCase;
+import org.junit.Test;
+
+public class PeerSendQueueTest extends ZKTestCase {
+
+    @Test
+    public void testDrainTakesAllQueuedMessages() throws Exception {
+        PeerSendQueue queue = new PeerSendQueue(10);
+        for (int i = 0; i < 5; i++) {
+            queue.offerDropOldest(msg(i));
+        }
+        List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+        assertEquals(3, queue.drainTo(batch, 3, 0, false));
+        assertEquals(2, queue.size());
+        assertEquals(0, batch.get(0).getInt(0));
+        assertEquals(2, batch.get(2).getInt(0));
+        assertEquals(2, queue.drainTo(new ArrayList<ByteBuffer>(), 10, 0, false));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testOfferDropOldestKeepsLatest() throws Exception {
+        PeerSendQueue queue = new PeerSendQueue(2);
+        ByteBuffer latest = msg(3);
+        queue.offerDropOldest(msg(1));
+        queue.offerDropOldest(msg(2));
+        queue.offerDropOldest(latest);
+        assertEquals(1, queue.getDroppedCount());
+
+        List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+        queue.drainTo(batch, 10, 0, false);
+        assertEquals(2, batch.size());
+        assertSame(latest, batch.get(1));
+    }
+
+    @Test
+    public void testCoalescingDrainKeepsNewestMessage() throws Exception {
+        PeerSendQueue queue = new PeerSendQueue(10);
+        for (int i = 0; i < 5; i++) {
+            queue.offerDropOldest(msg(i));
+        }
+        List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+        assertEquals(3, queue.drainTo(batch, 3, 0, true));
+        assertEquals(1, batch.size());
+        assertEquals(2, batch.get(0).getInt(0));
+        assertEquals(2, queue.getCoalescedCount());
+
+        batch.clear();
+        assertEquals(2, queue.drainTo(batch, 10, 0, true));
+        assertEquals(1, batch.size());
+        assertEquals(4, batch.get(0).getInt(0));
+        assertEquals(3, queue.getCoalescedCount());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testCoalescingDrainOfSingleMessage() throws Exception {
+        PeerSendQueue queue = new PeerSendQueue(10);
+        ByteBuffer only = msg(1);
+        queue.offerDropOldest(only);
+        List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+        assertEquals(1, queue.drainTo(batch, 10, 0, true));
+        assertSame(only, batch.get(0));
+        assertEquals(0, queue.getCoalescedCount());
+        assertEquals(0, queue.drainTo(batch, 10, 0, true));
+        assertEquals(1, batch.size());
+    }
+
+    @Test
+    public void testSendStats() {
+        PeerSendQueue queue = new PeerSendQueue(2);
+        queue.recordSend(1, TimeUnit.MICROSECONDS.toNanos(100));
+        queue.recordSend(2, TimeUnit.MICROSECONDS.toNanos(300));
+        assertEquals(3, queue.getSentCount());
+        assertEquals(200, queue.getAvgSendLatencyMicros());
+        assertEquals(300, queue.getMaxSendLatencyMicros());
+    }
+
+    private static ByteBuffer msg(int value) {
+        ByteBuffer b = ByteBuffer.allocate(4);
+        b.putInt(0, value);
+        return b;
+    }
+}
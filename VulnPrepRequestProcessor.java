@@ -26,13 +26,20 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import org.apache.jute.BinaryOutputArchive;
 import org.apache.jute.Record;
 import org.apache.zookeeper.CreateMode;
@@ -100,8 +107,23 @@ public class PrepRequestProcessor extends ZooKeeperCriticalThread implements Req
      */
     private static boolean failCreate = false;
 
+    /**
+     * Number of threads decoding write request records ahead of the processor
+     * thread. Txns are still built, and zxids and change records assigned, on the
+     * processor thread in submission order: building a txn reads the outstanding
+     * changes left by the txns before it, so it can't run ahead of them. 0, the
+     * default, decodes on the processor thread. See PrepRequestProcessorBenchmark
+     * for the record sizes where decoding ahead pays for the hand-off.
+     */
+    public static final String DECODE_THREADS = "zookeeper.prepRequestProcessor.decodeThreads";
+
     LinkedBlockingQueue<Request> submittedRequests = new LinkedBlockingQueue<Request>();
 
+    private final ExecutorService decodeExecutor;
+    // package private for tests
+    final Map<Request, Future<Record>> decodedRecords =
+        Collections.synchronizedMap(new IdentityHashMap<Request, Future<Record>>());
+
     private final RequestProcessor nextProcessor;
     private final boolean digestEnabled;
     private DigestCalculator digestCalculator;
@@ -123,6 +145,17 @@ public class PrepRequestProcessor extends ZooKeeperCriticalThread implements Req
         if (this.digestEnabled) {
             this.digestCalculator = new DigestCalculator();
         }
+        int decodeThreads = Integer.getInteger(DECODE_THREADS, 0);
+        if (decodeThreads > 0) {
+            LOG.info("{} = {}", DECODE_THREADS, decodeThreads);
+            this.decodeExecutor = Executors.newFixedThreadPool(decodeThreads, r -> {
+                Thread t = new Thread(r, "PrepRequestDecoder(sid:" + zks.getServerId() + ")");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.decodeExecutor = null;
+        }
     }
 
     /**
@@ -139,8 +172,9 @@ public class PrepRequestProcessor extends ZooKeeperCriticalThread implements Req
             while (true) {
                 ServerMetrics.getMetrics().PREP_PROCESSOR_QUEUE_SIZE.add(submittedRequests.size());
                 Request request = submittedRequests.take();
-                ServerMetrics.getMetrics().PREP_PROCESSOR_QUEUE_TIME
-                    .add(Time.currentElapsedTime() - request.prepQueueStartTime);
+                long queueTime = Time.currentElapsedTime() - request.prepQueueStartTime;
+                ServerMetrics.getMetrics().PREP_PROCESSOR_QUEUE_TIME.add(queueTime);
+                ServerHistograms.getHistograms().queueTime("prep").add(queueTime);
                 long traceMask = ZooTrace.CLIENT_REQUEST_TRACE_MASK;
                 if (request.type == OpCode.ping) {
                     traceMask = ZooTrace.CLIENT_PING_TRACE_MASK;
@@ -767,8 +801,11 @@ public class PrepRequestProcessor extends ZooKeeperCriticalThread implements Req
         request.setHdr(null);
         request.setTxn(null);
 
+        Future<Record> decoded = decodedRecords.remove(request);
         if (!request.isThrottled()) {
-          pRequestHelper(request);
+          pRequestHelper(request, getDecodedRecord(decoded));
+        } else if (decoded != null) {
+          decoded.cancel(false);
         }
 
         request.zxid = zks.getZxid();
@@ -778,32 +815,88 @@ public class PrepRequestProcessor extends ZooKeeperCriticalThread implements Req
         ServerMetrics.getMetrics().PROPOSAL_PROCESS_TIME.add(Time.currentElapsedTime() - timeFinishedPrepare);
     }
 
+    /**
+     * Waits for the record decoded by the decode threads.
+     *
+     * @return null if the request wasn't decoded ahead or decoding failed, in
+     * which case the processor thread decodes it again and reports the error
+     */
+    private Record getDecodedRecord(Future<Record> decoded) {
+        if (decoded == null) {
+            return null;
+        }
+        try {
+            return decoded.get();
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * @return an empty record for the requests whose record can be decoded
+     * ahead of the processor thread, null for the other requests
+     */
+    private static Record newRequestRecord(int type) {
+        switch (type) {
+        case OpCode.createContainer:
+        case OpCode.create:
+        case OpCode.create2:
+            return new CreateRequest();
+        case OpCode.createTTL:
+            return new CreateTTLRequest();
+        case OpCode.delete:
+            return new DeleteRequest();
+        case OpCode.setData:
+            return new SetDataRequest();
+        case OpCode.setACL:
+            return new SetACLRequest();
+        case OpCode.check:
+            return new CheckVersionRequest();
+        case OpCode.multi:
+            return new MultiOperationRecord();
+        default:
+            return null;
+        }
+    }
+
+    private static Record decode(Request request, Record record) throws IOException {
+        // decode from a duplicate, the processor thread reads the original
+        // buffer if decoding fails
+        ByteBufferInputStream.byteBuffer2Record(request.request.duplicate(), record);
+        return record;
+    }
+
     /**
      * This method is a helper to pRequest method
      *
      * @param request
+     * @param decoded the request record decoded ahead, or null
      */
-    private void pRequestHelper(Request request) throws RequestProcessorException {
+    private void pRequestHelper(Request request, Record decoded) throws RequestProcessorException {
+        boolean deserialize = decoded == null;
         try {
             switch (request.type) {
             case OpCode.createContainer:
             case OpCode.create:
             case OpCode.create2:
-                CreateRequest create2Request = new CreateRequest();
-                pRequest2Txn(request.type, zks.getNextZxid(), request, create2Request, true);
+                CreateRequest create2Request = deserialize ? new CreateRequest() : (CreateRequest) decoded;
+                pRequest2Txn(request.type, zks.getNextZxid(), request, create2Request, deserialize);
                 break;
             case OpCode.createTTL:
-                CreateTTLRequest createTtlRequest = new CreateTTLRequest();
-                pRequest2Txn(request.type, zks.getNextZxid(), request, createTtlRequest, true);
+                CreateTTLRequest createTtlRequest = deserialize ? new CreateTTLRequest() : (CreateTTLRequest) decoded;
+                pRequest2Txn(request.type, zks.getNextZxid(), request, createTtlRequest, deserialize);
                 break;
             case OpCode.deleteContainer:
             case OpCode.delete:
-                DeleteRequest deleteRequest = new DeleteRequest();
-                pRequest2Txn(request.type, zks.getNextZxid(), request, deleteRequest, true);
+                DeleteRequest deleteRequest = deserialize ? new DeleteRequest() : (DeleteRequest) decoded;
+                pRequest2Txn(request.type, zks.getNextZxid(), request, deleteRequest, deserialize);
                 break;
             case OpCode.setData:
-                SetDataRequest setDataRequest = new SetDataRequest();
-                pRequest2Txn(request.type, zks.getNextZxid(), request, setDataRequest, true);
+                SetDataRequest setDataRequest = deserialize ? new SetDataRequest() : (SetDataRequest) decoded;
+                pRequest2Txn(request.type, zks.getNextZxid(), request, setDataRequest, deserialize);
                 break;
             case OpCode.reconfig:
                 ReconfigRequest reconfigRequest = new ReconfigRequest();
@@ -811,20 +904,25 @@ public class PrepRequestProcessor extends ZooKeeperCriticalThread implements Req
                 pRequest2Txn(request.type, zks.getNextZxid(), request, reconfigRequest, true);
                 break;
             case OpCode.setACL:
-                SetACLRequest setAclRequest = new SetACLRequest();
-                pRequest2Txn(request.type, zks.getNextZxid(), request, setAclRequest, true);
+                SetACLRequest setAclRequest = deserialize ? new SetACLRequest() : (SetACLRequest) decoded;
+                pRequest2Txn(request.type, zks.getNextZxid(), request, setAclRequest, deserialize);
                 break;
             case OpCode.check:
-                CheckVersionRequest checkRequest = new CheckVersionRequest();
-                pRequest2Txn(request.type, zks.getNextZxid(), request, checkRequest, true);
+                CheckVersionRequest checkRequest = deserialize ? new CheckVersionRequest() : (CheckVersionRequest) decoded;
+                pRequest2Txn(request.type, zks.getNextZxid(), request, checkRequest, deserialize);
                 break;
             case OpCode.multi:
-                MultiOperationRecord multiRequest = new MultiOperationRecord();
-                try {
-                    ByteBufferInputStream.byteBuffer2Record(request.request, multiRequest);
-                } catch (IOException e) {
-                    request.setHdr(new TxnHeader(request.sessionId, request.cxid, zks.getNextZxid(), Time.currentWallTime(), OpCode.multi));
-                    throw e;
+                MultiOperationRecord multiRequest;
+                if (deserialize) {
+                    multiRequest = new MultiOperationRecord();
+                    try {
+                        ByteBufferInputStream.byteBuffer2Record(request.request, multiRequest);
+                    } catch (IOException e) {
+                        request.setHdr(new TxnHeader(request.sessionId, request.cxid, zks.getNextZxid(), Time.currentWallTime(), OpCode.multi));
+                        throw e;
+                    }
+                } else {
+                    multiRequest = (MultiOperationRecord) decoded;
                 }
                 List<Txn> txns = new ArrayList<Txn>();
                 //Each op in a multi-op must have the same zxid!
@@ -1056,6 +1154,17 @@ public class PrepRequestProcessor extends ZooKeeperCriticalThread implements Req
 
     public void processRequest(Request request) {
         request.prepQueueStartTime = Time.currentElapsedTime();
+        if (decodeExecutor != null && request.request != null) {
+            final Record record = newRequestRecord(request.type);
+            if (record != null) {
+                try {
+                    decodedRecords.put(request, decodeExecutor.submit(() -> decode(request, record)));
+                } catch (RejectedExecutionException e) {
+                    // shut down, the processor thread decodes the request itself if it still gets to it
+                    LOG.debug("Not decoding request ahead, decode threads are shut down: {}", request);
+                }
+            }
+        }
         submittedRequests.add(request);
         ServerMetrics.getMetrics().PREP_PROCESSOR_QUEUED.add(1);
     }
@@ -1064,6 +1173,13 @@ public class PrepRequestProcessor extends ZooKeeperCriticalThread implements Req
         LOG.info("Shutting down");
         submittedRequests.clear();
         submittedRequests.add(Request.requestOfDeath);
+        if (decodeExecutor != null) {
+            // the processor thread may be waiting for one of the decodes that will never run now
+            for (Runnable decode : decodeExecutor.shutdownNow()) {
+                ((Future<?>) decode).cancel(false);
+            }
+            decodedRecords.clear();
+        }
         nextProcessor.shutdown();
     }
 
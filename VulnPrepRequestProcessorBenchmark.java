@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.jute.BinaryOutputArchive;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooDefs.OpCode;
+import org.apache.zookeeper.common.Time;
+import org.apache.zookeeper.data.Id;
+import org.apache.zookeeper.proto.CreateRequest;
+import org.apache.zookeeper.test.ClientBase;
+
+/**
+ * Measures how many create requests per second the PrepRequestProcessor turns
+ * into txns, with the records decoded on the processor thread and with
+ * {@link PrepRequestProcessor#DECODE_THREADS} decode threads, for several data
+ * sizes. Decoding ahead costs an executor submit, a synchronized map put and
+ * remove and a Future.get per write, so it only pays off once decoding the
+ * record takes longer than that hand-off.
+ *
+ * Run with: java org.apache.zookeeper.server.PrepRequestProcessorBenchmark [requests]
+ */
+public class PrepRequestProcessorBenchmark {
+
+    private static final int[] DATA_SIZES = {16, 1024, 64 * 1024, 512 * 1024};
+    private static final int[] DECODE_THREADS = {0, 1, 2, 4};
+
+    public static void main(String[] args) throws Exception {
+        int numRequests = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        ClientBase.setupTestEnv();
+        for (int dataSize : DATA_SIZES) {
+            // all requests are serialized up front and decoded once more, keep their total below 256MB
+            int requests = (int) Math.min(numRequests, (256L << 20) / dataSize);
+            for (int decodeThreads : DECODE_THREADS) {
+                // warm up
+                run(decodeThreads, dataSize, requests);
+                double writesPerSec = run(decodeThreads, dataSize, requests);
+                System.out.println(String.format("decodeThreads=%d dataSize=%d requests=%d: %.0f writes/sec",
+                        decodeThreads, dataSize, requests, writesPerSec));
+            }
+        }
+    }
+
+    private static double run(int decodeThreads, int dataSize, int numRequests) throws Exception {
+        File tmpDir = ClientBase.createTmpDir();
+        ZooKeeperServer zks = new ZooKeeperServer(tmpDir, tmpDir, 3000);
+        PrepRequestProcessor processor = null;
+        try {
+            zks.startdata();
+            zks.createSessionTracker();
+            long sessionId = zks.sessionTracker.createSession(30000);
+
+            // serialize all requests up front, so only the processor is measured
+            List<Request> requests = new ArrayList<>(numRequests);
+            byte[] data = new byte[dataSize];
+            for (int i = 0; i < numRequests; i++) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(dataSize + 64);
+                new CreateRequest("/node" + i, data, Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT.toFlag())
+                        .serialize(BinaryOutputArchive.getArchive(baos), "request");
+                requests.add(new Request(null, sessionId, i, OpCode.create, ByteBuffer.wrap(baos.toByteArray()), new ArrayList<Id>()));
+            }
+
+            final CountDownLatch done = new CountDownLatch(numRequests);
+            System.setProperty(PrepRequestProcessor.DECODE_THREADS, Integer.toString(decodeThreads));
+            processor = new PrepRequestProcessor(zks, new RequestProcessor() {
+                @Override
+                public void processRequest(Request request) {
+                    done.countDown();
+                }
+
+                @Override
+                public void shutdown() {
+                }
+            });
+            processor.start();
+
+            long start = Time.currentElapsedTime();
+            for (Request request : requests) {
+                processor.processRequest(request);
+            }
+            if (!done.await(10, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Timed out with " + done.getCount() + " requests left");
+            }
+            long elapsed = Math.max(1, Time.currentElapsedTime() - start);
+            return numRequests * 1000.0 / elapsed;
+        } finally {
+            System.clearProperty(PrepRequestProcessor.DECODE_THREADS);
+            if (processor != null) {
+                processor.shutdown();
+                processor.join();
+            }
+            zks.shutdown();
+            ClientBase.recursiveDelete(tmpDir);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.apache.jute.BinaryOutputArchive;
+import org.apache.jute.Record;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZKTestCase;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooDefs.OpCode;
+import org.apache.zookeeper.data.Id;
+import org.apache.zookeeper.proto.CreateRequest;
+import org.apache.zookeeper.test.ClientBase;
+import org.apache.zookeeper.txn.CreateTxn;
+import org.apache.zookeeper.txn.ErrorTxn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Covers the records decoded ahead of the processor thread when
+ * {@link PrepRequestProcessor#DECODE_THREADS} is set.
+ */
+public class PrepRequestProcessorDecodeTest extends ZKTestCase {
+
+    private File tmpDir;
+    private ZooKeeperServer zks;
+    private long sessionId;
+    private final List<Request> processed = new ArrayList<>();
+    private PrepRequestProcessor processor;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        System.setProperty(PrepRequestProcessor.DECODE_THREADS, "2");
+        tmpDir = ClientBase.createTmpDir();
+        ClientBase.setupTestEnv();
+        zks = new ZooKeeperServer(tmpDir, tmpDir, 3000);
+        zks.startdata();
+        zks.createSessionTracker();
+        sessionId = zks.sessionTracker.createSession(30000);
+        processor = new PrepRequestProcessor(zks, new RequestProcessor() {
+            @Override
+            public void processRequest(Request request) {
+                processed.add(request);
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        });
+    }
+
+    @AfterEach
+    public void teardown() throws Exception {
+        System.clearProperty(PrepRequestProcessor.DECODE_THREADS);
+        processor.shutdown();
+        zks.shutdown();
+        ClientBase.recursiveDelete(tmpDir);
+    }
+
+    @Test
+    public void testRequestDecodedAhead() throws Exception {
+        Request request = createRequest(new CreateRequest("/foo", new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT.toFlag()));
+        processor.processRequest(request);
+        Future<Record> decoded = processor.decodedRecords.get(request);
+        assertTrue(decoded.get() instanceof CreateRequest);
+
+        processor.pRequest(processor.submittedRequests.take());
+
+        assertTrue(processor.decodedRecords.isEmpty());
+        assertSame(request, processed.get(0));
+        assertEquals(OpCode.create, request.getHdr().getType());
+        assertEquals("/foo", ((CreateTxn) request.getTxn()).getPath());
+    }
+
+    @Test
+    public void testDecodeFailureFallsBackToProcessorThread() throws Exception {
+        Request request = new Request(null, sessionId, 0, OpCode.create, ByteBuffer.allocate(3), new ArrayList<Id>());
+        processor.processRequest(request);
+        Future<Record> decoded = processor.decodedRecords.get(request);
+        assertThrows(ExecutionException.class, decoded::get);
+
+        // the processor thread decodes the request again and reports the error as without decode threads
+        processor.pRequest(processor.submittedRequests.take());
+
+        assertEquals(OpCode.error, request.getHdr().getType());
+        assertEquals(new ErrorTxn(KeeperException.Code.MARSHALLINGERROR.intValue()), request.getTxn());
+    }
+
+    @Test
+    public void testThrottledRequestDiscardsDecodedRecord() throws Exception {
+        Request request = createRequest(new CreateRequest("/foo", new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT.toFlag()));
+        processor.processRequest(request);
+        Future<Record> decoded = processor.decodedRecords.get(request);
+        request.setThrottled(true);
+
+        processor.pRequest(processor.submittedRequests.take());
+
+        assertTrue(decoded.isDone());
+        assertTrue(processor.decodedRecords.isEmpty());
+        assertSame(request, processed.get(0));
+        assertNull(request.getHdr());
+        assertNull(zks.outstandingChangesForPath.get("/foo"));
+    }
+
+    @Test
+    public void testProcessRequestAfterShutdown() throws Exception {
+        processor.shutdown();
+        Request request = createRequest(new CreateRequest("/foo", new byte[0], Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT.toFlag()));
+
+        // the decode threads reject the request, it must still be queued without decoding ahead
+        processor.processRequest(request);
+
+        assertTrue(processor.decodedRecords.isEmpty());
+        assertTrue(processor.submittedRequests.contains(request));
+    }
+
+    private Request createRequest(Record record) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BinaryOutputArchive boa = BinaryOutputArchive.getArchive(baos);
+        record.serialize(boa, "request");
+        baos.close();
+        return new Request(null, sessionId, 0, OpCode.create, ByteBuffer.wrap(baos.toByteArray()), new ArrayList<Id>());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server.admin;
+
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.zookeeper.server.metric.LatencyHistogram;
+
+/**
+ * Writes the numeric entries of a CommandResponse in the Prometheus text
+ * exposition format: numbers become gauges and {@link LatencyHistogram}s
+ * become histograms with cumulative buckets up to 2^17 - 1. Other entries are
+ * skipped.
+ */
+public class PrometheusOutputter implements CommandOutputter {
+
+    static final String PREFIX = "zookeeper_";
+    static final int MAX_BUCKET_EXPONENT = 17;
+
+    @Override
+    public String getContentType() {
+        return "text/plain; version=0.0.4";
+    }
+
+    @Override
+    public void output(CommandResponse response, PrintWriter pw) {
+        Set<String> typed = new HashSet<String>();
+        for (Map.Entry<String, Object> entry : response.toMap().entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof LatencyHistogram) {
+                writeHistogram((LatencyHistogram) value, typed, pw);
+            } else if (value instanceof Number) {
+                String name = PREFIX + sanitize(entry.getKey());
+                pw.print("# TYPE ");
+                pw.print(name);
+                pw.println(" gauge");
+                pw.print(name);
+                pw.print(' ');
+                pw.println(value);
+            }
+        }
+        pw.flush();
+    }
+
+    private void writeHistogram(LatencyHistogram histogram, Set<String> typed, PrintWriter pw) {
+        String name = PREFIX + sanitize(histogram.getName());
+        // all label values of a metric share one TYPE line
+        if (typed.add(name)) {
+            pw.print("# TYPE ");
+            pw.print(name);
+            pw.println(" histogram");
+        }
+        String labels = histogram.getLabels() == null ? "" : histogram.getLabels() + ",";
+        long cumulative = 0;
+        for (int exp = 0; exp <= MAX_BUCKET_EXPONENT; exp++) {
+            long bound = (1L << exp) - 1;
+            cumulative = histogram.getCountAtOrBelow(bound);
+            pw.print(name);
+            pw.print("_bucket{");
+            pw.print(labels);
+            pw.print("le=\"");
+            pw.print(bound);
+            pw.print("\"} ");
+            pw.println(cumulative);
+        }
+        // values added while the buckets were read must not make +Inf smaller
+        long count = Math.max(cumulative, histogram.getCount());
+        pw.print(name);
+        pw.print("_bucket{");
+        pw.print(labels);
+        pw.print("le=\"+Inf\"} ");
+        pw.println(count);
+        String suffix = histogram.getLabels() == null ? " " : "{" + histogram.getLabels() + "} ";
+        pw.print(name);
+        pw.print("_sum");
+        pw.print(suffix);
+        pw.println(histogram.getSum());
+        pw.print(name);
+        pw.print("_count");
+        pw.print(suffix);
+        pw.println(count);
+    }
+
+    static String sanitize(String key) {
+        StringBuilder sb = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == ':') {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.zookeeper.common.Time;
+import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Purges old snapshots and txn logs of a running server on a schedule, with
+ * the retention limits and deletion throttling of
+ * {@link PurgeTxnLog#purge(FileTxnSnapLog, int, long, long, long)}. The purge
+ * runs on a minimum priority thread so the txn log writer comes first.
+ */
+public class PurgeService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PurgeService.class);
+
+    public static final String INTERVAL = "zookeeper.purge.intervalMs";
+    public static final String RETAIN_COUNT = "zookeeper.purge.retainCount";
+    public static final String MAX_AGE = "zookeeper.purge.maxAgeMs";
+    public static final String MAX_BYTES = "zookeeper.purge.maxBytes";
+    public static final String DELETE_RATE = "zookeeper.purge.deleteBytesPerSec";
+
+    private final FileTxnSnapLog txnLog;
+    private final long intervalMs;
+    private final int retainCount;
+    private final long maxAgeMs;
+    private final long maxBytes;
+    private final long deleteBytesPerSec;
+
+    private ScheduledExecutorService executor;
+
+    public PurgeService(FileTxnSnapLog txnLog, long intervalMs, int retainCount, long maxAgeMs, long maxBytes,
+            long deleteBytesPerSec) {
+        if (retainCount < PurgeTxnLog.MIN_RETAIN_COUNT) {
+            throw new IllegalArgumentException("retainCount should be greater than or equal to "
+                    + PurgeTxnLog.MIN_RETAIN_COUNT);
+        }
+        this.txnLog = txnLog;
+        this.intervalMs = intervalMs;
+        this.retainCount = retainCount;
+        this.maxAgeMs = maxAgeMs;
+        this.maxBytes = maxBytes;
+        this.deleteBytesPerSec = deleteBytesPerSec;
+    }
+
+    /**
+     * @return a service configured from the zookeeper.purge.* system
+     * properties, or null if zookeeper.purge.intervalMs is not positive
+     */
+    public static PurgeService fromSystemProperties(FileTxnSnapLog txnLog) {
+        long intervalMs = Long.getLong(INTERVAL, 0);
+        if (intervalMs <= 0) {
+            return null;
+        }
+        return new PurgeService(
+            txnLog,
+            intervalMs,
+            Integer.getInteger(RETAIN_COUNT, PurgeTxnLog.MIN_RETAIN_COUNT),
+            Long.getLong(MAX_AGE, 0),
+            Long.getLong(MAX_BYTES, 0),
+            Long.getLong(DELETE_RATE, 0));
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PurgeService");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::purge, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        LOG.info("Purge service started: interval {} ms, retain count {}, max age {} ms, max bytes {}, "
+                + "delete rate {} bytes/s", intervalMs, retainCount, maxAgeMs, maxBytes, deleteBytesPerSec);
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Never throws, as an exception would cancel all later runs of the
+     * scheduled task.
+     */
+    void purge() {
+        long start = Time.currentElapsedTime();
+        try {
+            int removed = PurgeTxnLog.purge(txnLog, retainCount, maxAgeMs, maxBytes, deleteBytesPerSec);
+            LOG.info("Purged {} files in {} ms", removed, Time.currentElapsedTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.warn("Error purging snapshots and txn logs", e);
+        }
+    }
+
+}
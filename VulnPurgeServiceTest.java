@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.zookeeper.ZKTestCase;
+import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
+import org.apache.zookeeper.test.ClientBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PurgeServiceTest extends ZKTestCase {
+
+    private File tmpDir;
+    private FileTxnSnapLog txnLog;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        tmpDir = ClientBase.createTmpDir();
+        txnLog = new FileTxnSnapLog(tmpDir, tmpDir);
+        // snapshot.10 ... snapshot.50, each preceded by a log
+        for (int i = 1; i <= 5; i++) {
+            createFile("log." + Long.toHexString(i * 10 - 5));
+            createFile("snapshot." + Long.toHexString(i * 10));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        txnLog.close();
+        ClientBase.recursiveDelete(tmpDir);
+    }
+
+    @Test
+    public void testCountOnly() throws Exception {
+        // log.5 holds the txns that follow snapshot.10
+        assertEquals(0, PurgeTxnLog.purge(txnLog, 5, 0, 0, 0));
+        assertTrue(file("log." + Long.toHexString(5)).exists());
+        assertEquals(2, PurgeTxnLog.purge(txnLog, 4, 0, 0, 0));
+        assertFalse(file("log." + Long.toHexString(5)).exists());
+        assertFalse(file("snapshot." + Long.toHexString(10)).exists());
+        // log.f holds the txns that follow snapshot.20
+        assertTrue(file("log." + Long.toHexString(15)).exists());
+        assertTrue(file("snapshot." + Long.toHexString(20)).exists());
+    }
+
+    @Test
+    public void testAgeLimit() throws Exception {
+        long old = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+        for (int zxid : new int[] {10, 20, 30}) {
+            assertTrue(file("snapshot." + Long.toHexString(zxid)).setLastModified(old));
+        }
+        // the age limit never goes below three snapshots
+        assertEquals(4, PurgeTxnLog.purge(txnLog, 5, TimeUnit.HOURS.toMillis(1), 0, 0));
+        assertTrue(file("snapshot." + Long.toHexString(30)).exists());
+        assertTrue(file("log." + Long.toHexString(25)).exists());
+        assertFalse(file("snapshot." + Long.toHexString(20)).exists());
+        assertFalse(file("log." + Long.toHexString(15)).exists());
+    }
+
+    @Test
+    public void testSizeLimit() throws Exception {
+        // ten files of 1000 bytes, dropping snapshot.10 and log.5 is enough
+        assertEquals(2, PurgeTxnLog.purge(txnLog, 5, 0, 8000, 0));
+        assertTrue(file("snapshot." + Long.toHexString(20)).exists());
+        assertTrue(file("log." + Long.toHexString(15)).exists());
+        assertFalse(file("snapshot." + Long.toHexString(10)).exists());
+    }
+
+    @Test
+    public void testDeleteRate() throws Exception {
+        long start = System.nanoTime();
+        assertEquals(4, PurgeTxnLog.purge(txnLog, 3, 0, 0, 10000));
+        // 4000 bytes at 10000 bytes/s
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(350));
+    }
+
+    @Test
+    public void testScheduledPurge() throws Exception {
+        PurgeService service = new PurgeService(txnLog, 50, 3, 0, 0, 0);
+        service.start();
+        try {
+            waitFor("snapshot.14 was not purged", () -> !file("snapshot." + Long.toHexString(20)).exists(), 10);
+        } finally {
+            service.shutdown();
+        }
+        assertFalse(file("log." + Long.toHexString(15)).exists());
+        assertTrue(file("snapshot." + Long.toHexString(30)).exists());
+
+        // nothing is purged once the service is shut down
+        createFile("log." + Long.toHexString(55));
+        createFile("snapshot." + Long.toHexString(60));
+        Thread.sleep(300);
+        assertTrue(file("snapshot." + Long.toHexString(30)).exists());
+    }
+
+    @Test
+    public void testFailedPurgeDoesNotThrow() throws Exception {
+        FileTxnSnapLog failing = mock(FileTxnSnapLog.class);
+        when(failing.findNRecentSnapshots(3)).thenThrow(new IllegalStateException("Test injected failure."));
+        // the scheduled task would stop running if purge threw
+        new PurgeService(failing, 50, 3, 0, 0, 0).purge();
+        verify(failing).findNRecentSnapshots(3);
+    }
+
+    private File file(String name) {
+        return new File(txnLog.getSnapDir(), name);
+    }
+
+    private void createFile(String name) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file(name))) {
+            out.write(new byte[1000]);
+        }
+    }
+
+}
@@ -21,13 +21,19 @@ package org.apache.zookeeper.server;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
 import org.apache.zookeeper.server.persistence.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * this class is used to clean up the 
@@ -39,6 +45,8 @@ import org.apache.zookeeper.server.persistence.Util;
  */
 public class PurgeTxnLog {
 
+    private static final Logger LOG = LoggerFactory.getLogger(PurgeTxnLog.class);
+
     private static final String COUNT_ERR_MSG = "count should be greater than or equal to 3";
 
     static void printUsage(){
@@ -53,6 +61,9 @@ public class PurgeTxnLog {
     private static final String PREFIX_SNAPSHOT = "snapshot";
     private static final String PREFIX_LOG = "log";
 
+    /** the fewest snapshots an age or size limit may leave */
+    static final int MIN_RETAIN_COUNT = 3;
+
     /**
      * Purges the snapshot and logs keeping the last num snapshots and the
      * corresponding logs. If logs are rolling or a new snapshot is created
@@ -118,6 +129,127 @@ public class PurgeTxnLog {
 
     }
     
+    /**
+     * Purges like {@link #purge(File, File, int)}, then keeps dropping the
+     * oldest retained snapshot, and the logs before the next one, while that
+     * snapshot is older than maxAgeMs or the retained snapshots and logs take
+     * more than maxBytes. At least 3 snapshots are always kept. Files are
+     * deleted one at a time, at no more than deleteBytesPerSec, so that the
+     * purge doesn't compete with the txn log for the disk.
+     *
+     * @param txnLog the snapshots and logs to purge
+     * @param num the number of snapshots to keep if no limit applies
+     * @param maxAgeMs age limit of the oldest snapshot, 0 for none
+     * @param maxBytes size limit of the retained files, 0 for none
+     * @param deleteBytesPerSec deletion rate limit, 0 for none
+     * @return number of files removed
+     * @throws IOException if a directory can't be listed
+     * @throws InterruptedException if interrupted while throttled
+     */
+    public static int purge(FileTxnSnapLog txnLog, int num, long maxAgeMs, long maxBytes,
+            long deleteBytesPerSec) throws IOException, InterruptedException {
+        if (num < MIN_RETAIN_COUNT) {
+            throw new IllegalArgumentException(COUNT_ERR_MSG);
+        }
+        List<File> snaps = txnLog.findNRecentSnapshots(num);
+        if (snaps.isEmpty()) {
+            return 0;
+        }
+        List<File> files = listFiles(txnLog.getDataDir(), PREFIX_LOG);
+        files.addAll(listFiles(txnLog.getSnapDir(), PREFIX_SNAPSHOT));
+        long totalBytes = totalSize(files);
+
+        long now = System.currentTimeMillis();
+        int keep = snaps.size();
+        List<File> toPurge = filesBefore(files, snaps.get(keep - 1));
+        while (keep > MIN_RETAIN_COUNT) {
+            File oldest = snaps.get(keep - 1);
+            boolean tooOld = maxAgeMs > 0 && now - oldest.lastModified() > maxAgeMs;
+            boolean tooBig = maxBytes > 0 && totalBytes - totalSize(toPurge) > maxBytes;
+            if (!tooOld && !tooBig) {
+                break;
+            }
+            keep--;
+            toPurge = filesBefore(files, snaps.get(keep - 1));
+        }
+        return delete(toPurge, deleteBytesPerSec);
+    }
+
+    private static List<File> listFiles(File dir, String prefix) throws IOException {
+        List<File> files = new ArrayList<File>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath(), prefix + ".*")) {
+            for (Path path : stream) {
+                files.add(path.toFile());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return the snapshots and logs with a lower zxid than the snapshot,
+     * except the newest log starting at or before it, which holds the txns
+     * that follow the snapshot
+     */
+    private static List<File> filesBefore(List<File> files, File snapshot) {
+        long leastZxidToBeRetain = Util.getZxidFromName(snapshot.getName(), PREFIX_SNAPSHOT);
+        long snapshotLogZxid = -1;
+        for (File f : files) {
+            if (isLog(f)) {
+                long fZxid = Util.getZxidFromName(f.getName(), PREFIX_LOG);
+                if (fZxid <= leastZxidToBeRetain && fZxid > snapshotLogZxid) {
+                    snapshotLogZxid = fZxid;
+                }
+            }
+        }
+        List<File> result = new ArrayList<File>();
+        for (File f : files) {
+            String prefix = isLog(f) ? PREFIX_LOG : PREFIX_SNAPSHOT;
+            long fZxid = Util.getZxidFromName(f.getName(), prefix);
+            if (fZxid < leastZxidToBeRetain && !(isLog(f) && fZxid == snapshotLogZxid)) {
+                result.add(f);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isLog(File f) {
+        return f.getName().startsWith(PREFIX_LOG + ".");
+    }
+
+    private static long totalSize(List<File> files) {
+        long size = 0;
+        for (File f : files) {
+            size += f.length();
+        }
+        return size;
+    }
+
+    private static int delete(List<File> files, long deleteBytesPerSec) throws InterruptedException {
+        long start = System.nanoTime();
+        long deletedBytes = 0;
+        int deleted = 0;
+        for (File f : files) {
+            long size = f.length();
+            long modified = f.lastModified();
+            try {
+                Files.delete(f.toPath());
+                LOG.info("Removed file: {}\t{}", DateFormat.getDateTimeInstance().format(modified), f.getPath());
+                deleted++;
+                deletedBytes += size;
+            } catch (IOException e) {
+                LOG.warn("Failed to remove {}", f.getPath(), e);
+            }
+            if (deleteBytesPerSec > 0) {
+                long dueNanos = (long) ((double) deletedBytes / deleteBytesPerSec * TimeUnit.SECONDS.toNanos(1));
+                long sleepNanos = dueNanos - (System.nanoTime() - start);
+                if (sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+            }
+        }
+        return deleted;
+    }
+
     /**
      * @param args dataLogDir [snapDir] -n count
      * dataLogDir -- path to the txn log directory
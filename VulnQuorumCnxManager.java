@@ -18,6 +18,7 @@
 
 package org.apache.zookeeper.server.quorum;
 
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -28,10 +29,11 @@ import java.net.SocketException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.UnresolvedAddressException;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
@@ -64,6 +66,12 @@ public class QuorumCnxManager {
 
     static final int CAPACITY = 100;
     static final int PACKETMAXSIZE = 1024 * 1024; 
+
+    /*
+     * Maximum number of queued messages a SendWorker takes per socket write
+     */
+
+    static final int MAX_SEND_BATCH = CAPACITY;
     /*
      * Maximum number of attempts to connect to a peer
      */
@@ -81,6 +89,14 @@ public class QuorumCnxManager {
      */
     
     private int cnxTO = 5000;
+
+    /*
+     * Send only the latest of the messages queued for a peer. Leader
+     * election notifications carry the full current vote, so a newer
+     * notification to the same server supersedes the older ones.
+     */
+
+    private boolean coalesceMessages = true;
     
     /*
      * Local IP address
@@ -91,7 +107,7 @@ public class QuorumCnxManager {
      * Mapping from Peer to Thread number
      */
     final ConcurrentHashMap<Long, SendWorker> senderWorkerMap;
-    final ConcurrentHashMap<Long, ArrayBlockingQueue<ByteBuffer>> queueSendMap;
+    final ConcurrentHashMap<Long, PeerSendQueue> queueSendMap;
     final ConcurrentHashMap<Long, ByteBuffer> lastMessageSent;
 
     /*
@@ -122,7 +138,7 @@ public class QuorumCnxManager {
 
     public QuorumCnxManager(QuorumPeer self) {
         this.recvQueue = new ArrayBlockingQueue<Message>(CAPACITY);
-        this.queueSendMap = new ConcurrentHashMap<Long, ArrayBlockingQueue<ByteBuffer>>();
+        this.queueSendMap = new ConcurrentHashMap<Long, PeerSendQueue>();
         this.senderWorkerMap = new ConcurrentHashMap<Long, SendWorker>();
         this.lastMessageSent = new ConcurrentHashMap<Long, ByteBuffer>();
         
@@ -130,6 +146,10 @@ public class QuorumCnxManager {
         if(cnxToValue != null){
             this.cnxTO = new Integer(cnxToValue); 
         }
+        String coalesceValue = System.getProperty("zookeeper.cnxManager.coalesceMessages");
+        if (coalesceValue != null) {
+            this.coalesceMessages = Boolean.parseBoolean(coalesceValue);
+        }
         
         this.self = self;
 
@@ -186,10 +206,7 @@ public class QuorumCnxManager {
                 vsw.finish();
             
             senderWorkerMap.put(sid, sw);
-            if (!queueSendMap.containsKey(sid)) {
-                queueSendMap.put(sid, new ArrayBlockingQueue<ByteBuffer>(
-                        CAPACITY));
-            }
+            getSendQueue(sid);
             
             sw.start();
             rw.start();
@@ -263,10 +280,7 @@ public class QuorumCnxManager {
             
             senderWorkerMap.put(sid, sw);
             
-            if (!queueSendMap.containsKey(sid)) {
-                queueSendMap.put(sid, new ArrayBlockingQueue<ByteBuffer>(
-                        CAPACITY));
-            }
+            getSendQueue(sid);
             
             sw.start();
             rw.start();
@@ -295,37 +309,65 @@ public class QuorumCnxManager {
              * Otherwise send to the corresponding thread to send.
              */
         } else {
-            try {
-                /*
-                 * Start a new connection if doesn't have one already.
-                 */
-                if (!queueSendMap.containsKey(sid)) {
-                    ArrayBlockingQueue<ByteBuffer> bq = new ArrayBlockingQueue<ByteBuffer>(
-                            CAPACITY);
-                    queueSendMap.put(sid, bq);
-                    bq.put(b);
-
-                } else {
-                    ArrayBlockingQueue<ByteBuffer> bq = queueSendMap.get(sid);
-                    if(bq != null){
-                        if (bq.remainingCapacity() == 0) {
-                            bq.take();
-                        }
-                        bq.put(b);
-                    } else {
-                        LOG.error("No queue for server " + sid);
-                    }
-                }
+            /*
+             * This runs on the election thread, which sends to all
+             * peers, so it must not wait for a slow one. Notifications
+             * carry the full current vote, so dropping the oldest
+             * queued one loses nothing the newest doesn't have.
+             */
+            getSendQueue(sid).offerDropOldest(b);
 
-                connectOne(sid);
-                
-            } catch (InterruptedException e) {
-                LOG.warn("Interrupted while waiting to put message in queue.",
-                        e);
-            }
+            /*
+             * Start a new connection if doesn't have one already.
+             */
+            connectOne(sid);
         }
     }
     
+    private PeerSendQueue getSendQueue(long sid) {
+        PeerSendQueue bq = queueSendMap.get(sid);
+        if (bq == null) {
+            bq = new PeerSendQueue(CAPACITY);
+            PeerSendQueue existing = queueSendMap.putIfAbsent(sid, bq);
+            if (existing != null) {
+                bq = existing;
+            }
+        }
+        return bq;
+    }
+
+    /**
+     * @return number of messages waiting to be sent to server sid
+     */
+    public int getSendQueueDepth(long sid) {
+        PeerSendQueue bq = queueSendMap.get(sid);
+        return bq == null ? 0 : bq.size();
+    }
+
+    /**
+     * @return average time of one socket write to server sid in microseconds
+     */
+    public long getAvgSendLatencyMicros(long sid) {
+        PeerSendQueue bq = queueSendMap.get(sid);
+        return bq == null ? 0 : bq.getAvgSendLatencyMicros();
+    }
+
+    /**
+     * @return maximum time of one socket write to server sid in microseconds
+     */
+    public long getMaxSendLatencyMicros(long sid) {
+        PeerSendQueue bq = queueSendMap.get(sid);
+        return bq == null ? 0 : bq.getMaxSendLatencyMicros();
+    }
+
+    /**
+     * @return number of messages to server sid dropped because its queue was full
+     */
+    public long getDroppedMessages(long sid) {
+        PeerSendQueue bq = queueSendMap.get(sid);
+        return bq == null ? 0 : bq.getDroppedCount();
+    }
+
     /**
      * Try to establish a connection to server with id sid.
      * 
@@ -391,7 +433,7 @@ public class QuorumCnxManager {
      * Check if all queues are empty, indicating that all messages have been delivered.
      */
     boolean haveDelivered() {
-        for (ArrayBlockingQueue<ByteBuffer> queue : queueSendMap.values()) {
+        for (PeerSendQueue queue : queueSendMap.values()) {
             LOG.debug("Queue size: " + queue.size());
             if (queue.size() == 0) {
                 return true;
@@ -544,7 +586,7 @@ public class QuorumCnxManager {
             this.sock = sock;
             recvWorker = null;
             try {
-                dout = new DataOutputStream(sock.getOutputStream());
+                dout = new DataOutputStream(new BufferedOutputStream(sock.getOutputStream()));
             } catch (IOException e) {
                 LOG.error("Unable to access socket output stream", e);
                 closeSocket(sock);
@@ -595,17 +637,36 @@ public class QuorumCnxManager {
         }
         
         synchronized void send(ByteBuffer b) throws IOException {
+            if (write(b)) {
+                dout.flush();
+            }
+        }
+
+        /**
+         * Writes all messages of the batch and flushes them with a single
+         * socket write.
+         */
+        synchronized void sendBatch(List<ByteBuffer> batch, PeerSendQueue bq) throws IOException {
+            long start = System.nanoTime();
+            for (ByteBuffer b : batch) {
+                write(b);
+            }
+            dout.flush();
+            bq.recordSend(batch.size(), System.nanoTime() - start);
+        }
+
+        private boolean write(ByteBuffer b) throws IOException {
             byte[] msgBytes = new byte[b.capacity()];
             try {
                 b.position(0);
                 b.get(msgBytes);
             } catch (BufferUnderflowException be) {
                 LOG.fatal("BufferUnderflowException ", be);
-                return;
+                return false;
             }
             dout.writeInt(b.capacity());
-            dout.write(b.array());
-            dout.flush();
+            dout.write(msgBytes);
+            return true;
         }
 
         @Override
@@ -621,23 +682,21 @@ public class QuorumCnxManager {
             }
             
             try {
+                List<ByteBuffer> batch = new ArrayList<ByteBuffer>(MAX_SEND_BATCH);
                 while (running && !shutdown && sock != null) {
 
-                    ByteBuffer b = null;
                     try {
-                        ArrayBlockingQueue<ByteBuffer> bq = queueSendMap
-                                .get(sid);
-                        if (bq != null) {
-                            b = bq.poll(1000, TimeUnit.MILLISECONDS);
-                        } else {
+                        PeerSendQueue bq = queueSendMap.get(sid);
+                        if (bq == null) {
                             LOG.error("No queue of incoming messages for " +
                                       "server " + sid);
                             break;
                         }
 
-                        if(b != null){
-                            lastMessageSent.put(sid, b);
-                            send(b);
+                        batch.clear();
+                        if (bq.drainTo(batch, MAX_SEND_BATCH, 1000, coalesceMessages) > 0) {
+                            lastMessageSent.put(sid, batch.get(batch.size() - 1));
+                            sendBatch(batch, bq);
                         }
                     } catch (InterruptedException e) {
                         LOG.warn("Interrupted while waiting for message on queue",
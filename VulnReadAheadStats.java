@@ -0,0 +1,74 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+
+package org.elasticsearch.index.store;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ReadAheadStats} records how much the read-ahead of cached index inputs prefetched for a given file and how many reads were
+ * then served by the prefetched ranges.
+ */
+public class ReadAheadStats {
+
+    private final LongAdder prefetches = new LongAdder();
+    private final LongAdder prefetchedBytes = new LongAdder();
+    private final LongAdder skippedPrefetches = new LongAdder();
+    private final LongAdder failedPrefetches = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder hitBytes = new LongAdder();
+
+    public void addPrefetch(long bytes) {
+        prefetches.increment();
+        prefetchedBytes.add(bytes);
+    }
+
+    public void addSkippedPrefetch() {
+        skippedPrefetches.increment();
+    }
+
+    public void addFailedPrefetch() {
+        failedPrefetches.increment();
+    }
+
+    public void addHit(long bytes) {
+        hits.increment();
+        hitBytes.add(bytes);
+    }
+
+    /**
+     * @return the number of ranges fetched ahead of a sequential reader
+     */
+    public long getPrefetches() {
+        return prefetches.sum();
+    }
+
+    public long getPrefetchedBytes() {
+        return prefetchedBytes.sum();
+    }
+
+    /**
+     * @return the number of prefetches that were not executed because the in-flight budget of the node was exhausted
+     */
+    public long getSkippedPrefetches() {
+        return skippedPrefetches.sum();
+    }
+
+    public long getFailedPrefetches() {
+        return failedPrefetches.sum();
+    }
+
+    /**
+     * @return the number of reads that fell into a prefetched range, whether the prefetch had already completed or not
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getHitBytes() {
+        return hitBytes.sum();
+    }
+}
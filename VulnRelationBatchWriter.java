@@ -0,0 +1,134 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.relation;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.dao.model.sql.RelationCompositeKey;
+import org.thingsboard.server.dao.model.sql.RelationEntity;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueue;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-behind queue for relation saves and deletes.
+ *
+ * Operations are collected by {@link TbSqlBlockingQueue} and each batch is coalesced by
+ * {@link RelationCompositeKey}: only the final state of every key is written, as one batched
+ * delete and one batched upsert in a single transaction. Every caller still gets the result
+ * its operation would have had if executed alone, in order.
+ */
+@Slf4j
+public class RelationBatchWriter {
+
+    private final RelationBatchRepository repository;
+    private final TbSqlBlockingQueue<Operation> queue;
+
+    public RelationBatchWriter(RelationBatchRepository repository, TbSqlBlockingQueueParams params) {
+        this.repository = repository;
+        this.queue = new TbSqlBlockingQueue<>(params);
+    }
+
+    public void init(ScheduledLogExecutorComponent logExecutor) {
+        queue.init(logExecutor, this::write);
+    }
+
+    public void destroy() {
+        queue.destroy();
+    }
+
+    public ListenableFuture<Boolean> save(RelationEntity entity) {
+        RelationCompositeKey key = new RelationCompositeKey(entity.getFromId(), entity.getFromType(), entity.getToId(),
+                entity.getToType(), entity.getRelationType(), entity.getRelationTypeGroup());
+        return add(new Operation(key, entity));
+    }
+
+    public ListenableFuture<Boolean> delete(RelationCompositeKey key) {
+        return add(new Operation(key, null));
+    }
+
+    private ListenableFuture<Boolean> add(Operation operation) {
+        return Futures.transform(queue.add(operation), v -> operation.result, MoreExecutors.directExecutor());
+    }
+
+    void write(List<Operation> operations) {
+        Map<RelationCompositeKey, List<Operation>> operationsByKey = new LinkedHashMap<>();
+        for (Operation operation : operations) {
+            operationsByKey.computeIfAbsent(operation.key, k -> new ArrayList<>()).add(operation);
+        }
+        List<RelationCompositeKey> deleted = new ArrayList<>();
+        List<RelationEntity> saved = new ArrayList<>();
+        for (Map.Entry<RelationCompositeKey, List<Operation>> entry : operationsByKey.entrySet()) {
+            List<Operation> keyOperations = entry.getValue();
+            Operation first = keyOperations.get(0);
+            Operation last = keyOperations.get(keyOperations.size() - 1);
+            if (first.isDelete() || last.isDelete()) {
+                deleted.add(entry.getKey());
+            }
+            if (!last.isDelete()) {
+                saved.add(last.entity);
+            }
+        }
+        log.trace("Writing {} relation operations as {} deletes and {} upserts", operations.size(), deleted.size(), saved.size());
+        boolean[] existed = repository.deleteAndSaveOrUpdate(deleted, saved);
+        int deletedIdx = 0;
+        for (List<Operation> keyOperations : operationsByKey.values()) {
+            Operation first = keyOperations.get(0);
+            Operation last = keyOperations.get(keyOperations.size() - 1);
+            boolean existedBefore = false;
+            if (first.isDelete() || last.isDelete()) {
+                existedBefore = existed[deletedIdx++];
+            }
+            Operation previous = null;
+            for (Operation operation : keyOperations) {
+                if (!operation.isDelete()) {
+                    operation.result = true;
+                } else if (previous == null) {
+                    operation.result = existedBefore;
+                } else {
+                    operation.result = !previous.isDelete();
+                }
+                previous = operation;
+            }
+        }
+    }
+
+    static class Operation {
+        private final RelationCompositeKey key;
+        private final RelationEntity entity;
+        private volatile boolean result;
+
+        Operation(RelationCompositeKey key, RelationEntity entity) {
+            this.key = key;
+            this.entity = entity;
+        }
+
+        boolean isDelete() {
+            return entity == null;
+        }
+
+        boolean getResult() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.relation;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.dao.model.sql.RelationCompositeKey;
+import org.thingsboard.server.dao.model.sql.RelationEntity;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RelationBatchWriterTest {
+
+    private List<RelationCompositeKey> deleted;
+    private List<RelationEntity> saved;
+    private boolean[] existed;
+    private RelationBatchWriter writer;
+
+    @Before
+    public void before() {
+        writer = new RelationBatchWriter((deleted, saved) -> {
+            this.deleted = deleted;
+            this.saved = saved;
+            return Arrays.copyOf(existed, deleted.size());
+        }, TbSqlBlockingQueueParams.builder().logName("Test").batchSize(10).maxDelay(10).statsPrintIntervalMs(1000).build());
+    }
+
+    @Test
+    public void testOnlyFinalStateOfKeyIsWritten() {
+        existed = new boolean[]{true};
+        RelationBatchWriter.Operation save = new RelationBatchWriter.Operation(key("a"), entity("a"));
+        RelationBatchWriter.Operation delete = new RelationBatchWriter.Operation(key("a"), null);
+        RelationBatchWriter.Operation secondDelete = new RelationBatchWriter.Operation(key("a"), null);
+
+        writer.write(Arrays.asList(save, delete, secondDelete));
+
+        Assert.assertEquals(Collections.singletonList(key("a")), deleted);
+        Assert.assertTrue(saved.isEmpty());
+        Assert.assertTrue(isSuccess(save));
+        Assert.assertTrue(isSuccess(delete));
+        Assert.assertFalse(isSuccess(secondDelete));
+    }
+
+    @Test
+    public void testLeadingDeleteReportsDatabaseState() {
+        existed = new boolean[]{false};
+        RelationBatchWriter.Operation delete = new RelationBatchWriter.Operation(key("a"), null);
+        RelationBatchWriter.Operation save = new RelationBatchWriter.Operation(key("a"), entity("a"));
+        RelationBatchWriter.Operation otherSave = new RelationBatchWriter.Operation(key("b"), entity("b"));
+
+        writer.write(Arrays.asList(delete, save, otherSave));
+
+        Assert.assertEquals(Collections.singletonList(key("a")), deleted);
+        Assert.assertEquals(2, saved.size());
+        Assert.assertFalse(isSuccess(delete));
+        Assert.assertTrue(isSuccess(save));
+        Assert.assertTrue(isSuccess(otherSave));
+    }
+
+    private static boolean isSuccess(RelationBatchWriter.Operation operation) {
+        return operation.getResult();
+    }
+
+    private static RelationCompositeKey key(String toId) {
+        return new RelationCompositeKey("from", "DEVICE", toId, "ASSET", "Contains", "COMMON");
+    }
+
+    private static RelationEntity entity(String toId) {
+        RelationEntity entity = new RelationEntity();
+        entity.setFromId("from");
+        entity.setFromType("DEVICE");
+        entity.setToId(toId);
+        entity.setToType("ASSET");
+        entity.setRelationType("Contains");
+        entity.setRelationTypeGroup("COMMON");
+        return entity;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.relation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.common.data.relation.RelationTypeGroup;
+import org.thingsboard.server.dao.cache.StripedInvalidationVersion;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of outbound and inbound relation lists keyed by entity and relation type group.
+ *
+ * Each direction is bounded by the total number of cached relations. Entries are dropped by the DAO
+ * after its own writes complete and expire after a TTL, which bounds staleness caused by writes
+ * made on other nodes. A load that overlaps with an invalidation of its key is not cached.
+ *
+ * The cached lists are unmodifiable and their relations are shared by all the callers that hit
+ * them, so callers must not modify the relations they get. A loaded list is copied once before it
+ * is cached, so the caller of the load may still modify its own list.
+ */
+@Slf4j
+public class RelationCache {
+
+    private static final int VERSION_STRIPES = 1024;
+
+    private final Cache<RelationCacheKey, List<EntityRelation>> outbound;
+    private final Cache<RelationCacheKey, List<EntityRelation>> inbound;
+    private final StripedInvalidationVersion version = new StripedInvalidationVersion(VERSION_STRIPES);
+
+    public RelationCache(long maxRelations, long ttlMs) {
+        this.outbound = newCache(maxRelations, ttlMs);
+        this.inbound = newCache(maxRelations, ttlMs);
+    }
+
+    private static Cache<RelationCacheKey, List<EntityRelation>> newCache(long maxRelations, long ttlMs) {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maxRelations)
+                .weigher((RelationCacheKey key, List<EntityRelation> relations) -> relations.size() + 1)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public ListenableFuture<List<EntityRelation>> getOutbound(EntityId from, RelationTypeGroup typeGroup, Supplier<ListenableFuture<List<EntityRelation>>> loader) {
+        return get(outbound, new RelationCacheKey(from, typeGroup), loader);
+    }
+
+    public ListenableFuture<List<EntityRelation>> getInbound(EntityId to, RelationTypeGroup typeGroup, Supplier<ListenableFuture<List<EntityRelation>>> loader) {
+        return get(inbound, new RelationCacheKey(to, typeGroup), loader);
+    }
+
+    public void evict(EntityId from, EntityId to, RelationTypeGroup typeGroup) {
+        evict(outbound, new RelationCacheKey(from, typeGroup));
+        evict(inbound, new RelationCacheKey(to, typeGroup));
+    }
+
+    /**
+     * Drops the outbound relations of the entity and the inbound relations of the targets of the removed ones.
+     *
+     * @param removed the removed relations, or null if they are unknown, then the whole inbound side is dropped
+     */
+    public void evictOutbound(EntityId from, Collection<EntityRelation> removed) {
+        if (removed == null) {
+            version.invalidateAll();
+            inbound.invalidateAll();
+        } else {
+            for (EntityRelation relation : removed) {
+                evict(inbound, new RelationCacheKey(relation.getTo(), relation.getTypeGroup()));
+            }
+        }
+        for (RelationTypeGroup typeGroup : RelationTypeGroup.values()) {
+            evict(outbound, new RelationCacheKey(from, typeGroup));
+        }
+    }
+
+    private void evict(Cache<RelationCacheKey, List<EntityRelation>> cache, RelationCacheKey key) {
+        version.invalidate(key);
+        cache.invalidate(key);
+    }
+
+    public CacheStats getOutboundStats() {
+        return outbound.stats();
+    }
+
+    public CacheStats getInboundStats() {
+        return inbound.stats();
+    }
+
+    public void printStats() {
+        CacheStats outboundStats = outbound.stats();
+        CacheStats inboundStats = inbound.stats();
+        log.info("Relation cache: outbound size [{}] hits [{}] misses [{}] evictions [{}], inbound size [{}] hits [{}] misses [{}] evictions [{}]",
+                outbound.size(), outboundStats.hitCount(), outboundStats.missCount(), outboundStats.evictionCount(),
+                inbound.size(), inboundStats.hitCount(), inboundStats.missCount(), inboundStats.evictionCount());
+    }
+
+    private ListenableFuture<List<EntityRelation>> get(Cache<RelationCacheKey, List<EntityRelation>> cache, RelationCacheKey key,
+                                                       Supplier<ListenableFuture<List<EntityRelation>>> loader) {
+        List<EntityRelation> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
+        }
+        long loadVersion = version.beforeLoad(key);
+        return Futures.transform(loader.get(), relations -> {
+            if (relations != null) {
+                version.putIfNotInvalidated(cache, key, Collections.unmodifiableList(copyOf(relations)), loadVersion);
+            }
+            return relations;
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * The caller of a load may modify the relations it got, including their additional info, so the cache keeps its own copy.
+     */
+    private static List<EntityRelation> copyOf(List<EntityRelation> relations) {
+        List<EntityRelation> copy = new ArrayList<>(relations.size());
+        for (EntityRelation relation : relations) {
+            EntityRelation relationCopy = new EntityRelation(relation);
+            if (relation.getAdditionalInfo() != null) {
+                relationCopy.setAdditionalInfo(relation.getAdditionalInfo().deepCopy());
+            }
+            copy.add(relationCopy);
+        }
+        return copy;
+    }
+
+    @Data
+    private static class RelationCacheKey {
+        private final EntityId entityId;
+        private final RelationTypeGroup typeGroup;
+    }
+}
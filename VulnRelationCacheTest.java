@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.relation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.Futures;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.common.data.relation.RelationTypeGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RelationCacheTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final AssetId from = new AssetId(UUID.randomUUID());
+    private final DeviceId to = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void testOutboundRelationsAreCachedUntilEvicted() throws Exception {
+        RelationCache cache = new RelationCache(100, 60000);
+        AtomicInteger loads = new AtomicInteger();
+        List<EntityRelation> relations = Collections.singletonList(new EntityRelation(from, to, EntityRelation.CONTAINS_TYPE));
+
+        for (int i = 0; i < 3; i++) {
+            List<EntityRelation> result = cache.getOutbound(from, RelationTypeGroup.COMMON, () -> {
+                loads.incrementAndGet();
+                return Futures.immediateFuture(relations);
+            }).get();
+            Assert.assertEquals(relations, result);
+        }
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(2, cache.getOutboundStats().hitCount());
+
+        cache.evict(from, to, RelationTypeGroup.COMMON);
+        cache.getOutbound(from, RelationTypeGroup.COMMON, () -> {
+            loads.incrementAndGet();
+            return Futures.immediateFuture(relations);
+        }).get();
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testEvictOutboundDropsInboundSideOfRemovedTargets() throws Exception {
+        RelationCache cache = new RelationCache(100, 60000);
+        DeviceId other = new DeviceId(UUID.randomUUID());
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            for (DeviceId target : new DeviceId[]{to, other}) {
+                cache.getInbound(target, RelationTypeGroup.COMMON, () -> {
+                    loads.incrementAndGet();
+                    return Futures.immediateFuture(Collections.emptyList());
+                }).get();
+            }
+            cache.evictOutbound(from, Collections.singletonList(new EntityRelation(from, to, EntityRelation.CONTAINS_TYPE)));
+        }
+        // the inbound relations of the other entity stayed cached
+        Assert.assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testEvictOutboundWithUnknownTargetsDropsWholeInboundSide() throws Exception {
+        RelationCache cache = new RelationCache(100, 60000);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            cache.getInbound(to, RelationTypeGroup.COMMON, () -> {
+                loads.incrementAndGet();
+                return Futures.immediateFuture(Collections.emptyList());
+            }).get();
+            cache.evictOutbound(from, null);
+        }
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testCacheDoesNotShareRelationsWithLoaderCaller() throws Exception {
+        RelationCache cache = new RelationCache(100, 60000);
+        EntityRelation relation = new EntityRelation(from, to, EntityRelation.CONTAINS_TYPE);
+        ObjectNode additionalInfo = mapper.createObjectNode();
+        additionalInfo.put("key", "value");
+        relation.setAdditionalInfo(additionalInfo);
+
+        List<EntityRelation> loaded = new ArrayList<>(Collections.singletonList(relation));
+        Assert.assertSame(loaded, cache.getOutbound(from, RelationTypeGroup.COMMON, () -> Futures.immediateFuture(loaded)).get());
+        ((ObjectNode) loaded.get(0).getAdditionalInfo()).put("key", "changed by loader caller");
+        loaded.clear();
+
+        List<EntityRelation> hit = cache.getOutbound(from, RelationTypeGroup.COMMON, () -> null).get();
+        Assert.assertEquals(1, hit.size());
+        Assert.assertEquals("value", hit.get(0).getAdditionalInfo().get("key").asText());
+    }
+
+    @Test
+    public void testHitsShareUnmodifiableList() throws Exception {
+        RelationCache cache = new RelationCache(100, 60000);
+        cache.getOutbound(from, RelationTypeGroup.COMMON,
+                () -> Futures.immediateFuture(Collections.singletonList(new EntityRelation(from, to, EntityRelation.CONTAINS_TYPE)))).get();
+
+        List<EntityRelation> first = cache.getOutbound(from, RelationTypeGroup.COMMON, () -> null).get();
+        List<EntityRelation> second = cache.getOutbound(from, RelationTypeGroup.COMMON, () -> null).get();
+        Assert.assertSame(first, second);
+        try {
+            first.add(new EntityRelation(from, to, EntityRelation.MANAGES_TYPE));
+            Assert.fail("cached relations must not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}
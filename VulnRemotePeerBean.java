@@ -69,4 +69,24 @@ public class RemotePeerBean implements RemotePeerMXBean, ZKMBeanInfo {
         return localPeer.isLeader(peer.getId());
     }
 
+    public int getSendQueueDepth() {
+        QuorumCnxManager qcm = localPeer.getQuorumCnxManager();
+        return qcm == null ? 0 : qcm.getSendQueueDepth(peer.getId());
+    }
+
+    public long getAvgSendLatencyMicros() {
+        QuorumCnxManager qcm = localPeer.getQuorumCnxManager();
+        return qcm == null ? 0 : qcm.getAvgSendLatencyMicros(peer.getId());
+    }
+
+    public long getMaxSendLatencyMicros() {
+        QuorumCnxManager qcm = localPeer.getQuorumCnxManager();
+        return qcm == null ? 0 : qcm.getMaxSendLatencyMicros(peer.getId());
+    }
+
+    public long getDroppedMessages() {
+        QuorumCnxManager qcm = localPeer.getQuorumCnxManager();
+        return qcm == null ? 0 : qcm.getDroppedMessages(peer.getId());
+    }
+
 }
\ No newline at end of file
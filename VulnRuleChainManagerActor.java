@@ -39,22 +39,38 @@ import java.util.function.Function;
  */
 public abstract class RuleChainManagerActor extends ContextAwareActor {
 
+    private static final String LAZY_INIT_PROPERTY = "actors.rule.chain.lazy_init";
+
     protected final TenantId tenantId;
     private final RuleChainService ruleChainService;
     private final BiMap<RuleChainId, ActorRef> actors;
+    private final boolean lazyInit;
     @Getter
     protected RuleChain rootChain;
     @Getter
     protected ActorRef rootChainActor;
 
     public RuleChainManagerActor(ActorSystemContext systemContext, TenantId tenantId) {
+        this(systemContext, tenantId, Boolean.parseBoolean(System.getProperty(LAZY_INIT_PROPERTY, "false")));
+    }
+
+    /**
+     * @param lazyInit when set, only the root rule chain actor is created on init and other rule chain actors
+     *                 are created on their first message. Broadcasts then reach only the activated chains.
+     */
+    public RuleChainManagerActor(ActorSystemContext systemContext, TenantId tenantId, boolean lazyInit) {
         super(systemContext);
         this.tenantId = tenantId;
         this.actors = HashBiMap.create();
         this.ruleChainService = systemContext.getRuleChainService();
+        this.lazyInit = lazyInit;
     }
 
     protected void initRuleChains() {
+        if (lazyInit) {
+            initRootRuleChain();
+            return;
+        }
         for (RuleChain ruleChain : new PageDataIterable<>(link -> ruleChainService.findTenantRuleChains(tenantId, link), ContextAwareActor.ENTITY_PACK_LIMIT)) {
             RuleChainId ruleChainId = ruleChain.getId();
             log.debug("[{}|{}] Creating rule chain actor", ruleChainId.getEntityType(), ruleChain.getId());
@@ -65,6 +81,15 @@ public abstract class RuleChainManagerActor extends ContextAwareActor {
         }
     }
 
+    private void initRootRuleChain() {
+        RuleChain ruleChain = ruleChainService.getRootTenantRuleChain(tenantId);
+        if (ruleChain != null) {
+            log.debug("[{}|{}] Creating root rule chain actor, other rule chains are activated on demand", ruleChain.getId().getEntityType(), ruleChain.getId());
+            ActorRef actorRef = getOrCreateActor(this.context(), ruleChain.getId(), id -> ruleChain);
+            visit(ruleChain, actorRef);
+        }
+    }
+
     protected void visit(RuleChain entity, ActorRef actorRef) {
         if (entity != null && entity.isRoot()) {
             rootChain = entity;
@@ -76,18 +101,33 @@ public abstract class RuleChainManagerActor extends ContextAwareActor {
         return getOrCreateActor(context, ruleChainId, eId -> ruleChainService.findRuleChainById(TenantId.SYS_TENANT_ID, eId));
     }
 
+    /**
+     * @return the actor of the rule chain, or the dead letters of the actor system if it has no actor yet and
+     * the rule chain does not exist (anymore), so messages for it are dropped
+     */
     public ActorRef getOrCreateActor(ActorContext context, RuleChainId ruleChainId, Function<RuleChainId, RuleChain> provider) {
-        return actors.computeIfAbsent(ruleChainId, eId -> {
+        ActorRef actorRef = actors.computeIfAbsent(ruleChainId, eId -> {
             RuleChain ruleChain = provider.apply(eId);
+            if (ruleChain == null) {
+                log.debug("[{}] Rule chain not found, actor is not created", eId);
+                return null;
+            }
             return context.actorOf(Props.create(new RuleChainActor.ActorCreator(systemContext, tenantId, ruleChain))
                     .withDispatcher(DefaultActorService.TENANT_RULE_DISPATCHER_NAME), eId.toString());
         });
+        return actorRef != null ? actorRef : context.system().deadLetters();
     }
 
     protected ActorRef getEntityActorRef(EntityId entityId) {
         ActorRef target = null;
         if (entityId.getEntityType() == EntityType.RULE_CHAIN) {
-            target = getOrCreateActor(this.context(), (RuleChainId) entityId);
+            if (lazyInit) {
+                // a rule chain that was not activated yet loads its current state on its first message,
+                // so its lifecycle events are dropped instead of activating it or creating an actor for a deleted chain
+                target = actors.get((RuleChainId) entityId);
+            } else {
+                target = getOrCreateActor(this.context(), (RuleChainId) entityId);
+            }
         }
         return target;
     }
@@ -43,6 +43,7 @@ import org.elasticsearch.index.snapshots.blobstore.BlobStoreIndexShardSnapshot;
 import org.elasticsearch.index.store.cache.CacheFile;
 import org.elasticsearch.index.store.cache.CacheKey;
 import org.elasticsearch.index.store.cache.CachedBlobContainerIndexInput;
+import org.elasticsearch.index.store.cache.SharedBlockCache;
 import org.elasticsearch.index.store.checksum.ChecksumBlobContainerIndexInput;
 import org.elasticsearch.index.store.direct.DirectBlobContainerIndexInput;
 import org.elasticsearch.indices.recovery.RecoveryState;
@@ -116,6 +117,8 @@ public class SearchableSnapshotDirectory extends BaseDirectory {
     private final ShardId shardId;
     private final LongSupplier statsCurrentTimeNanosSupplier;
     private final Map<String, IndexInputStats> stats;
+    private final Map<String, ReadAheadStats> readAheadStats;
+    private final SharedBlockCache.Stats blockCacheStats;
     private final ThreadPool threadPool;
     private final CacheService cacheService;
     private final boolean useCache;
@@ -156,6 +159,8 @@ public class SearchableSnapshotDirectory extends BaseDirectory {
         this.indexId = Objects.requireNonNull(indexId);
         this.shardId = Objects.requireNonNull(shardId);
         this.stats = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+        this.readAheadStats = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+        this.blockCacheStats = new SharedBlockCache.Stats();
         this.statsCurrentTimeNanosSupplier = Objects.requireNonNull(currentTimeNanosSupplier);
         this.cacheService = Objects.requireNonNull(cacheService);
         this.cacheDir = Objects.requireNonNull(cacheDir);
@@ -263,6 +268,37 @@ public class SearchableSnapshotDirectory extends BaseDirectory {
         return stats.get(fileName);
     }
 
+    public Map<String, ReadAheadStats> getReadAheadStats() {
+        return Collections.unmodifiableMap(readAheadStats);
+    }
+
+    public ReadAheadStats getReadAheadStats(String fileName) {
+        return readAheadStats.computeIfAbsent(fileName, n -> new ReadAheadStats());
+    }
+
+    /**
+     * @return the hits and misses of the node-wide {@link SharedBlockCache} for the reads of this shard
+     */
+    public SharedBlockCache.Stats getBlockCacheStats() {
+        return blockCacheStats;
+    }
+
+    /**
+     * @return the node-wide block cache, or null if it is disabled
+     */
+    @Nullable
+    public SharedBlockCache blockCache() {
+        return SharedBlockCache.nodeCache();
+    }
+
+    /**
+     * @return the key under which the regions of the given file are cached in the {@link SharedBlockCache}, identical for all the shards
+     * that share the file's blobs
+     */
+    public String blockCacheKey(BlobStoreIndexShardSnapshot.FileInfo fileInfo) {
+        return repository + '/' + fileInfo.name();
+    }
+
     private BlobStoreIndexShardSnapshot.FileInfo fileInfo(final String name) throws FileNotFoundException {
         return files().stream()
             .filter(fileInfo -> fileInfo.physicalName().equals(name))
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import org.apache.zookeeper.server.metric.LatencyHistogram;
+
+/**
+ * Latency histograms of the server, kept next to the summaries of
+ * {@link ServerMetrics} so that the admin server can export full
+ * distributions: request latency per request type, time spent in the queue of
+ * each request processor and txn log fsync time. All values are in
+ * milliseconds.
+ */
+public final class ServerHistograms {
+
+    public static final String REQUEST_LATENCY = "request_latency_ms";
+    public static final String QUEUE_TIME = "processor_queue_time_ms";
+    public static final String FSYNC_TIME = "fsync_time_ms";
+
+    private static final ServerHistograms INSTANCE = new ServerHistograms();
+
+    public static ServerHistograms getHistograms() {
+        return INSTANCE;
+    }
+
+    private final ConcurrentMap<Integer, LatencyHistogram> requestLatency = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> queueTime = new ConcurrentHashMap<>();
+    private final LatencyHistogram fsyncTime = new LatencyHistogram(FSYNC_TIME, null);
+
+    private ServerHistograms() {
+    }
+
+    public LatencyHistogram requestLatency(int type) {
+        LatencyHistogram histogram = requestLatency.get(type);
+        if (histogram == null) {
+            histogram = requestLatency.computeIfAbsent(type,
+                t -> new LatencyHistogram(REQUEST_LATENCY, "op=\"" + Request.op2String(t) + "\""));
+        }
+        return histogram;
+    }
+
+    public LatencyHistogram queueTime(String processor) {
+        LatencyHistogram histogram = queueTime.get(processor);
+        if (histogram == null) {
+            histogram = queueTime.computeIfAbsent(processor,
+                p -> new LatencyHistogram(QUEUE_TIME, "processor=\"" + p + "\""));
+        }
+        return histogram;
+    }
+
+    public LatencyHistogram fsyncTime() {
+        return fsyncTime;
+    }
+
+    /**
+     * Passes every histogram to the consumer, keyed by metric name and label
+     * value, e.g. request_latency_ms_create.
+     */
+    public void dump(BiConsumer<String, Object> response) {
+        requestLatency.forEach((type, histogram) -> response.accept(REQUEST_LATENCY + "_" + Request.op2String(type), histogram));
+        queueTime.forEach((processor, histogram) -> response.accept(QUEUE_TIME + "_" + processor, histogram));
+        response.accept(FSYNC_TIME, fsyncTime);
+    }
+
+    public void reset() {
+        requestLatency.values().forEach(LatencyHistogram::reset);
+        queueTime.values().forEach(LatencyHistogram::reset);
+        fsyncTime.reset();
+    }
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+
+package org.elasticsearch.index.store.cache;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link SharedBlockCache} is a node-wide, on-heap cache of fixed size regions of snapshot blobs that sits in front of the on-disk
+ * {@link CacheFile}s of all searchable snapshot shards. Regions are keyed by repository and blob name rather than by shard and Lucene file
+ * name, so that shards mounted from the same snapshot, or from snapshots that share blobs, share the cached regions.
+ *
+ * Regions are evicted in least recently used order but admitted using TinyLFU: once its segment is full a region only replaces the
+ * least recently used one of the segment if it has been requested more often recently, as estimated by a count-min sketch whose
+ * counters are periodically halved. This keeps one-off scans from flushing the regions that are read over and over.
+ *
+ * The regions are split into segments, each with its own lock and least recently used order, so that concurrent reads of different
+ * regions rarely contend. The sketch is updated without locking.
+ */
+public class SharedBlockCache {
+
+    public static final int REGION_SIZE = ByteSizeUnit.KB.toIntBytes(32);
+
+    /**
+     * System property setting the size of the node-wide cache, such as {@code 64mb}. The cache is disabled by default: it is held for the
+     * lifetime of the JVM and shared by all the nodes that run in it, as in tests.
+     */
+    public static final String NODE_CACHE_SIZE_PROPERTY = "es.searchable_snapshots.shared_block_cache.size";
+
+    private static final SharedBlockCache NODE_CACHE = createNodeCache(System.getProperty(NODE_CACHE_SIZE_PROPERTY, "0b"));
+
+    /**
+     * Segments hold at least this many regions, so that their least recently used order stays meaningful.
+     */
+    private static final int MIN_REGIONS_PER_SEGMENT = 64;
+    private static final int MAX_SEGMENTS = 16;
+
+    /**
+     * @return the cache shared by all searchable snapshot directories of the node, or null if it is disabled
+     */
+    @Nullable
+    public static SharedBlockCache nodeCache() {
+        return NODE_CACHE;
+    }
+
+    @Nullable
+    static SharedBlockCache createNodeCache(String size) {
+        final long sizeInBytes = ByteSizeValue.parseBytesSizeValue(size, NODE_CACHE_SIZE_PROPERTY).getBytes();
+        return sizeInBytes > 0L ? new SharedBlockCache(sizeInBytes) : null;
+    }
+
+    private final FrequencySketch sketch;
+    private final Segment[] segments;
+
+    public SharedBlockCache(long sizeInBytes) {
+        final int maxRegions = Math.toIntExact(Math.max(1L, sizeInBytes / REGION_SIZE));
+        final int numSegments = Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maxRegions / MIN_REGIONS_PER_SEGMENT)));
+        this.sketch = new FrequencySketch(maxRegions);
+        this.segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            // the first segments take the remainder so that the segments hold maxRegions in total
+            segments[i] = new Segment(maxRegions / numSegments + (i < maxRegions % numSegments ? 1 : 0));
+        }
+    }
+
+    /**
+     * @return the region that contains the byte at the given position of a blob
+     */
+    public static long region(long position) {
+        return position / REGION_SIZE;
+    }
+
+    private Segment segment(RegionKey key) {
+        final int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * Copies the bytes of the blob at the given position into the buffer, filling it, if the region that contains them is cached. The
+     * request is counted as an access to the region even if it is not cached, which lets frequently requested regions in later on.
+     *
+     * @return true if the buffer was filled, false if the region is not cached and the buffer was left untouched
+     */
+    public boolean read(String blob, long position, ByteBuffer buffer) {
+        final RegionKey key = new RegionKey(blob, region(position));
+        sketch.increment(key);
+        final byte[] bytes = segment(key).get(key);
+        final int offset = Math.toIntExact(position - key.region * REGION_SIZE);
+        if (bytes == null || offset + buffer.remaining() > bytes.length) {
+            return false;
+        }
+        // cached regions are never modified, they can be copied outside of the lock
+        buffer.put(bytes, offset, buffer.remaining());
+        return true;
+    }
+
+    /**
+     * @return true if the given region would be admitted into the cache, so callers only load the region if it is worth it
+     */
+    public boolean shouldAdmit(String blob, long region) {
+        final RegionKey key = new RegionKey(blob, region);
+        return segment(key).shouldAdmit(key, sketch);
+    }
+
+    /**
+     * Adds the content of a region to the cache, evicting the least recently used region of its segment if the segment is full and the
+     * new region is requested more often than it.
+     */
+    public void put(String blob, long region, byte[] bytes) {
+        assert bytes.length <= REGION_SIZE : bytes.length;
+        final RegionKey key = new RegionKey(blob, region);
+        segment(key).put(key, bytes, sketch);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private static final class Segment {
+
+        private final int maxRegions;
+        private final LinkedHashMap<RegionKey, byte[]> regions = new LinkedHashMap<>(16, 0.75f, true); // guarded by this, in access order
+
+        private Segment(int maxRegions) {
+            this.maxRegions = Math.max(1, maxRegions);
+        }
+
+        synchronized byte[] get(RegionKey key) {
+            return regions.get(key);
+        }
+
+        synchronized boolean shouldAdmit(RegionKey key, FrequencySketch sketch) {
+            if (regions.containsKey(key)) {
+                return false;
+            }
+            return regions.size() < maxRegions || sketch.frequency(key) > sketch.frequency(regions.keySet().iterator().next());
+        }
+
+        synchronized void put(RegionKey key, byte[] bytes, FrequencySketch sketch) {
+            if (regions.containsKey(key)) {
+                return;
+            }
+            if (regions.size() >= maxRegions) {
+                final Iterator<Map.Entry<RegionKey, byte[]>> iterator = regions.entrySet().iterator();
+                final RegionKey victim = iterator.next().getKey();
+                if (sketch.frequency(key) <= sketch.frequency(victim)) {
+                    return;
+                }
+                iterator.remove();
+            }
+            regions.put(key, bytes);
+        }
+
+        synchronized int size() {
+            return regions.size();
+        }
+    }
+
+    /**
+     * Hits and misses of the shared block cache for the reads of a given shard.
+     */
+    public static class Stats {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public void addHit() {
+            hits.increment();
+        }
+
+        public void addMiss() {
+            misses.increment();
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        /**
+         * @return the ratio of reads served by the shared block cache, or 0 if there was no read
+         */
+        public double getHitRatio() {
+            final long hits = getHits();
+            final long total = hits + getMisses();
+            return total == 0L ? 0.0d : (double) hits / total;
+        }
+    }
+
+    private static final class RegionKey {
+
+        private final String blob;
+        private final long region;
+
+        private RegionKey(String blob, long region) {
+            this.blob = Objects.requireNonNull(blob);
+            this.region = region;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final RegionKey that = (RegionKey) o;
+            return region == that.region && blob.equals(that.blob);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * blob.hashCode() + Long.hashCode(region);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + blob + "][" + region + "]";
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters estimating how often each key was requested recently. All counters are halved once the number
+     * of recorded requests reaches ten times the number of entries of the cache, so that the estimates favour recent requests. Counters
+     * are updated with compare-and-set, concurrent requests may be missed while the counters are being halved, which only makes the
+     * estimates a little less accurate.
+     */
+    static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = new int[] { 0x97cb3127, 0xb5ad4ecf, 0x3c6ef373, 0x9e3779b9 };
+
+        private final AtomicIntegerArray counters; // DEPTH rows of width counters
+        private final int width;
+        private final int mask;
+        private final int sampleSize;
+        private final AtomicInteger additions = new AtomicInteger();
+        private final AtomicBoolean resetting = new AtomicBoolean();
+
+        FrequencySketch(int maxEntries) {
+            // four counters per entry keep the overestimation caused by collisions low
+            this.width = Integer.highestOneBit(Math.max(64, 4 * maxEntries) - 1) << 1;
+            this.counters = new AtomicIntegerArray(DEPTH * width);
+            this.mask = width - 1;
+            this.sampleSize = 10 * maxEntries;
+        }
+
+        int frequency(Object key) {
+            final int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, counters.get(index(hash, i)));
+            }
+            return frequency;
+        }
+
+        void increment(Object key) {
+            final int hash = key.hashCode();
+            for (int i = 0; i < DEPTH; i++) {
+                final int index = index(hash, i);
+                int count;
+                do {
+                    count = counters.get(index);
+                    if (count >= MAX_COUNT) {
+                        break;
+                    }
+                } while (counters.compareAndSet(index, count, count + 1) == false);
+            }
+            if (additions.incrementAndGet() >= sampleSize && resetting.compareAndSet(false, true)) {
+                try {
+                    reset();
+                } finally {
+                    resetting.set(false);
+                }
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.getAndUpdate(i, count -> count >>> 1);
+            }
+            additions.updateAndGet(count -> count / 2);
+        }
+
+        private int index(int hash, int i) {
+            int h = hash * SEEDS[i];
+            h ^= h >>> 16;
+            return i * width + (h & mask);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License;
+ * you may not use this file except in compliance with the Elastic License.
+ */
+package org.elasticsearch.index.store.cache;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SharedBlockCacheTests extends ESTestCase {
+
+    private static final int REGION_SIZE = SharedBlockCache.REGION_SIZE;
+
+    public void testReadCachedRegion() {
+        final SharedBlockCache cache = new SharedBlockCache(4L * REGION_SIZE);
+        final byte[] region = randomByteArrayOfLength(REGION_SIZE);
+        final ByteBuffer buffer = ByteBuffer.allocate(randomIntBetween(1, 1024));
+
+        assertThat(cache.read("repo/__blob", REGION_SIZE, buffer), is(false));
+        assertThat(buffer.position(), equalTo(0));
+
+        assertThat(cache.shouldAdmit("repo/__blob", 1L), is(true));
+        cache.put("repo/__blob", 1L, region);
+        assertThat(cache.shouldAdmit("repo/__blob", 1L), is(false));
+
+        final int offset = randomIntBetween(0, REGION_SIZE - buffer.capacity());
+        assertThat(cache.read("repo/__blob", REGION_SIZE + offset, buffer), is(true));
+        assertThat(buffer.position(), equalTo(buffer.capacity()));
+        for (int i = 0; i < buffer.capacity(); i++) {
+            assertThat(buffer.get(i), equalTo(region[offset + i]));
+        }
+
+        // other blobs and other regions of the same blob are not cached
+        buffer.clear();
+        assertThat(cache.read("repo/__other", REGION_SIZE + offset, buffer), is(false));
+        assertThat(cache.read("repo/__blob", offset, buffer), is(false));
+    }
+
+    public void testReadBeyondLastRegion() {
+        final SharedBlockCache cache = new SharedBlockCache(4L * REGION_SIZE);
+        cache.put("repo/__blob", 0L, randomByteArrayOfLength(100));
+        assertThat(cache.read("repo/__blob", 50L, ByteBuffer.allocate(50)), is(true));
+        assertThat(cache.read("repo/__blob", 50L, ByteBuffer.allocate(51)), is(false));
+    }
+
+    public void testFrequentRegionsAreNotEvictedByScans() {
+        final int maxRegions = 4;
+        final SharedBlockCache cache = new SharedBlockCache((long) maxRegions * REGION_SIZE);
+        for (int region = 0; region < maxRegions; region++) {
+            for (int i = 0; i < 5; i++) {
+                cache.read("repo/__hot", (long) region * REGION_SIZE, ByteBuffer.allocate(1));
+            }
+            cache.put("repo/__hot", region, new byte[REGION_SIZE]);
+        }
+        assertThat(cache.size(), equalTo(maxRegions));
+
+        // a scan reads each region once, which is not enough to replace regions that are requested over and over
+        for (int region = 0; region < 10; region++) {
+            cache.read("repo/__scan", (long) region * REGION_SIZE, ByteBuffer.allocate(1));
+            assertThat(cache.shouldAdmit("repo/__scan", region), is(false));
+            cache.put("repo/__scan", region, new byte[REGION_SIZE]);
+        }
+        assertThat(cache.size(), equalTo(maxRegions));
+        for (int region = 0; region < maxRegions; region++) {
+            assertThat(cache.read("repo/__hot", (long) region * REGION_SIZE, ByteBuffer.allocate(1)), is(true));
+        }
+
+        // until it is requested more often than the least recently used region
+        for (int i = 0; i < 10; i++) {
+            cache.read("repo/__scan", 0L, ByteBuffer.allocate(1));
+        }
+        assertThat(cache.shouldAdmit("repo/__scan", 0L), is(true));
+        cache.put("repo/__scan", 0L, new byte[REGION_SIZE]);
+        assertThat(cache.size(), equalTo(maxRegions));
+        assertThat(cache.read("repo/__scan", 0L, ByteBuffer.allocate(1)), is(true));
+        assertThat(cache.read("repo/__hot", 0L, ByteBuffer.allocate(1)), is(false));
+    }
+
+    public void testNodeCacheDisabledByDefault() {
+        assertThat(System.getProperty(SharedBlockCache.NODE_CACHE_SIZE_PROPERTY), nullValue());
+        assertThat(SharedBlockCache.nodeCache(), nullValue());
+        assertThat(SharedBlockCache.createNodeCache("0b"), nullValue());
+
+        final SharedBlockCache cache = SharedBlockCache.createNodeCache("1mb");
+        assertThat(cache, notNullValue());
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    public void testSegmentsHoldConfiguredNumberOfRegions() {
+        final int maxRegions = 256;
+        final SharedBlockCache cache = new SharedBlockCache((long) maxRegions * REGION_SIZE);
+        for (int region = 0; region < 4 * maxRegions; region++) {
+            cache.put("repo/__blob", region, new byte[1]);
+            assertThat(cache.size(), lessThanOrEqualTo(maxRegions));
+        }
+        assertThat(cache.size(), equalTo(maxRegions));
+    }
+
+    public void testConcurrentReadsAndPuts() throws Exception {
+        final int maxRegions = 512;
+        final SharedBlockCache cache = new SharedBlockCache((long) maxRegions * REGION_SIZE);
+        final Thread[] threads = new Thread[randomIntBetween(2, 8)];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        for (int t = 0; t < threads.length; t++) {
+            final Random random = new Random(randomLong());
+            threads[t] = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                final ByteBuffer buffer = ByteBuffer.allocate(1);
+                for (int i = 0; i < 10_000; i++) {
+                    // every region holds its own number, so that reads can check they got the right one
+                    final int region = random.nextInt(2 * maxRegions);
+                    buffer.clear();
+                    if (cache.read("repo/__blob", (long) region * REGION_SIZE, buffer)) {
+                        assertThat(buffer.get(0), equalTo((byte) region));
+                    } else if (cache.shouldAdmit("repo/__blob", region)) {
+                        cache.put("repo/__blob", region, new byte[] { (byte) region });
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(cache.size(), lessThanOrEqualTo(maxRegions));
+    }
+
+    public void testStats() {
+        final SharedBlockCache.Stats stats = new SharedBlockCache.Stats();
+        assertThat(stats.getHitRatio(), equalTo(0.0d));
+        stats.addHit();
+        stats.addHit();
+        stats.addHit();
+        stats.addMiss();
+        assertThat(stats.getHits(), equalTo(3L));
+        assertThat(stats.getMisses(), equalTo(1L));
+        assertThat(stats.getHitRatio(), equalTo(0.75d));
+    }
+}
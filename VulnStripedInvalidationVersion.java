@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.cache;
+
+import com.google.common.cache.Cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Like {@link InvalidationVersion}, but counts the invalidations of each key separately.
+ *
+ * Keys are hashed over a fixed number of stripes, so a write only cancels the loads of the keys
+ * it invalidated and of the few keys that share their stripe, instead of every load in progress.
+ * Only usable when a value is loaded and stored under the same key.
+ */
+public class StripedInvalidationVersion {
+
+    private final AtomicLongArray versions;
+    private final int mask;
+
+    public StripedInvalidationVersion(int stripes) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.versions = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the version to pass to {@link #putIfNotInvalidated} once the value of the key is loaded
+     */
+    public long beforeLoad(Object key) {
+        return versions.get(stripe(key));
+    }
+
+    /**
+     * Must be called before the entry of the key is dropped from the cache.
+     */
+    public void invalidate(Object key) {
+        versions.incrementAndGet(stripe(key));
+    }
+
+    /**
+     * Cancels the loads of all keys, for writes whose invalidated keys are unknown.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < versions.length(); i++) {
+            versions.incrementAndGet(i);
+        }
+    }
+
+    public <K, V> void putIfNotInvalidated(Cache<K, V> cache, K key, V value, long loadVersion) {
+        int stripe = stripe(key);
+        if (versions.get(stripe) == loadVersion) {
+            cache.put(key, value);
+            // an invalidation may have dropped the key between the check and the put
+            if (versions.get(stripe) != loadVersion) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    private int stripe(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
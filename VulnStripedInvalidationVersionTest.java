@@ -0,0 +1,60 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StripedInvalidationVersionTest {
+
+    private final Cache<String, String> cache = CacheBuilder.newBuilder().build();
+    // "a" and "b" hash to different stripes
+    private final StripedInvalidationVersion version = new StripedInvalidationVersion(16);
+
+    @Test
+    public void testLoadOverlappingInvalidationOfSameKeyIsNotStored() {
+        long loadVersion = version.beforeLoad("a");
+        version.invalidate("a");
+        cache.invalidate("a");
+        version.putIfNotInvalidated(cache, "a", "stale", loadVersion);
+        Assert.assertNull(cache.getIfPresent("a"));
+
+        loadVersion = version.beforeLoad("a");
+        version.putIfNotInvalidated(cache, "a", "value", loadVersion);
+        Assert.assertEquals("value", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testInvalidationOfOtherKeyDoesNotCancelLoad() {
+        long loadVersion = version.beforeLoad("a");
+        version.invalidate("b");
+        cache.invalidate("b");
+        version.putIfNotInvalidated(cache, "a", "value", loadVersion);
+        Assert.assertEquals("value", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testInvalidateAllCancelsEveryLoad() {
+        long loadVersionA = version.beforeLoad("a");
+        long loadVersionB = version.beforeLoad("b");
+        version.invalidateAll();
+        version.putIfNotInvalidated(cache, "a", "stale", loadVersionA);
+        version.putIfNotInvalidated(cache, "b", "stale", loadVersionB);
+        Assert.assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.timescale;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps results of sealed time buckets of aggregation queries.
+ *
+ * For every (entity, key, aggregation, bucket size) a single contiguous range [from, to) of
+ * bucket-aligned, fully covered and already closed buckets is stored, so a repeated query only
+ * has to fetch the partial head bucket and the buckets after the cached range. Writes and deletes
+ * drop the ranges they touch. Stored buckets expire a fixed time after they were put, however often
+ * they are read, which bounds how long writes made on other nodes go unnoticed.
+ */
+@Slf4j
+public class TimescaleAggregationCache {
+
+    private final Cache<SeriesKey, SeriesState> cache;
+    private final int maxBucketsPerSeries;
+    private final long ttlNanos;
+    private final Ticker ticker;
+
+    public TimescaleAggregationCache(long maxSeries, long ttlMs, int maxBucketsPerSeries) {
+        this(maxSeries, ttlMs, maxBucketsPerSeries, Ticker.systemTicker());
+    }
+
+    TimescaleAggregationCache(long maxSeries, long ttlMs, int maxBucketsPerSeries, Ticker ticker) {
+        // series states are updated in place, so the write time of the state says nothing about its buckets
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSeries)
+                .expireAfterAccess(ttlMs, TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.maxBucketsPerSeries = maxBucketsPerSeries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.ticker = ticker;
+    }
+
+    public Lookup get(UUID entityId, String key, Aggregation aggregation, long interval) {
+        SeriesState state = getState(entityId, key);
+        synchronized (state) {
+            AggregationKey aggregationKey = new AggregationKey(aggregation, interval);
+            StoredBuckets stored = state.buckets.get(aggregationKey);
+            if (stored != null && ticker.read() - stored.storedAt >= ttlNanos) {
+                state.buckets.remove(aggregationKey);
+                state.bucketCount -= stored.buckets.getEntries().size();
+                stored = null;
+            }
+            return new Lookup(state, state.version, stored != null ? stored.buckets : null);
+        }
+    }
+
+    /**
+     * Stores the buckets unless the series was modified since the {@link Lookup} was taken. The buckets of all
+     * aggregations of a series count towards the same limit, the other aggregations of the series are dropped
+     * if the new buckets do not fit next to them.
+     * <p>
+     * The state is never created here: a series evicted since the lookup may have missed an invalidation,
+     * so only the state instance the lookup was taken from is updated.
+     */
+    public void put(UUID entityId, String key, Aggregation aggregation, long interval, Lookup lookup, CachedBuckets buckets) {
+        if (buckets.getEntries().size() > maxBucketsPerSeries) {
+            return;
+        }
+        SeriesState state = lookup.state;
+        if (cache.getIfPresent(new SeriesKey(entityId, key)) != state) {
+            return;
+        }
+        synchronized (state) {
+            if (state.version == lookup.getVersion()) {
+                AggregationKey aggregationKey = new AggregationKey(aggregation, interval);
+                StoredBuckets previous = state.buckets.remove(aggregationKey);
+                if (previous != null) {
+                    state.bucketCount -= previous.buckets.getEntries().size();
+                }
+                Iterator<StoredBuckets> it = state.buckets.values().iterator();
+                while (state.bucketCount + buckets.getEntries().size() > maxBucketsPerSeries && it.hasNext()) {
+                    state.bucketCount -= it.next().buckets.getEntries().size();
+                    it.remove();
+                }
+                state.buckets.put(aggregationKey, new StoredBuckets(buckets, ticker.read()));
+                state.bucketCount += buckets.getEntries().size();
+            }
+        }
+    }
+
+    public void invalidate(UUID entityId, String key, long startTs, long endTs) {
+        SeriesState state = cache.getIfPresent(new SeriesKey(entityId, key));
+        if (state != null) {
+            synchronized (state) {
+                state.version++;
+                Iterator<StoredBuckets> it = state.buckets.values().iterator();
+                while (it.hasNext()) {
+                    CachedBuckets buckets = it.next().buckets;
+                    if (startTs < buckets.getTo() && endTs > buckets.getFrom()) {
+                        state.bucketCount -= buckets.getEntries().size();
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    public void printStats() {
+        log.info("Timescale aggregation cache: series [{}] {}", cache.size(), cache.stats());
+    }
+
+    private SeriesState getState(UUID entityId, String key) {
+        try {
+            return cache.get(new SeriesKey(entityId, key), SeriesState::new);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Data
+    public static class Lookup {
+        @Getter(AccessLevel.NONE)
+        private final SeriesState state;
+        private final long version;
+        private final CachedBuckets buckets;
+    }
+
+    @Data
+    public static class CachedBuckets {
+        private final long from;
+        private final long to;
+        private final List<TsKvEntry> entries;
+
+        public List<TsKvEntry> getEntries(long from, long to, long interval) {
+            return filter(entries, from, to, interval);
+        }
+    }
+
+    /**
+     * Bucket-aligned bounds of an aggregation query over [startTs, endTs): the full buckets lie in
+     * [firstFullBucket, fullBucketsEnd) and the ones before sealedEnd are already closed, so they can be cached.
+     */
+    @Data
+    public static class BucketRange {
+        private final long firstFullBucket;
+        private final long fullBucketsEnd;
+        private final long sealedEnd;
+
+        public static BucketRange of(long startTs, long endTs, long interval, long now) {
+            long firstFullBucket = Math.floorDiv(startTs + interval - 1, interval) * interval;
+            long fullBucketsEnd = Math.floorDiv(endTs, interval) * interval;
+            return new BucketRange(firstFullBucket, fullBucketsEnd, Math.min(fullBucketsEnd, Math.floorDiv(now, interval) * interval));
+        }
+
+        public boolean isCacheable() {
+            return firstFullBucket < sealedEnd;
+        }
+
+        public boolean canServe(CachedBuckets cached) {
+            return cached != null && cached.getFrom() <= firstFullBucket && getCachedEnd(cached) > firstFullBucket;
+        }
+
+        public long getCachedEnd(CachedBuckets cached) {
+            return Math.min(cached.getTo(), fullBucketsEnd);
+        }
+
+        public boolean canExtend(CachedBuckets cached) {
+            return getCachedEnd(cached) == cached.getTo() && sealedEnd > cached.getTo();
+        }
+    }
+
+    /**
+     * Returns the entries of buckets that start within [from, to).
+     */
+    public static List<TsKvEntry> filter(List<TsKvEntry> entries, long from, long to, long interval) {
+        List<TsKvEntry> result = new ArrayList<>();
+        for (TsKvEntry entry : entries) {
+            long bucketStart = Math.floorDiv(entry.getTs(), interval) * interval;
+            if (bucketStart >= from && bucketStart < to) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    @Data
+    private static class SeriesKey {
+        private final UUID entityId;
+        private final String key;
+    }
+
+    @Data
+    private static class AggregationKey {
+        private final Aggregation aggregation;
+        private final long interval;
+    }
+
+    @Data
+    private static class StoredBuckets {
+        private final CachedBuckets buckets;
+        private final long storedAt;
+    }
+
+    private static class SeriesState {
+        private long version;
+        private int bucketCount;
+        private final Map<AggregationKey, StoredBuckets> buckets = new HashMap<>();
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.timescale;
+
+import com.google.common.base.Ticker;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TimescaleAggregationCacheTest {
+
+    private static final long INTERVAL = 1000;
+    private static final long TTL_MS = 60000;
+
+    private final UUID entityId = UUID.randomUUID();
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+
+    @Test
+    public void testStoredBucketsAreReturned() {
+        TimescaleAggregationCache cache = new TimescaleAggregationCache(100, TTL_MS, 100, ticker);
+        TimescaleAggregationCache.CachedBuckets buckets = buckets(0, 5000);
+
+        cache.put(entityId, "temperature", Aggregation.AVG, INTERVAL, cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL), buckets);
+
+        Assert.assertSame(buckets, cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL).getBuckets());
+        Assert.assertNull(cache.get(entityId, "temperature", Aggregation.MAX, INTERVAL).getBuckets());
+    }
+
+    @Test
+    public void testInvalidateBetweenLookupAndPutDropsThePut() {
+        TimescaleAggregationCache cache = new TimescaleAggregationCache(100, TTL_MS, 100, ticker);
+        TimescaleAggregationCache.Lookup lookup = cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL);
+
+        cache.invalidate(entityId, "temperature", 2500, 2501);
+        cache.put(entityId, "temperature", Aggregation.AVG, INTERVAL, lookup, buckets(0, 5000));
+
+        Assert.assertNull(cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL).getBuckets());
+    }
+
+    @Test
+    public void testInvalidateMissedByEvictedSeriesDropsThePut() {
+        TimescaleAggregationCache cache = new TimescaleAggregationCache(1, TTL_MS, 100, ticker);
+        TimescaleAggregationCache.Lookup lookup = cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL);
+
+        // evicts the series, so the invalidation below finds nothing to bump
+        cache.get(UUID.randomUUID(), "humidity", Aggregation.AVG, INTERVAL);
+        cache.invalidate(entityId, "temperature", 2500, 2501);
+        cache.put(entityId, "temperature", Aggregation.AVG, INTERVAL, lookup, buckets(0, 5000));
+
+        Assert.assertNull(cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL).getBuckets());
+    }
+
+    @Test
+    public void testInvalidateDropsOnlyOverlappingRanges() {
+        TimescaleAggregationCache cache = new TimescaleAggregationCache(100, TTL_MS, 100, ticker);
+        cache.put(entityId, "temperature", Aggregation.AVG, INTERVAL, cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL), buckets(0, 5000));
+        cache.put(entityId, "temperature", Aggregation.MAX, 10 * INTERVAL, cache.get(entityId, "temperature", Aggregation.MAX, 10 * INTERVAL), buckets(10000, 20000));
+
+        cache.invalidate(entityId, "temperature", 5000, 6000);
+        Assert.assertNotNull(cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL).getBuckets());
+        Assert.assertNotNull(cache.get(entityId, "temperature", Aggregation.MAX, 10 * INTERVAL).getBuckets());
+
+        cache.invalidate(entityId, "temperature", 4999, 5000);
+        Assert.assertNull(cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL).getBuckets());
+        Assert.assertNotNull(cache.get(entityId, "temperature", Aggregation.MAX, 10 * INTERVAL).getBuckets());
+    }
+
+    @Test
+    public void testBucketsExpireAfterTheyWerePut() {
+        TimescaleAggregationCache cache = new TimescaleAggregationCache(100, TTL_MS, 100, ticker);
+        TimescaleAggregationCache.Lookup lookup = cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL);
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MS - 1));
+        cache.put(entityId, "temperature", Aggregation.AVG, INTERVAL, lookup, buckets(0, 5000));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(TTL_MS - 1));
+        Assert.assertNotNull(cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL).getBuckets());
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertNull(cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL).getBuckets());
+    }
+
+    @Test
+    public void testBucketsOverTheSeriesLimitAreNotStored() {
+        TimescaleAggregationCache cache = new TimescaleAggregationCache(100, TTL_MS, 4, ticker);
+        cache.put(entityId, "temperature", Aggregation.AVG, INTERVAL, cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL), buckets(0, 3000));
+        cache.put(entityId, "temperature", Aggregation.MAX, INTERVAL, cache.get(entityId, "temperature", Aggregation.MAX, INTERVAL), buckets(0, 2000));
+        cache.put(entityId, "temperature", Aggregation.MIN, INTERVAL, cache.get(entityId, "temperature", Aggregation.MIN, INTERVAL), buckets(0, 5000));
+
+        Assert.assertNull(cache.get(entityId, "temperature", Aggregation.AVG, INTERVAL).getBuckets());
+        Assert.assertNotNull(cache.get(entityId, "temperature", Aggregation.MAX, INTERVAL).getBuckets());
+        Assert.assertNull(cache.get(entityId, "temperature", Aggregation.MIN, INTERVAL).getBuckets());
+    }
+
+    @Test
+    public void testBucketRangeOfUnalignedQuery() {
+        TimescaleAggregationCache.BucketRange range = TimescaleAggregationCache.BucketRange.of(1500, 9500, INTERVAL, 6200);
+
+        Assert.assertEquals(2000, range.getFirstFullBucket());
+        Assert.assertEquals(9000, range.getFullBucketsEnd());
+        Assert.assertEquals(6000, range.getSealedEnd());
+        Assert.assertTrue(range.isCacheable());
+    }
+
+    @Test
+    public void testBucketRangeOfAlignedQueryInThePast() {
+        TimescaleAggregationCache.BucketRange range = TimescaleAggregationCache.BucketRange.of(2000, 9000, INTERVAL, 100000);
+
+        Assert.assertEquals(2000, range.getFirstFullBucket());
+        Assert.assertEquals(9000, range.getFullBucketsEnd());
+        Assert.assertEquals(9000, range.getSealedEnd());
+    }
+
+    @Test
+    public void testBucketRangeOfNegativeTimestamps() {
+        TimescaleAggregationCache.BucketRange range = TimescaleAggregationCache.BucketRange.of(-2500, -500, INTERVAL, 0);
+
+        Assert.assertEquals(-2000, range.getFirstFullBucket());
+        Assert.assertEquals(-1000, range.getFullBucketsEnd());
+        Assert.assertEquals(-1000, range.getSealedEnd());
+    }
+
+    @Test
+    public void testBucketRangeWithoutClosedBucketsIsNotCacheable() {
+        Assert.assertFalse(TimescaleAggregationCache.BucketRange.of(1500, 2500, INTERVAL, 100000).isCacheable());
+        Assert.assertFalse(TimescaleAggregationCache.BucketRange.of(1000, 9000, INTERVAL, 1999).isCacheable());
+    }
+
+    @Test
+    public void testBucketRangeServesFromCachedBuckets() {
+        TimescaleAggregationCache.BucketRange range = TimescaleAggregationCache.BucketRange.of(1500, 9500, INTERVAL, 100000);
+
+        Assert.assertFalse(range.canServe(null));
+        Assert.assertFalse(range.canServe(buckets(3000, 8000)));
+        Assert.assertFalse(range.canServe(buckets(0, 2000)));
+
+        TimescaleAggregationCache.CachedBuckets head = buckets(0, 5000);
+        Assert.assertTrue(range.canServe(head));
+        Assert.assertEquals(5000, range.getCachedEnd(head));
+        Assert.assertTrue(range.canExtend(head));
+
+        TimescaleAggregationCache.CachedBuckets beyond = buckets(1000, 12000);
+        Assert.assertTrue(range.canServe(beyond));
+        Assert.assertEquals(9000, range.getCachedEnd(beyond));
+        Assert.assertFalse(range.canExtend(beyond));
+    }
+
+    private static TimescaleAggregationCache.CachedBuckets buckets(long from, long to) {
+        List<TsKvEntry> entries = new ArrayList<>();
+        for (long ts = from; ts < to; ts += INTERVAL) {
+            entries.add(new BasicTsKvEntry(ts + INTERVAL / 2, new LongDataEntry("temperature", ts)));
+        }
+        return new TimescaleAggregationCache.CachedBuckets(from, to, entries);
+    }
+}
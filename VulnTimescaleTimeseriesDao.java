@@ -21,6 +21,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
@@ -49,6 +50,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Slf4j
@@ -66,6 +68,20 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
 
     protected TbSqlBlockingQueue<EntityContainer<TimescaleTsKvEntity>> tsQueue;
 
+    @Value("${sql.timescale.aggregation_cache.enabled:false}")
+    private boolean aggregationCacheEnabled;
+
+    @Value("${sql.timescale.aggregation_cache.max_series:10000}")
+    private long aggregationCacheMaxSeries;
+
+    @Value("${sql.timescale.aggregation_cache.ttl_ms:600000}")
+    private long aggregationCacheTtlMs;
+
+    @Value("${sql.timescale.aggregation_cache.max_buckets_per_series:100000}")
+    private int aggregationCacheMaxBuckets;
+
+    private TimescaleAggregationCache aggregationCache;
+
     @PostConstruct
     protected void init() {
         super.init();
@@ -77,6 +93,10 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
                 .build();
         tsQueue = new TbSqlBlockingQueue<>(tsParams);
         tsQueue.init(logExecutor, v -> insertRepository.saveOrUpdate(v));
+        if (aggregationCacheEnabled) {
+            aggregationCache = new TimescaleAggregationCache(aggregationCacheMaxSeries, aggregationCacheTtlMs, aggregationCacheMaxBuckets);
+            logExecutor.scheduleAtFixedRate(aggregationCache::printStats, tsStatsPrintIntervalMs, tsStatsPrintIntervalMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
@@ -91,6 +111,8 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
     protected ListenableFuture<List<TsKvEntry>> findAllAsync(EntityId entityId, ReadTsKvQuery query) {
         if (query.getAggregation() == Aggregation.NONE) {
             return findAllAsyncWithLimit(entityId, query);
+        } else if (aggregationCache != null) {
+            return findAllAndAggregateCachedAsync(entityId, query);
         } else {
             long startTs = query.getStartTs();
             long endTs = query.getEndTs();
@@ -100,6 +122,56 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
         }
     }
 
+    /**
+     * Serves the sealed buckets from {@link TimescaleAggregationCache} and only queries the partial head
+     * bucket and the buckets after the cached range. time_bucket aligns integer buckets to 0,
+     * so the sub-range results match the buckets of a query over the whole range.
+     */
+    private ListenableFuture<List<TsKvEntry>> findAllAndAggregateCachedAsync(EntityId entityId, ReadTsKvQuery query) {
+        String key = query.getKey();
+        long startTs = query.getStartTs();
+        long endTs = query.getEndTs();
+        long timeBucket = query.getInterval();
+        Aggregation aggregation = query.getAggregation();
+        TimescaleAggregationCache.BucketRange range = TimescaleAggregationCache.BucketRange.of(startTs, endTs, timeBucket, System.currentTimeMillis());
+        long firstFullBucket = range.getFirstFullBucket();
+        long sealedEnd = range.getSealedEnd();
+
+        TimescaleAggregationCache.Lookup lookup = aggregationCache.get(entityId.getId(), key, aggregation, timeBucket);
+        TimescaleAggregationCache.CachedBuckets cached = lookup.getBuckets();
+        if (!range.canServe(cached)) {
+            return Futures.transform(getTskvEntriesFuture(findAllAndAggregateAsync(entityId, key, startTs, endTs, timeBucket, aggregation)), entries -> {
+                if (range.isCacheable()) {
+                    aggregationCache.put(entityId.getId(), key, aggregation, timeBucket, lookup, new TimescaleAggregationCache.CachedBuckets(firstFullBucket, sealedEnd,
+                            TimescaleAggregationCache.filter(entries, firstFullBucket, sealedEnd, timeBucket)));
+                }
+                return entries;
+            }, MoreExecutors.directExecutor());
+        }
+
+        long cachedEnd = range.getCachedEnd(cached);
+        List<TsKvEntry> cachedEntries = cached.getEntries(firstFullBucket, cachedEnd, timeBucket);
+        ListenableFuture<List<TsKvEntry>> headFuture = startTs < firstFullBucket ?
+                getTskvEntriesFuture(findAllAndAggregateAsync(entityId, key, startTs, firstFullBucket, timeBucket, aggregation)) :
+                Futures.immediateFuture(Collections.emptyList());
+        ListenableFuture<List<TsKvEntry>> tailFuture = cachedEnd < endTs ?
+                getTskvEntriesFuture(findAllAndAggregateAsync(entityId, key, cachedEnd, endTs, timeBucket, aggregation)) :
+                Futures.immediateFuture(Collections.emptyList());
+        return Futures.transform(Futures.allAsList(headFuture, tailFuture), parts -> {
+            List<TsKvEntry> tailEntries = parts.get(1);
+            if (range.canExtend(cached)) {
+                List<TsKvEntry> extended = new ArrayList<>(cachedEntries);
+                extended.addAll(TimescaleAggregationCache.filter(tailEntries, cachedEnd, sealedEnd, timeBucket));
+                aggregationCache.put(entityId.getId(), key, aggregation, timeBucket, lookup,
+                        new TimescaleAggregationCache.CachedBuckets(firstFullBucket, sealedEnd, extended));
+            }
+            List<TsKvEntry> result = new ArrayList<>(parts.get(0));
+            result.addAll(cachedEntries);
+            result.addAll(tailEntries);
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
     @Override
     protected ListenableFuture<List<TsKvEntry>> findAllAsyncWithLimit(EntityId entityId, ReadTsKvQuery query) {
         String strKey = query.getKey();
@@ -175,7 +247,13 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
         entity.setJsonValue(tsKvEntry.getJsonValue().orElse(null));
 
         log.trace("Saving entity to timescale db: {}", entity);
-        return tsQueue.add(new EntityContainer(entity, null));
+        ListenableFuture<Void> future = tsQueue.add(new EntityContainer(entity, null));
+        if (aggregationCache != null) {
+            long ts = tsKvEntry.getTs();
+            aggregationCache.invalidate(entityId.getId(), strKey, ts, ts + 1);
+            future.addListener(() -> aggregationCache.invalidate(entityId.getId(), strKey, ts, ts + 1), MoreExecutors.directExecutor());
+        }
+        return future;
     }
 
     @Override
@@ -192,7 +270,7 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
     public ListenableFuture<Void> remove(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
         String strKey = query.getKey();
         Integer keyId = getOrSaveKeyId(strKey);
-        return service.submit(() -> {
+        ListenableFuture<Void> future = service.submit(() -> {
             tsKvRepository.delete(
                     entityId.getId(),
                     keyId,
@@ -200,6 +278,11 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
                     query.getEndTs());
             return null;
         });
+        if (aggregationCache != null) {
+            // buckets cached before the delete completes are dropped here, lookups that overlap it are not stored
+            future.addListener(() -> aggregationCache.invalidate(entityId.getId(), strKey, query.getStartTs(), query.getEndTs()), MoreExecutors.directExecutor());
+        }
+        return future;
     }
 
     @Override
@@ -39,6 +39,7 @@ import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
@@ -129,6 +130,10 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
 
     private volatile int bufferSize;
 
+    // shared by all translog files so the numbers survive rolling to a new file
+    private final MeanMetric syncBatchSize = new MeanMetric();
+    private final MeanMetric syncTime = new MeanMetric();
+
     private final ApplySettings applySettings = new ApplySettings();
 
     private final AtomicBoolean closed = new AtomicBoolean();
@@ -390,6 +395,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         if (reuse != null) {
             newFile.reuse(reuse);
         }
+        newFile.setSyncMetrics(syncBatchSize, syncTime);
         return newFile;
     }
 
@@ -425,15 +431,17 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         try {
             TranslogStreams.writeTranslogOperation(out, operation);
             ReleasablePagedBytesReference bytes = out.bytes();
+            final Location location;
             try (ReleasableLock lock = readLock.acquire()) {
-                Location location = current.add(bytes);
+                location = current.add(bytes);
+                assert current.assertBytesAtLocation(location, bytes);
                 if (syncOnEachOperation) {
-                    current.sync();
+                    // synced under the read lock so the file can't be rolled before the operation is durable,
+                    // concurrent writers share a single fsync rather than paying for one each
+                    current.syncUpTo(location.translogLocation + location.size);
                 }
-
-                assert current.assertBytesAtLocation(location, bytes);
-                return location;
             }
+            return location;
         } catch (Throwable e) {
             throw new TranslogException(shardId, "Failed to write operation [" + operation + "]", e);
         } finally {
@@ -534,6 +542,34 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         return false;
     }
 
+    /**
+     * Returns the number of fsyncs issued by this translog.
+     */
+    public long syncCount() {
+        return syncBatchSize.count();
+    }
+
+    /**
+     * Returns the average number of operations made durable by a single fsync.
+     */
+    public double avgSyncBatchSize() {
+        return syncBatchSize.mean();
+    }
+
+    /**
+     * Returns the total time spent in fsync.
+     */
+    public TimeValue syncTime() {
+        return TimeValue.timeValueNanos(syncTime.sum());
+    }
+
+    /**
+     * Returns the average time of a single fsync.
+     */
+    public TimeValue avgSyncTime() {
+        return TimeValue.timeValueNanos((long) syncTime.mean());
+    }
+
     /**
      * return stats
      */
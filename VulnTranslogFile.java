@@ -22,6 +22,7 @@ package org.elasticsearch.index.translog;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.Channels;
+import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.util.concurrent.ReleasableLock;
 import org.elasticsearch.index.shard.ShardId;
 
@@ -41,6 +42,13 @@ public class TranslogFile extends ChannelReader {
     protected volatile int operationCounter;
     /* the offset in bytes written to the file */
     protected volatile long writtenOffset;
+    /* the number of translog operations written to this file when it was last synced */
+    protected volatile int lastSyncedOperations;
+    /* held while syncing; threads waiting for a sync queue up here and are usually covered by the one in flight */
+    private final Object syncLock = new Object();
+    /* operations made durable by each sync and the time each sync took, in nanos */
+    MeanMetric syncBatchSize = new MeanMetric();
+    MeanMetric syncTime = new MeanMetric();
 
     public TranslogFile(ShardId shardId, long id, ChannelReference channelReference) throws IOException {
         super(id, channelReference);
@@ -104,13 +112,34 @@ public class TranslogFile extends ChannelReader {
     public void sync() throws IOException {
         // check if we really need to sync here...
         if (syncNeeded()) {
-            try (ReleasableLock lock = writeLock.acquire()) {
-                lastSyncedOffset = writtenOffset;
-                channelReference.channel().force(false);
+            synchronized (syncLock) {
+                final long offset;
+                final int operations;
+                try (ReleasableLock lock = writeLock.acquire()) {
+                    flush();
+                    offset = writtenOffset;
+                    operations = operationCounter;
+                }
+                // the fsync runs outside of the write lock so writers can keep appending, the
+                // operations they add in the meantime are covered by the next sync
+                if (offset > lastSyncedOffset) {
+                    final long start = System.nanoTime();
+                    channelReference.channel().force(false);
+                    syncTime.inc(System.nanoTime() - start);
+                    syncBatchSize.inc(operations - lastSyncedOperations);
+                    lastSyncedOperations = operations;
+                    lastSyncedOffset = offset;
+                }
             }
         }
     }
 
+    /** use the given metrics to record the batch size and duration of syncs */
+    void setSyncMetrics(MeanMetric syncBatchSize, MeanMetric syncTime) {
+        this.syncBatchSize = syncBatchSize;
+        this.syncTime = syncTime;
+    }
+
     /** returns true if there are buffered ops */
     public boolean syncNeeded() {
         return writtenOffset != lastSyncedOffset; // by default nothing is buffered
@@ -216,8 +245,13 @@ public class TranslogFile extends ChannelReader {
      */
     public boolean syncUpTo(long offset) throws IOException {
         if (lastSyncedOffset < offset) {
-            sync();
-            return true;
+            // concurrent callers wait for the sync in flight and only sync again if it didn't cover them
+            synchronized (syncLock) {
+                if (lastSyncedOffset < offset) {
+                    sync();
+                    return true;
+                }
+            }
         }
         return false;
     }
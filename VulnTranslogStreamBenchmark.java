@@ -0,0 +1,97 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.benchmark.translog;
+
+import org.elasticsearch.common.StopWatch;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.index.translog.TranslogStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compares writing and reading translog operations through a buffer, where operations are
+ * serialized once and checksummed in bulk, with going through plain streams, where they are
+ * serialized twice and checksummed byte by byte.
+ */
+public class TranslogStreamBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int numOps = 100000;
+        final int sourceSize = 1024;
+        final byte[] source = new byte[sourceSize];
+        Arrays.fill(source, (byte) 'a');
+        final Translog.Operation op = new Translog.Index("type", "1", source);
+
+        // warm up
+        for (int i = 0; i < 5; i++) {
+            runBuffered(op, numOps);
+            runStreamed(op, numOps);
+        }
+
+        StopWatch stopWatch = new StopWatch().start();
+        byte[] bytes = runBuffered(op, numOps);
+        System.out.println("Buffered write + read of [" + numOps + "] ops of [" + sourceSize + "] bytes took " + stopWatch.stop().lastTaskTime()
+                + ", [" + bytes.length + "] bytes");
+
+        stopWatch = new StopWatch().start();
+        bytes = runStreamed(op, numOps);
+        System.out.println("Streamed write + read of [" + numOps + "] ops of [" + sourceSize + "] bytes took " + stopWatch.stop().lastTaskTime()
+                + ", [" + bytes.length + "] bytes");
+    }
+
+    private static byte[] runBuffered(Translog.Operation op, int numOps) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        write(out, op, numOps);
+        byte[] bytes = out.bytes().toBytes();
+        read(new BytesStreamInput(bytes), numOps);
+        return bytes;
+    }
+
+    private static byte[] runStreamed(Translog.Operation op, int numOps) throws IOException {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        OutputStreamStreamOutput out = new OutputStreamStreamOutput(bytesOut);
+        write(out, op, numOps);
+        out.flush();
+        byte[] bytes = bytesOut.toByteArray();
+        read(new InputStreamStreamInput(new ByteArrayInputStream(bytes)), numOps);
+        return bytes;
+    }
+
+    private static void write(StreamOutput out, Translog.Operation op, int numOps) throws IOException {
+        for (int i = 0; i < numOps; i++) {
+            TranslogStreams.writeTranslogOperation(out, op);
+        }
+    }
+
+    private static void read(StreamInput in, int numOps) throws IOException {
+        for (int i = 0; i < numOps; i++) {
+            TranslogStreams.readTranslogOperation(in);
+        }
+    }
+}
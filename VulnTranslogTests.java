@@ -291,6 +291,24 @@ public class TranslogTests extends ElasticsearchTestCase {
         snapshot1.close();
     }
 
+    @Test
+    public void testSnapshotReadAhead() throws IOException {
+        ArrayList<Translog.Operation> ops = new ArrayList<>();
+        int translogOperations = randomIntBetween(10, 100);
+        for (int op = 0; op < translogOperations; op++) {
+            // mostly operations that fit the read ahead block, some that don't
+            int size = rarely() ? randomIntBetween(ChannelSnapshot.READ_AHEAD_SIZE, 2 * ChannelSnapshot.READ_AHEAD_SIZE) : randomIntBetween(1, 1024);
+            addToTranslogAndList(translog, ops, new Translog.Index("test", Integer.toString(op), randomAsciiOfLength(size).getBytes("UTF-8")));
+            if (rarely()) {
+                translog.newTranslog();
+            }
+        }
+
+        Translog.Snapshot snapshot = translog.newSnapshot();
+        assertThat(snapshot, SnapshotMatchers.equalsTo(ops));
+        snapshot.close();
+    }
+
     @Test
     public void testSnapshotWithNewTranslog() throws IOException {
         ArrayList<Translog.Operation> ops = new ArrayList<>();
@@ -803,6 +821,68 @@ public class TranslogTests extends ElasticsearchTestCase {
         }
     }
 
+    public void testConcurrentSyncUpTo() throws Throwable {
+        concurrentlyAddAndSync(translog, true);
+        assertThat(translog.syncCount(), lessThanOrEqualTo((long) translog.totalOperations()));
+    }
+
+    public void testConcurrentSyncOnEachOperation() throws Throwable {
+        translog.close();
+        translog = new Translog(shardId,
+                ImmutableSettings.settingsBuilder()
+                        .put(Translog.INDEX_TRANSLOG_FS_TYPE, TranslogFile.Type.SIMPLE.name())
+                        .put(Translog.INDEX_TRANSLOG_SYNC_INTERVAL, "0s").build(),
+                BigArrays.NON_RECYCLING_INSTANCE, createTempDir());
+        concurrentlyAddAndSync(translog, false);
+        // writers that add while an fsync is in flight share the next one
+        assertThat(translog.syncCount(), lessThan((long) translog.totalOperations()));
+    }
+
+    private void concurrentlyAddAndSync(final Translog translog, final boolean ensureSynced) throws Throwable {
+        final int opsPerThread = randomIntBetween(50, 100);
+        final int threadCount = 4 + randomInt(4);
+        final Thread[] threads = new Thread[threadCount];
+        final AtomicReference<Throwable> threadException = new AtomicReference<>();
+        final BlockingQueue<Translog.Location> locations = new ArrayBlockingQueue<>(threadCount * opsPerThread);
+        final CountDownLatch downLatch = new CountDownLatch(1);
+        for (int i = 0; i < threadCount; i++) {
+            final int threadId = i;
+            threads[i] = new Thread(new AbstractRunnable() {
+                @Override
+                public void onFailure(Throwable t) {
+                    threadException.set(t);
+                }
+
+                @Override
+                protected void doRun() throws Exception {
+                    downLatch.await();
+                    for (int opCount = 0; opCount < opsPerThread; opCount++) {
+                        Translog.Location location = translog.add(new Translog.Create("test", threadId + "_" + opCount, new byte[]{1}));
+                        if (ensureSynced) {
+                            translog.ensureSynced(location);
+                        }
+                        locations.add(location);
+                    }
+                }
+            });
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        downLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join(60 * 1000);
+        }
+        if (threadException.get() != null) {
+            throw threadException.get();
+        }
+
+        assertThat(locations.size(), equalTo(threadCount * opsPerThread));
+        assertFalse("every operation has been synced", translog.syncNeeded());
+        for (Translog.Location location : locations) {
+            assertFalse("location " + location + " is already synced", translog.ensureSynced(location));
+        }
+    }
+
     public void testLocationComparison() throws IOException {
         List<Translog.Location> locations = newArrayList();
         int translogOperations = randomIntBetween(10, 100);
@@ -19,14 +19,22 @@
 
 package org.elasticsearch.index.translog;
 
+import org.apache.lucene.index.Term;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.test.ElasticsearchTestCase;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
 import static org.hamcrest.Matchers.equalTo;
 
@@ -167,4 +175,93 @@ public class TranslogVersionTests extends ElasticsearchTestCase {
                     e.getMessage().contains("reached premature end of file, translog is truncated"), equalTo(true));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testChecksummedStreamBufferedAndStreamingFormatsMatch() throws Exception {
+        TranslogStream stream = TranslogStreams.CHECKSUMMED_TRANSLOG_STREAM;
+        Translog.Operation[] ops = new Translog.Operation[]{
+                new Translog.Create("test", "1", randomUnicodeOfLengthBetween(1, 20 * 1024).getBytes("UTF-8")),
+                new Translog.Index("test", "2", randomUnicodeOfLengthBetween(1, 20 * 1024).getBytes("UTF-8")),
+                new Translog.Delete(new Term("_uid", "3"), randomIntBetween(1, 100), VersionType.INTERNAL)
+        };
+
+        // the size is back-patched when writing to a buffer and computed up front otherwise
+        BytesStreamOutput buffered = new BytesStreamOutput();
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        OutputStreamStreamOutput streamedOut = new OutputStreamStreamOutput(streamed);
+        int firstOpEnd = -1;
+        for (Translog.Operation op : ops) {
+            stream.write(buffered, op);
+            stream.write(streamedOut, op);
+            if (firstOpEnd < 0) {
+                firstOpEnd = (int) buffered.position();
+            }
+        }
+        streamedOut.flush();
+        byte[] bytes = buffered.bytes().toBytes();
+        assertArrayEquals(streamed.toByteArray(), bytes);
+
+        // whole operations are checksummed at once when reading from an array
+        StreamInput[] inputs = new StreamInput[]{
+                new BytesStreamInput(bytes),
+                new InputStreamStreamInput(new ByteArrayInputStream(bytes))
+        };
+        for (StreamInput in : inputs) {
+            for (Translog.Operation op : ops) {
+                assertOperationEquals(op, stream.read(in));
+            }
+        }
+
+        // the trailing checksum of the first operation is cut off
+        try {
+            stream.read(new BytesStreamInput(Arrays.copyOf(bytes, firstOpEnd - 2)));
+            fail("should have thrown an exception about the operation being truncated");
+        } catch (TruncatedTranslogException e) {
+            // success
+        }
+
+        // the leading size is not checksummed, so only corrupt the checksummed body of the first operation
+        bytes[randomIntBetween(4, firstOpEnd - 1)]++;
+        try {
+            stream.read(new BytesStreamInput(bytes));
+            fail("should have thrown an exception about the body being corrupted");
+        } catch (TranslogCorruptedException e) {
+            // success
+        }
+    }
+
+    private static void assertOperationEquals(Translog.Operation expected, Translog.Operation actual) {
+        assertThat(actual.opType(), equalTo(expected.opType()));
+        switch (expected.opType()) {
+            case SAVE:
+                Translog.Index expectedIndex = (Translog.Index) expected;
+                Translog.Index index = (Translog.Index) actual;
+                assertThat(index.id(), equalTo(expectedIndex.id()));
+                assertThat(index.type(), equalTo(expectedIndex.type()));
+                assertThat(index.routing(), equalTo(expectedIndex.routing()));
+                assertThat(index.source(), equalTo(expectedIndex.source()));
+                assertThat(index.version(), equalTo(expectedIndex.version()));
+                assertThat(index.versionType(), equalTo(expectedIndex.versionType()));
+                break;
+            case CREATE:
+                Translog.Create expectedCreate = (Translog.Create) expected;
+                Translog.Create create = (Translog.Create) actual;
+                assertThat(create.id(), equalTo(expectedCreate.id()));
+                assertThat(create.type(), equalTo(expectedCreate.type()));
+                assertThat(create.routing(), equalTo(expectedCreate.routing()));
+                assertThat(create.source(), equalTo(expectedCreate.source()));
+                assertThat(create.version(), equalTo(expectedCreate.version()));
+                assertThat(create.versionType(), equalTo(expectedCreate.versionType()));
+                break;
+            case DELETE:
+                Translog.Delete expectedDelete = (Translog.Delete) expected;
+                Translog.Delete delete = (Translog.Delete) actual;
+                assertThat(delete.uid(), equalTo(expectedDelete.uid()));
+                assertThat(delete.version(), equalTo(expectedDelete.version()));
+                assertThat(delete.versionType(), equalTo(expectedDelete.versionType()));
+                break;
+            default:
+                fail("unsupported operation type [" + expected.opType() + "]");
+        }
+    }
+}
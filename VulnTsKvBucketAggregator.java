@@ -0,0 +1,188 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts;
+
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds raw time series rows of a single key into fixed-size buckets, so that
+ * an aggregated query over [startTs, endTs) can be answered by one range scan
+ * instead of one AVG/MIN/MAX/SUM/COUNT query per bucket.
+ *
+ * Produces the same values as the per-bucket SQL aggregation queries.
+ * Rows must belong to the key passed to the constructor.
+ */
+public class TsKvBucketAggregator {
+
+    private final String key;
+    private final Aggregation aggregation;
+    private final long startTs;
+    private final long interval;
+    private final Bucket[] buckets;
+
+    public TsKvBucketAggregator(String key, Aggregation aggregation, long startTs, long endTs, long interval) {
+        if (aggregation == null || aggregation == Aggregation.NONE) {
+            throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Aggregation interval must be positive: " + interval);
+        }
+        long bucketsCount = endTs > startTs ? (endTs - startTs - 1) / interval + 1 : 0;
+        if (bucketsCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many aggregation intervals: " + bucketsCount);
+        }
+        this.key = key;
+        this.aggregation = aggregation;
+        this.startTs = startTs;
+        this.interval = interval;
+        this.buckets = new Bucket[(int) bucketsCount];
+    }
+
+    /**
+     * The last bucket is not truncated to the query end, same as for the per-bucket queries.
+     */
+    public long getScanEndTs() {
+        return startTs + buckets.length * interval;
+    }
+
+    public void add(TsKvEntry entry) {
+        long ts = entry.getTs();
+        if (ts < startTs) {
+            return;
+        }
+        long idx = (ts - startTs) / interval;
+        if (idx >= buckets.length) {
+            return;
+        }
+        Bucket bucket = buckets[(int) idx];
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets[(int) idx] = bucket;
+        }
+        bucket.add(entry);
+    }
+
+    public List<TsKvEntry> getResult() {
+        List<TsKvEntry> result = new ArrayList<>();
+        for (int i = 0; i < buckets.length; i++) {
+            Bucket bucket = buckets[i];
+            if (bucket != null) {
+                long ts = startTs + i * interval + interval / 2;
+                TsKvEntry entry = bucket.toEntry(ts);
+                if (entry != null) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    private class Bucket {
+        private long count;
+        private long longCount;
+        private long doubleCount;
+        private long longSum;
+        private double doubleSum;
+        private long longMin = Long.MAX_VALUE;
+        private long longMax = Long.MIN_VALUE;
+        private double doubleMin = Double.MAX_VALUE;
+        private double doubleMax = -Double.MAX_VALUE;
+        private String strMin;
+        private String strMax;
+
+        void add(TsKvEntry entry) {
+            count++;
+            switch (entry.getDataType()) {
+                case LONG:
+                    entry.getLongValue().ifPresent(this::addLong);
+                    break;
+                case DOUBLE:
+                    entry.getDoubleValue().ifPresent(this::addDouble);
+                    break;
+                case STRING:
+                    entry.getStrValue().ifPresent(this::addString);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void addLong(long value) {
+            longCount++;
+            longSum += value;
+            longMin = Math.min(longMin, value);
+            longMax = Math.max(longMax, value);
+        }
+
+        private void addDouble(double value) {
+            doubleCount++;
+            doubleSum += value;
+            doubleMin = Math.min(doubleMin, value);
+            doubleMax = Math.max(doubleMax, value);
+        }
+
+        private void addString(String value) {
+            if (strMin == null || value.compareTo(strMin) < 0) {
+                strMin = value;
+            }
+            if (strMax == null || value.compareTo(strMax) > 0) {
+                strMax = value;
+            }
+        }
+
+        TsKvEntry toEntry(long ts) {
+            long numericCount = longCount + doubleCount;
+            switch (aggregation) {
+                case COUNT:
+                    return count > 0 ? new BasicTsKvEntry(ts, new LongDataEntry(key, count)) : null;
+                case AVG:
+                    return numericCount > 0 ? new BasicTsKvEntry(ts, new DoubleDataEntry(key, (longSum + doubleSum) / numericCount)) : null;
+                case SUM:
+                    if (doubleCount > 0) {
+                        return new BasicTsKvEntry(ts, new DoubleDataEntry(key, longSum + doubleSum));
+                    } else {
+                        return longCount > 0 ? new BasicTsKvEntry(ts, new LongDataEntry(key, longSum)) : null;
+                    }
+                case MIN:
+                    if (strMin != null) {
+                        return new BasicTsKvEntry(ts, new StringDataEntry(key, strMin));
+                    } else if (doubleCount > 0) {
+                        return new BasicTsKvEntry(ts, new DoubleDataEntry(key, longCount > 0 ? Math.min(longMin, doubleMin) : doubleMin));
+                    } else {
+                        return longCount > 0 ? new BasicTsKvEntry(ts, new LongDataEntry(key, longMin)) : null;
+                    }
+                case MAX:
+                    if (strMax != null) {
+                        return new BasicTsKvEntry(ts, new StringDataEntry(key, strMax));
+                    } else if (doubleCount > 0) {
+                        return new BasicTsKvEntry(ts, new DoubleDataEntry(key, longCount > 0 ? Math.max(longMax, doubleMax) : doubleMax));
+                    } else {
+                        return longCount > 0 ? new BasicTsKvEntry(ts, new LongDataEntry(key, longMax)) : null;
+                    }
+                default:
+                    throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+            }
+        }
+    }
+}
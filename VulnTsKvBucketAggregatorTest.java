@@ -0,0 +1,95 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.List;
+
+public class TsKvBucketAggregatorTest {
+
+    private static final String KEY = "temperature";
+
+    @Test
+    public void testAvgSkipsEmptyBuckets() {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(KEY, Aggregation.AVG, 0, 30, 10);
+        aggregator.add(longEntry(1, 10));
+        aggregator.add(doubleEntry(5, 20.0));
+        aggregator.add(longEntry(25, 7));
+
+        List<TsKvEntry> result = aggregator.getResult();
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(5, result.get(0).getTs());
+        Assert.assertEquals(15.0, result.get(0).getDoubleValue().get(), 0.0);
+        Assert.assertEquals(25, result.get(1).getTs());
+        Assert.assertEquals(7.0, result.get(1).getDoubleValue().get(), 0.0);
+    }
+
+    @Test
+    public void testSumKeepsLongTypeWithoutDoubles() {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(KEY, Aggregation.SUM, 0, 10, 10);
+        aggregator.add(longEntry(1, 3));
+        aggregator.add(longEntry(2, 4));
+
+        List<TsKvEntry> result = aggregator.getResult();
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(7L, result.get(0).getLongValue().get().longValue());
+    }
+
+    @Test
+    public void testMinMaxPreferStrings() {
+        TsKvBucketAggregator min = new TsKvBucketAggregator(KEY, Aggregation.MIN, 0, 10, 10);
+        TsKvBucketAggregator max = new TsKvBucketAggregator(KEY, Aggregation.MAX, 0, 10, 10);
+        for (TsKvEntry entry : new TsKvEntry[]{longEntry(1, 3), strEntry(2, "b"), strEntry(3, "a"), doubleEntry(4, 9.5)}) {
+            min.add(entry);
+            max.add(entry);
+        }
+        Assert.assertEquals("a", min.getResult().get(0).getStrValue().get());
+        Assert.assertEquals("b", max.getResult().get(0).getStrValue().get());
+    }
+
+    @Test
+    public void testLastBucketIsNotTruncated() {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(KEY, Aggregation.COUNT, 0, 25, 10);
+        Assert.assertEquals(30, aggregator.getScanEndTs());
+        aggregator.add(longEntry(27, 1));
+        aggregator.add(longEntry(30, 1));
+
+        List<TsKvEntry> result = aggregator.getResult();
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(25, result.get(0).getTs());
+        Assert.assertEquals(1L, result.get(0).getLongValue().get().longValue());
+    }
+
+    private static TsKvEntry longEntry(long ts, long value) {
+        return new BasicTsKvEntry(ts, new LongDataEntry(KEY, value));
+    }
+
+    private static TsKvEntry doubleEntry(long ts, double value) {
+        return new BasicTsKvEntry(ts, new DoubleDataEntry(KEY, value));
+    }
+
+    private static TsKvEntry strEntry(long ts, String value) {
+        return new BasicTsKvEntry(ts, new StringDataEntry(KEY, value));
+    }
+}
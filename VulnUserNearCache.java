@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.user;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.User;
+import org.thingsboard.server.common.data.id.UserId;
+import org.thingsboard.server.common.data.security.UserCredentials;
+import org.thingsboard.server.dao.cache.InvalidationVersion;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Near cache of the users and user credentials read on every login and token refresh.
+ *
+ * Users are cached by id, and the email of a user is mapped to its id, so lookups by email and
+ * by id share the same entry and an email change only has to drop the old mapping.
+ * {@link UserServiceImpl} evicts a user or its credentials once it wrote them, entries written
+ * on other nodes are picked up when the TTL expires. The service updates the additional info of
+ * a user in place before saving it, so the cache stores and returns deep copies of it.
+ */
+@Slf4j
+public class UserNearCache {
+
+    private final Cache<UserId, User> users;
+    private final Cache<String, UserId> userIdsByEmail;
+    private final Cache<UserId, UserCredentials> credentials;
+    private final InvalidationVersion version = new InvalidationVersion();
+
+    public UserNearCache(long maxSize, long ttlMs) {
+        this.users = newCache(maxSize, ttlMs);
+        this.userIdsByEmail = newCache(maxSize, ttlMs);
+        this.credentials = newCache(maxSize, ttlMs);
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maxSize, long ttlMs) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    public User getUser(UserId userId, Supplier<User> loader) {
+        User cached = users.getIfPresent(userId);
+        if (cached != null) {
+            return copyOf(cached);
+        }
+        long loadVersion = version.beforeLoad();
+        User user = loader.get();
+        if (user != null) {
+            putUser(user, loadVersion);
+        }
+        return user;
+    }
+
+    public User getUserByEmail(String email, Supplier<User> loader) {
+        UserId userId = userIdsByEmail.getIfPresent(email);
+        if (userId != null) {
+            User cached = users.getIfPresent(userId);
+            if (cached != null && email.equals(cached.getEmail())) {
+                return copyOf(cached);
+            }
+        }
+        long loadVersion = version.beforeLoad();
+        User user = loader.get();
+        if (user != null) {
+            putUser(user, loadVersion);
+            if (email.equals(user.getEmail())) {
+                version.putIfNotInvalidated(userIdsByEmail, email, user.getId(), loadVersion);
+            }
+        }
+        return user;
+    }
+
+    public UserCredentials getCredentials(UserId userId, Supplier<UserCredentials> loader) {
+        UserCredentials cached = credentials.getIfPresent(userId);
+        if (cached != null) {
+            return new UserCredentials(cached);
+        }
+        long loadVersion = version.beforeLoad();
+        UserCredentials userCredentials = loader.get();
+        if (userCredentials != null) {
+            version.putIfNotInvalidated(credentials, userId, new UserCredentials(userCredentials), loadVersion);
+        }
+        return userCredentials;
+    }
+
+    public void evictUser(UserId userId, String email) {
+        version.invalidate();
+        if (email != null) {
+            userIdsByEmail.invalidate(email);
+        }
+        if (userId != null) {
+            User cached = users.getIfPresent(userId);
+            if (cached != null && cached.getEmail() != null) {
+                userIdsByEmail.invalidate(cached.getEmail());
+            }
+            users.invalidate(userId);
+        }
+    }
+
+    public void evictCredentials(UserId userId) {
+        version.invalidate();
+        credentials.invalidate(userId);
+    }
+
+    public CacheStats getUserStats() {
+        return users.stats();
+    }
+
+    public CacheStats getCredentialsStats() {
+        return credentials.stats();
+    }
+
+    public void printStats() {
+        CacheStats userStats = users.stats();
+        CacheStats emailStats = userIdsByEmail.stats();
+        CacheStats credentialsStats = credentials.stats();
+        log.info("User near cache: users size [{}] hitRate [{}], emails size [{}] hitRate [{}], credentials size [{}] hitRate [{}]",
+                users.size(), format(userStats), userIdsByEmail.size(), format(emailStats),
+                credentials.size(), format(credentialsStats));
+    }
+
+    private static String format(CacheStats stats) {
+        return String.format("%.2f (%d/%d)", stats.hitRate(), stats.hitCount(), stats.requestCount());
+    }
+
+    private void putUser(User user, long loadVersion) {
+        version.putIfNotInvalidated(users, user.getId(), copyOf(user), loadVersion);
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User(user);
+        if (user.getAdditionalInfo() != null) {
+            copy.setAdditionalInfo(user.getAdditionalInfo().deepCopy());
+        }
+        return copy;
+    }
+}
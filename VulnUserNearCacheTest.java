@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.user;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.User;
+import org.thingsboard.server.common.data.id.UserId;
+import org.thingsboard.server.common.data.security.Authority;
+import org.thingsboard.server.common.data.security.UserCredentials;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UserNearCacheTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final UserId userId = new UserId(UUID.randomUUID());
+
+    @Test
+    public void testAdditionalInfoIsNotShared() {
+        UserNearCache cache = new UserNearCache(100, 60000);
+        User loaded = user("user@thingsboard.org");
+        ObjectNode additionalInfo = mapper.createObjectNode();
+        additionalInfo.put("failedLoginAttempts", 0);
+        loaded.setAdditionalInfo(additionalInfo);
+
+        // the service updates the additional info in place before saving, and the save may fail
+        ((ObjectNode) cache.getUser(userId, () -> loaded).getAdditionalInfo()).put("failedLoginAttempts", 1);
+        User hit = cache.getUser(userId, () -> null);
+        Assert.assertEquals(0, hit.getAdditionalInfo().get("failedLoginAttempts").asInt());
+
+        ((ObjectNode) hit.getAdditionalInfo()).put("failedLoginAttempts", 2);
+        Assert.assertEquals(0, cache.getUser(userId, () -> null).getAdditionalInfo().get("failedLoginAttempts").asInt());
+    }
+
+    @Test
+    public void testLookupsByEmailAndIdShareEntry() {
+        UserNearCache cache = new UserNearCache(100, 60000);
+        cache.getUserByEmail("user@thingsboard.org", () -> user("user@thingsboard.org"));
+
+        User user = cache.getUser(userId, () -> null);
+        Assert.assertNotNull(user);
+        Assert.assertEquals("user@thingsboard.org", user.getEmail());
+
+        // evicting by id also drops the email mapping of the cached user
+        cache.evictUser(userId, null);
+        Assert.assertNull(cache.getUserByEmail("user@thingsboard.org", () -> null));
+    }
+
+    @Test
+    public void testEmailLookupFollowsEmailChange() {
+        UserNearCache cache = new UserNearCache(100, 60000);
+        AtomicInteger loads = new AtomicInteger();
+        cache.getUserByEmail("old@thingsboard.org", () -> user("old@thingsboard.org"));
+        cache.getUserByEmail("old@thingsboard.org", () -> {
+            loads.incrementAndGet();
+            return user("old@thingsboard.org");
+        });
+        Assert.assertEquals(0, loads.get());
+
+        cache.evictUser(userId, "new@thingsboard.org");
+        User user = cache.getUserByEmail("old@thingsboard.org", () -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        Assert.assertNull(user);
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testReturnedObjectsAreCopies() {
+        UserNearCache cache = new UserNearCache(100, 60000);
+        UserCredentials credentials = new UserCredentials();
+        credentials.setUserId(userId);
+        credentials.setEnabled(true);
+        cache.getCredentials(userId, () -> credentials).setEnabled(false);
+        cache.getCredentials(userId, () -> null).setEnabled(false);
+
+        Assert.assertTrue(cache.getCredentials(userId, () -> null).isEnabled());
+        Assert.assertEquals(2, cache.getCredentialsStats().hitCount());
+    }
+
+    private User user(String email) {
+        User user = new User(userId);
+        user.setEmail(email);
+        user.setAuthority(Authority.TENANT_ADMIN);
+        return user;
+    }
+}
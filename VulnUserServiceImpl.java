@@ -47,12 +47,15 @@ import org.thingsboard.server.dao.exception.IncorrectParameterException;
 import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.service.DataValidator;
 import org.thingsboard.server.dao.service.PaginatedRemover;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
 import org.thingsboard.server.dao.tenant.TbTenantProfileCache;
 import org.thingsboard.server.dao.tenant.TenantDao;
 import org.thingsboard.common.util.JacksonUtil;
 
+import javax.annotation.PostConstruct;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.thingsboard.server.dao.service.Validator.validateId;
 import static org.thingsboard.server.dao.service.Validator.validatePageLink;
@@ -76,42 +79,70 @@ public class UserServiceImpl extends AbstractEntityService implements UserServic
     @Value("${security.user_login_case_sensitive:true}")
     private boolean userLoginCaseSensitive;
 
+    @Value("${security.user_cache.enabled:false}")
+    private boolean userCacheEnabled;
+
+    @Value("${security.user_cache.max_size:100000}")
+    private long userCacheMaxSize;
+
+    @Value("${security.user_cache.ttl_ms:60000}")
+    private long userCacheTtlMs;
+
+    @Value("${security.user_cache.stats_print_interval_ms:60000}")
+    private long userCacheStatsPrintIntervalMs;
+
     private final UserDao userDao;
     private final UserCredentialsDao userCredentialsDao;
     private final TenantDao tenantDao;
     private final CustomerDao customerDao;
     private final TbTenantProfileCache tenantProfileCache;
     private final ApplicationEventPublisher eventPublisher;
+    private final ScheduledLogExecutorComponent logExecutor;
+
+    private UserNearCache userCache;
 
     public UserServiceImpl(UserDao userDao,
                            UserCredentialsDao userCredentialsDao,
                            TenantDao tenantDao,
                            CustomerDao customerDao,
                            @Lazy TbTenantProfileCache tenantProfileCache,
-                           ApplicationEventPublisher eventPublisher) {
+                           ApplicationEventPublisher eventPublisher,
+                           ScheduledLogExecutorComponent logExecutor) {
         this.userDao = userDao;
         this.userCredentialsDao = userCredentialsDao;
         this.tenantDao = tenantDao;
         this.customerDao = customerDao;
         this.tenantProfileCache = tenantProfileCache;
         this.eventPublisher = eventPublisher;
+        this.logExecutor = logExecutor;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (userCacheEnabled) {
+            userCache = new UserNearCache(userCacheMaxSize, userCacheTtlMs);
+            logExecutor.scheduleAtFixedRate(userCache::printStats, userCacheStatsPrintIntervalMs, userCacheStatsPrintIntervalMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public User findUserByEmail(TenantId tenantId, String email) {
         log.trace("Executing findUserByEmail [{}]", email);
         validateString(email, "Incorrect email " + email);
-        if (userLoginCaseSensitive) {
-            return userDao.findByEmail(tenantId, email);
-        } else {
-            return userDao.findByEmail(tenantId, email.toLowerCase());
+        String searchEmail = userLoginCaseSensitive ? email : email.toLowerCase();
+        if (userCache != null) {
+            return userCache.getUserByEmail(searchEmail, () -> userDao.findByEmail(tenantId, searchEmail));
         }
+        return userDao.findByEmail(tenantId, searchEmail);
     }
 
     @Override
     public User findUserById(TenantId tenantId, UserId userId) {
         log.trace("Executing findUserById [{}]", userId);
         validateId(userId, INCORRECT_USER_ID + userId);
+        if (userCache != null) {
+            return userCache.getUser(userId, () -> userDao.findById(tenantId, userId.getId()));
+        }
         return userDao.findById(tenantId, userId.getId());
     }
 
@@ -129,7 +160,12 @@ public class UserServiceImpl extends AbstractEntityService implements UserServic
         if (!userLoginCaseSensitive) {
             user.setEmail(user.getEmail().toLowerCase());
         }
-        User savedUser = userDao.save(user.getTenantId(), user);
+        User savedUser;
+        try {
+            savedUser = userDao.save(user.getTenantId(), user);
+        } finally {
+            evictUser(user.getId(), user.getEmail());
+        }
         if (user.getId() == null) {
             UserCredentials userCredentials = new UserCredentials();
             userCredentials.setEnabled(false);
@@ -144,6 +180,9 @@ public class UserServiceImpl extends AbstractEntityService implements UserServic
     public UserCredentials findUserCredentialsByUserId(TenantId tenantId, UserId userId) {
         log.trace("Executing findUserCredentialsByUserId [{}]", userId);
         validateId(userId, INCORRECT_USER_ID + userId);
+        if (userCache != null) {
+            return userCache.getCredentials(userId, () -> userCredentialsDao.findByUserId(tenantId, userId.getId()));
+        }
         return userCredentialsDao.findByUserId(tenantId, userId.getId());
     }
 
@@ -218,7 +257,11 @@ public class UserServiceImpl extends AbstractEntityService implements UserServic
     public UserCredentials replaceUserCredentials(TenantId tenantId, UserCredentials userCredentials) {
         log.trace("Executing replaceUserCredentials [{}]", userCredentials);
         userCredentialsValidator.validate(userCredentials, data -> tenantId);
-        userCredentialsDao.removeById(tenantId, userCredentials.getUuidId());
+        try {
+            userCredentialsDao.removeById(tenantId, userCredentials.getUuidId());
+        } finally {
+            evictCredentials(userCredentials.getUserId());
+        }
         userCredentials.setId(null);
         return saveUserCredentialsAndPasswordHistory(tenantId, userCredentials);
     }
@@ -228,9 +271,14 @@ public class UserServiceImpl extends AbstractEntityService implements UserServic
         log.trace("Executing deleteUser [{}]", userId);
         validateId(userId, INCORRECT_USER_ID + userId);
         UserCredentials userCredentials = userCredentialsDao.findByUserId(tenantId, userId.getId());
-        userCredentialsDao.removeById(tenantId, userCredentials.getUuidId());
-        deleteEntityRelations(tenantId, userId);
-        userDao.removeById(tenantId, userId.getId());
+        try {
+            userCredentialsDao.removeById(tenantId, userCredentials.getUuidId());
+            deleteEntityRelations(tenantId, userId);
+            userDao.removeById(tenantId, userId.getId());
+        } finally {
+            evictCredentials(userId);
+            evictUser(userId, null);
+        }
         eventPublisher.publishEvent(new UserAuthDataChangedEvent(userId));
     }
 
@@ -292,7 +340,11 @@ public class UserServiceImpl extends AbstractEntityService implements UserServic
         if (enabled) {
             resetFailedLoginAttempts(user);
         }
-        userDao.save(user.getTenantId(), user);
+        try {
+            userDao.save(user.getTenantId(), user);
+        } finally {
+            evictUser(userId, user.getEmail());
+        }
     }
 
 
@@ -348,7 +400,12 @@ public class UserServiceImpl extends AbstractEntityService implements UserServic
     }
 
     private UserCredentials saveUserCredentialsAndPasswordHistory(TenantId tenantId, UserCredentials userCredentials) {
-        UserCredentials result = userCredentialsDao.save(tenantId, userCredentials);
+        UserCredentials result;
+        try {
+            result = userCredentialsDao.save(tenantId, userCredentials);
+        } finally {
+            evictCredentials(userCredentials.getUserId());
+        }
         User user = findUserById(tenantId, userCredentials.getUserId());
         if (userCredentials.getPassword() != null) {
             updatePasswordHistory(user, userCredentials);
@@ -356,6 +413,18 @@ public class UserServiceImpl extends AbstractEntityService implements UserServic
         return result;
     }
 
+    private void evictUser(UserId userId, String email) {
+        if (userCache != null) {
+            userCache.evictUser(userId, email);
+        }
+    }
+
+    private void evictCredentials(UserId userId) {
+        if (userCache != null && userId != null) {
+            userCache.evictCredentials(userId);
+        }
+    }
+
     private void updatePasswordHistory(User user, UserCredentials userCredentials) {
         JsonNode additionalInfo = user.getAdditionalInfo();
         if (!(additionalInfo instanceof ObjectNode)) {
@@ -21,6 +21,7 @@ package org.apache.zookeeper.server;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -89,6 +90,14 @@ public class ZKDatabase {
     protected ReentrantReadWriteLock logLock = new ReentrantReadWriteLock();
     volatile private boolean initialized = false;
 
+    /**
+     * timings of the last {@link #loadDataBase()}, exposed through ZooKeeperServerBean
+     */
+    private volatile long snapshotLoadTime;
+    private volatile long txnReplayTime;
+    private volatile long committedLogLoadTime;
+    private volatile long replayedTxnCount;
+
     /**
      * the filetxnsnaplog that this zk database
      * maps to. There is a one to one relationship
@@ -233,18 +242,73 @@ public class ZKDatabase {
      * @throws IOException
      */
     public long loadDataBase() throws IOException {
+        // Only the tail of the replayed txns ends up in the committed log, so
+        // keep just that many and serialize their proposals once replay is done
+        // instead of serializing every txn read from the logs.
+        final ArrayDeque<Request> replayed = new ArrayDeque<Request>(commitLogCount + 1);
+        final long[] replayStart = {-1};
+        final long[] txnCount = {0};
         PlayBackListener listener=new PlayBackListener(){
             public void onTxnLoaded(TxnHeader hdr,Record txn){
-                Request r = new Request(0, hdr.getCxid(),hdr.getType(), hdr, txn, hdr.getZxid());
-                addCommittedProposal(r);
+                if (replayStart[0] < 0) {
+                    replayStart[0] = Time.currentElapsedTime();
+                }
+                txnCount[0]++;
+                if (replayed.size() > commitLogCount) {
+                    replayed.removeFirst();
+                }
+                replayed.addLast(new Request(0, hdr.getCxid(),hdr.getType(), hdr, txn, hdr.getZxid()));
             }
         };
 
+        long start = Time.currentElapsedTime();
         long zxid = snapLog.restore(dataTree,sessionsWithTimeouts,listener);
+        long restored = Time.currentElapsedTime();
+        for (Request r : replayed) {
+            addCommittedProposal(r);
+        }
+        long end = Time.currentElapsedTime();
+
+        // the first replayed txn marks the end of snapshot deserialization
+        long snapshotLoaded = replayStart[0] < 0 ? restored : replayStart[0];
+        snapshotLoadTime = snapshotLoaded - start;
+        txnReplayTime = restored - snapshotLoaded;
+        committedLogLoadTime = end - restored;
+        replayedTxnCount = txnCount[0];
+        LOG.info("Loaded database in {} ms: snapshot {} ms, replay of {} txns {} ms, committed log {} ms",
+                end - start, snapshotLoadTime, replayedTxnCount, txnReplayTime, committedLogLoadTime);
         initialized = true;
         return zxid;
     }
 
+    /**
+     * @return time spent in the last {@link #loadDataBase()} before the first txn was replayed
+     */
+    public long getSnapshotLoadTime() {
+        return snapshotLoadTime;
+    }
+
+    /**
+     * @return time spent in the last {@link #loadDataBase()} replaying txn logs
+     */
+    public long getTxnReplayTime() {
+        return txnReplayTime;
+    }
+
+    /**
+     * @return time spent in the last {@link #loadDataBase()} building the committed log
+     */
+    public long getCommittedLogLoadTime() {
+        return committedLogLoadTime;
+    }
+
+    /**
+     * @return number of txns replayed by the last {@link #loadDataBase()}
+     */
+    public long getReplayedTxnCount() {
+        return replayedTxnCount;
+    }
+
     /**
      * maintains a list of last <i>committedLog</i>
      *  or so committed requests. This is used for
@@ -579,7 +643,9 @@ public class ZKDatabase {
      * @throws IOException
      */
     public void commit() throws IOException {
+        long start = Time.currentElapsedTime();
         this.snapLog.commit();
+        ServerHistograms.getHistograms().fsyncTime().add(Time.currentElapsedTime() - start);
     }
 
     /**
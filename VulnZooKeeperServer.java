@@ -167,6 +167,7 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
     protected int listenBacklog = -1;
     protected SessionTracker sessionTracker;
     private FileTxnSnapLog txnLogFactory = null;
+    private PurgeService purgeService;
     private ZKDatabase zkDb;
     private ResponseCache readResponseCache;
     private ResponseCache getChildrenResponseCache;
@@ -692,6 +693,8 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
 
         startJvmPauseMonitor();
 
+        startPurgeService();
+
         registerMetrics();
 
         setState(state);
@@ -709,6 +712,15 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         }
     }
 
+    protected void startPurgeService() {
+        if (purgeService == null && txnLogFactory != null) {
+            purgeService = PurgeService.fromSystemProperties(txnLogFactory);
+        }
+        if (purgeService != null) {
+            purgeService.start();
+        }
+    }
+
     protected void startRequestThrottler() {
         requestThrottler = new RequestThrottler(this);
         requestThrottler.start();
@@ -833,6 +845,9 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         if (jvmPauseMonitor != null) {
             jvmPauseMonitor.serviceStop();
         }
+        if (purgeService != null) {
+            purgeService.shutdown();
+        }
 
         if (zkDb != null) {
             if (fullyShutDown) {
@@ -1577,6 +1592,8 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         if (largeRequestLength != -1) {
             currentLargeRequestBytes.addAndGet(-largeRequestLength);
         }
+        ServerHistograms.getHistograms().requestLatency(request.type)
+            .add(Time.currentElapsedTime() - request.createTime);
     }
 
     public void processPacket(ServerCnxn cnxn, ByteBuffer incomingBuffer) throws IOException {
@@ -1900,6 +1917,11 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         rootContext.registerGauge("auth_failed_count", stats::getAuthFailedCount);
         rootContext.registerGauge("non_mtls_remote_conn_count", stats::getNonMTLSRemoteConnCount);
         rootContext.registerGauge("non_mtls_local_conn_count", stats::getNonMTLSLocalConnCount);
+
+        rootContext.registerGauge("nio_read_calls", NIOServerCnxn::getReadCalls);
+        rootContext.registerGauge("nio_write_calls", NIOServerCnxn::getWriteCalls);
+        rootContext.registerGauge("nio_response_bytes_allocated", NIOServerCnxn::getResponseBytesAllocated);
+        rootContext.registerGauge("nio_shared_notifications", NIOServerCnxn::getSharedNotifications);
     }
 
     protected void unregisterMetrics() {
@@ -1939,6 +1961,11 @@ public class ZooKeeperServer implements SessionExpirer, ServerStats.Provider {
         rootContext.unregisterGauge("non_mtls_remote_conn_count");
         rootContext.unregisterGauge("non_mtls_local_conn_count");
 
+        rootContext.unregisterGauge("nio_read_calls");
+        rootContext.unregisterGauge("nio_write_calls");
+        rootContext.unregisterGauge("nio_response_bytes_allocated");
+        rootContext.unregisterGauge("nio_shared_notifications");
+
 
     }
 
@@ -167,4 +167,28 @@ public class ZooKeeperServerBean implements ZooKeeperServerMXBean, ZKMBeanInfo {
     public long getTxnLogElapsedSyncTime() {
         return zks.getTxnLogElapsedSyncTime();
     }
+
+    @Override
+    public long getStartupSnapshotLoadTime() {
+        ZKDatabase zkDb = zks.getZKDatabase();
+        return zkDb == null ? 0 : zkDb.getSnapshotLoadTime();
+    }
+
+    @Override
+    public long getStartupTxnReplayTime() {
+        ZKDatabase zkDb = zks.getZKDatabase();
+        return zkDb == null ? 0 : zkDb.getTxnReplayTime();
+    }
+
+    @Override
+    public long getStartupCommittedLogLoadTime() {
+        ZKDatabase zkDb = zks.getZKDatabase();
+        return zkDb == null ? 0 : zkDb.getCommittedLogLoadTime();
+    }
+
+    @Override
+    public long getStartupReplayedTxnCount() {
+        ZKDatabase zkDb = zks.getZKDatabase();
+        return zkDb == null ? 0 : zkDb.getReplayedTxnCount();
+    }
 }
\ No newline at end of file
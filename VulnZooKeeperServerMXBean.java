@@ -130,4 +130,21 @@ public interface ZooKeeperServerMXBean {
      * Returns the elapsed sync of time of transaction log in milliseconds.
      */
     public long getTxnLogElapsedSyncTime();
+
+    /**
+     * @return time in milliseconds spent loading the snapshot on the last database load
+     */
+    public long getStartupSnapshotLoadTime();
+    /**
+     * @return time in milliseconds spent replaying txn logs on the last database load
+     */
+    public long getStartupTxnReplayTime();
+    /**
+     * @return time in milliseconds spent building the committed log on the last database load
+     */
+    public long getStartupCommittedLogLoadTime();
+    /**
+     * @return number of txns replayed on the last database load
+     */
+    public long getStartupReplayedTxnCount();
 }
\ No newline at end of file